@@ -0,0 +1,16 @@
+package foo.a;
+
+public class Alpha
+{
+
+    public void one()
+    {
+
+    }
+
+    public void three()
+    {
+
+    }
+
+}
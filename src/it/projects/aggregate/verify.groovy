@@ -0,0 +1,28 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+// the last project of the reactor reports on all modules
+def report = new File( basedir, 'b/target/site/apidocs' )
+assert new File( report, 'changes.html' ).exists()
+assert new File( report, 'changes/pkg_foo.a.html' ).exists()
+assert new File( report, 'changes/pkg_foo.b.html' ).exists()
+assert !new File( basedir, 'a/target/site/apidocs/changes.html' ).exists()
+
+def log = new File( basedir, 'build.log' ).text
+assert log.contains( 'Skipping, the aggregated report is generated by the last project of the reactor' )
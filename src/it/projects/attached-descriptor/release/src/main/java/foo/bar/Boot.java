@@ -0,0 +1,16 @@
+package foo.bar;
+
+public class Boot
+{
+
+    public void start()
+    {
+
+    }
+
+    public void stop()
+    {
+
+    }
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+def descriptor = new File( localRepositoryPath,
+                           'localhost/attached-descriptor/1.0/attached-descriptor-1.0-jdiff-api.xml.gz' )
+assert descriptor.isFile()
+
+def log = new File( basedir, 'build.log' ).text
+assert log.contains( 'Using the JDiff descriptor attached to localhost:attached-descriptor:xml.gz:jdiff-api:1.0' )
+assert !log.contains( 'Performing checkout' )
+
+assert new File( basedir, 'target/site/apidocs/changes.html' ).exists()
+assert new File( basedir, 'target/jdiff/1.0.xml' ).text.contains( 'name="stop"' )
@@ -0,0 +1,19 @@
+package foo.bar;
+
+public class Boot
+{
+    public static final char QUOTE = '\'';
+
+    public static final String GREETING = "say \"hello\"\n";
+
+    public void start()
+    {
+
+    }
+
+    public void stop()
+    {
+
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+assert new File( basedir, 'target/site/apidocs/changes.html' ).exists()
+
+def log = new File( basedir, 'build.log' ).text
+assert !log.contains( 'Performing checkout' )
+
+def oldApi = new File( basedir, 'target/jdiff/1.0.xml' ).text
+def newApi = new File( basedir, 'target/jdiff/1.1-SNAPSHOT.xml' ).text
+assert oldApi.contains( 'name="stop"' )
+assert !newApi.contains( 'name="stop"' )
+
+// constants are escaped like javadoc does
+assert newApi.contains( "value=\"'\\''\"" )
+assert newApi.contains( 'value="&quot;say \\&quot;hello\\&quot;\\n&quot;"' )
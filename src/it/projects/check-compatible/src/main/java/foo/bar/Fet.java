@@ -0,0 +1,11 @@
+package foo.bar;
+
+public class Fet
+{
+
+    public void main()
+    {
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package foo.a;
+
+public class Alpha
+{
+
+    public void start()
+    {
+
+    }
+
+}
@@ -0,0 +1,16 @@
+package foo.b;
+
+public class Beta
+{
+
+    public void start()
+    {
+
+    }
+
+    public void stop()
+    {
+
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+def log = new File( basedir, 'build.log' ).text
+assert log.contains( 'Describing 1.0 in 2 shards' )
+assert log.contains( 'Describing 1.1-SNAPSHOT in 2 shards' )
+
+// the shards are merged into a single descriptor with the packages in order
+def workingDirectory = new File( basedir, 'target/jdiff' )
+def descriptor = new File( workingDirectory, '1.1-SNAPSHOT.xml' ).text
+def a = descriptor.indexOf( '<package name="foo.a"' )
+def b = descriptor.indexOf( '<package name="foo.b"' )
+def c = descriptor.indexOf( '<package name="foo.c"' )
+assert 0 < a && a < b && b < c
+assert descriptor.trim().endsWith( '</api>' )
+assert !new File( workingDirectory, 'shards-1.0' ).exists()
+assert !new File( workingDirectory, 'shards-1.1-SNAPSHOT' ).exists()
+
+assert new File( basedir, 'target/site/apidocs/changes/pkg_foo.b.html' ).exists()
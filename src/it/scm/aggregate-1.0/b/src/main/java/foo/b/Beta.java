@@ -0,0 +1,16 @@
+package foo.b;
+
+public class Beta
+{
+
+    public void one()
+    {
+
+    }
+
+    public void two()
+    {
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package foo.b;
+
+public class Beta
+{
+
+    public void start()
+    {
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package foo.c;
+
+public class Gamma
+{
+
+    public void start()
+    {
+
+    }
+
+}
@@ -0,0 +1,191 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.ArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the package scanning, the classpath assembly and the javadoc command line assembly, over synthetic
+ * projects of {@link #classes} classes in packages of 100 classes, with one dependency per 10 classes.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class JDiffUtilsBenchmark
+{
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    private static final int CLASSES_PER_DEPENDENCY = 10;
+
+    @Param( { "1000", "10000", "100000" } )
+    public int classes;
+
+    private File basedir;
+
+    private List<String> sourceRoots;
+
+    private MavenProject project;
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        basedir = File.createTempFile( "jdiff-benchmark", "" );
+        basedir.delete();
+
+        File sourceRoot = new File( basedir, "src/main/java" );
+        for ( int i = 0; i < classes; i++ )
+        {
+            File packageDirectory = new File( sourceRoot, "org/example/p" + ( i / CLASSES_PER_PACKAGE ) );
+            packageDirectory.mkdirs();
+            FileUtils.fileWrite( new File( packageDirectory, "C" + i + ".java" ).getPath(),
+                                 "package org.example.p" + ( i / CLASSES_PER_PACKAGE ) + "; public class C" + i
+                                     + " {}" );
+        }
+        sourceRoots = new ArrayList<String>();
+        sourceRoots.add( "src/main/java" );
+
+        Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+        for ( int i = 0; i < classes / CLASSES_PER_DEPENDENCY; i++ )
+        {
+            Artifact artifact =
+                new DefaultArtifact( "org.example", "dependency" + i, VersionRange.createFromVersion( "1.0" ),
+                                     Artifact.SCOPE_COMPILE, "jar", null, new JarArtifactHandler() );
+            artifact.setFile( new File( basedir, "repository/dependency" + i + "-1.0.jar" ) );
+            artifacts.add( artifact );
+        }
+        project = new MavenProject( new Model() );
+        project.setArtifacts( artifacts );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( basedir );
+    }
+
+    @Benchmark
+    public Set<String> getPackages()
+        throws IOException
+    {
+        return JDiffUtils.getPackages( basedir, sourceRoots );
+    }
+
+    @Benchmark
+    public List<String> getClasspathElements()
+    {
+        return JDiffUtils.getClasspathElements( project );
+    }
+
+    @Benchmark
+    public Commandline createJavadocCommandline()
+        throws IOException
+    {
+        JavadocExecutor javadoc = new JavadocExecutor( "javadoc", new SystemStreamLog() );
+        javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
+        javadoc.addArgumentPair( "docletpath", "jdiff.jar" );
+        javadoc.addArgumentPair( "apiname", "benchmark" );
+        javadoc.addArgumentPair( "apidir", basedir.getAbsolutePath() );
+        javadoc.addPathArgumentPair( "classpath", JDiffUtils.getClasspathElements( project ) );
+        javadoc.addPathArgumentPair( "sourcepath", sourceRoots );
+        for ( int i = 0; i < classes / CLASSES_PER_PACKAGE; i++ )
+        {
+            javadoc.addArgument( "org.example.p" + i );
+        }
+        File argfile = javadoc.getArgumentsLength() > JavadocExecutor.INLINE_ARGUMENTS_LIMIT
+                        ? new File( basedir, "javadoc.options" ) : null;
+        return javadoc.createCommandline( basedir, argfile );
+    }
+
+    /**
+     * Puts the artifacts on the compile classpath, like the <code>jar</code> handler of Maven.
+     */
+    private static class JarArtifactHandler
+        implements ArtifactHandler
+    {
+        public String getExtension()
+        {
+            return "jar";
+        }
+
+        public String getDirectory()
+        {
+            return "jars";
+        }
+
+        public String getClassifier()
+        {
+            return null;
+        }
+
+        public String getPackaging()
+        {
+            return "jar";
+        }
+
+        public boolean isIncludesDependencies()
+        {
+            return false;
+        }
+
+        public String getLanguage()
+        {
+            return "java";
+        }
+
+        public boolean isAddedToClasspath()
+        {
+            return true;
+        }
+    }
+}
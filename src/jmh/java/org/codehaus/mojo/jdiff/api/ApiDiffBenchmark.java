@@ -0,0 +1,160 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the descriptor parsing and comparison, as XML and as snapshots, over two synthetic APIs of
+ * {@link #classes} classes in packages of 100 classes. In the new API one class in 100 gains a method and one class in
+ * 1000 is removed.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx2g" )
+public class ApiDiffBenchmark
+{
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    @Param( { "1000", "10000", "100000" } )
+    public int classes;
+
+    private File apidir;
+
+    private File oldDescriptor;
+
+    private File newDescriptor;
+
+    private File oldSnapshot;
+
+    private File newSnapshot;
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        apidir = File.createTempFile( "jdiff-benchmark", "" );
+        apidir.delete();
+
+        oldDescriptor = new ApiXmlWriter().write( createApi( "old", false ), apidir );
+        newDescriptor = new ApiXmlWriter().write( createApi( "new", true ), apidir );
+
+        oldSnapshot = new File( apidir, "old" + ApiSnapshot.EXTENSION );
+        new ApiSnapshotWriter().write( oldDescriptor, oldSnapshot );
+        newSnapshot = new File( apidir, "new" + ApiSnapshot.EXTENSION );
+        new ApiSnapshotWriter().write( newDescriptor, newSnapshot );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( apidir );
+    }
+
+    @Benchmark
+    public ApiDescriptor read()
+        throws IOException
+    {
+        return ApiXmlReader.read( oldDescriptor );
+    }
+
+    @Benchmark
+    public ApiDiff compare()
+        throws IOException
+    {
+        return new ApiComparator().compare( oldDescriptor, newDescriptor );
+    }
+
+    @Benchmark
+    public ApiDescriptor readSnapshot()
+        throws IOException
+    {
+        return new ApiSnapshot( oldSnapshot ).read();
+    }
+
+    @Benchmark
+    public ApiDiff compareSnapshots()
+        throws IOException
+    {
+        return new ApiComparator().compare( oldSnapshot, newSnapshot );
+    }
+
+    private ApiDescriptor createApi( String name, boolean changed )
+    {
+        ApiDescriptor api = new ApiDescriptor( name );
+        for ( int i = 0; i < classes; i++ )
+        {
+            if ( changed && i % 1000 == 999 )
+            {
+                continue;
+            }
+
+            ApiClass apiClass = new ApiClass( "C" + i, false );
+            apiClass.setSuperclass( "java.lang.Object" );
+            apiClass.getInterfaces().add( "java.io.Serializable" );
+
+            ApiMethod constructor = new ApiMethod( "C" + i, null );
+            constructor.getParameters().add( new ApiParameter( "value", "java.lang.String" ) );
+            apiClass.getConstructors().add( constructor );
+
+            for ( int m = 0; m < 5; m++ )
+            {
+                ApiMethod method = new ApiMethod( "method" + m, "java.lang.String" );
+                method.getParameters().add( new ApiParameter( "index", "int" ) );
+                method.getExceptions().add( "java.io.IOException" );
+                apiClass.getMethods().add( method );
+            }
+            if ( changed && i % 100 == 0 )
+            {
+                apiClass.getMethods().add( new ApiMethod( "added", "void" ) );
+            }
+
+            ApiField field = new ApiField( "CONSTANT", "int" );
+            field.setStatic( true );
+            field.setFinal( true );
+            field.setValue( String.valueOf( i ) );
+            apiClass.getFields().add( field );
+
+            api.getOrCreatePackage( "org.example.p" + ( i / CLASSES_PER_PACKAGE ) ).addClass( apiClass );
+        }
+        return api;
+    }
+}
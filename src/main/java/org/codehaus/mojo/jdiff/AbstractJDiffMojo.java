@@ -1,21 +1,39 @@
 package org.codehaus.mojo.jdiff;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
 import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
 import org.apache.maven.artifact.versioning.OverConstrainedVersionException;
 import org.apache.maven.artifact.versioning.VersionRange;
@@ -33,6 +51,12 @@ import org.apache.maven.reporting.MavenReport;
 import org.apache.maven.reporting.MavenReportException;
 import org.apache.maven.scm.ScmException;
 import org.apache.maven.scm.manager.ScmManager;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.codehaus.mojo.jdiff.api.ApiComparator;
+import org.codehaus.mojo.jdiff.api.ApiDiff;
+import org.codehaus.mojo.jdiff.api.ApiDiffHtmlWriter;
+import org.codehaus.mojo.jdiff.api.ApiSnapshot;
+import org.codehaus.mojo.jdiff.api.ApiSnapshotWriter;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
@@ -43,11 +67,33 @@ public abstract class AbstractJDiffMojo
 
     private static final String JDIFF_CHECKOUT_DIRECTORY = "jdiff.checkoutDirectory";
 
+    private static final String JDIFF_AVAILABLE_VERSIONS = "jdiff.availableVersions";
+
     /**
      * Version to compare the base code against. This will be the left-hand side of the report.
      */
     @Parameter( property = "jdiff.comparisonVersion", defaultValue = "(,${project.version})" )
     private String comparisonVersion;
+    /**
+     * Versions to compare the base code against instead of the comparisonVersion, each a version or a version range.
+     * One report is generated per version, along with an index page linking to them.
+     */
+    @Parameter( property = "jdiff.comparisonVersions" )
+    private List<String> comparisonVersions;
+    /**
+     * Compare the base code against this many of the most recent releases matching the comparisonVersion range,
+     * instead of the most recent one only. One report is generated per version, along with an index page linking to
+     * them.
+     */
+    @Parameter( property = "jdiff.comparisonVersionCount", defaultValue = "1" )
+    private int comparisonVersionCount;
+    /**
+     * Render the report to the working directory first and only rewrite the pages whose content changed since the
+     * previous report, as recorded in <code>jdiff-manifest.properties</code> next to it. The whole report is still
+     * rendered on every run; this only reduces the pages written to the output directory and deployed.
+     */
+    @Parameter( property = "jdiff.incrementalReport", defaultValue = "true" )
+    private boolean incrementalReport;
     /**
      * The base code version. This will be the right-hand side of the report.
      */
@@ -60,6 +106,94 @@ public abstract class AbstractJDiffMojo
     @Parameter( property = "jdiff.forceCheckout", defaultValue = "false" )
     private boolean forceCheckout;
 
+    /**
+     * The number of minutes the versions available in the remote repositories are cached before they are queried
+     * again to resolve the comparisonVersion. They are cached per artifact, version range and set of repositories.
+     * Use <code>0</code> to query them on every build, or a larger value when releases are rare. In offline mode the
+     * cached versions are used however old they are.
+     */
+    @Parameter( property = "jdiff.versionCacheTtl", defaultValue = "5" )
+    private long versionCacheTtl;
+
+    /**
+     * The directory of the cache of available versions, shared by all builds on this machine.
+     */
+    @Parameter( property = "jdiff.versionCacheDirectory", defaultValue = "${user.home}/.m2/jdiff-versions" )
+    private File versionCacheDirectory;
+
+    /**
+     * Take the sources of the comparisonVersion from its released sources jar, when there is one, instead of checking
+     * out the whole repository. The SCM is only used for modules without a sources jar.
+     */
+    @Parameter( property = "jdiff.useSourcesJar", defaultValue = "true" )
+    private boolean useSourcesJar;
+
+    /**
+     * Limit the checkout to the <code>pom.xml</code> files and source roots of the reactor projects, for SCM providers
+     * which support partial checkouts (not git or svn). When a module of the comparisonVersion has a pom or a source
+     * root the reactor project lacks, its sources are checked out in full instead.
+     */
+    @Parameter( property = "jdiff.sparseCheckout", defaultValue = "true" )
+    private boolean sparseCheckout;
+
+    /**
+     * Keep checkouts in a store shared by all builds on this machine instead of the working directory, so a version
+     * which has been checked out before is never fetched from the SCM again. Off by default, as the store outlives
+     * the build.
+     */
+    @Parameter( property = "jdiff.useCheckoutStore", defaultValue = "false" )
+    private boolean useCheckoutStore;
+
+    /**
+     * The directory of the shared checkout store.
+     */
+    @Parameter( property = "jdiff.checkoutStoreDirectory", defaultValue = "${user.home}/.m2/jdiff-checkouts" )
+    private File checkoutStoreDirectory;
+
+    /**
+     * The disk budget of the shared checkout store in megabytes. The least recently used checkouts are evicted first.
+     */
+    @Parameter( property = "jdiff.checkoutStoreSize", defaultValue = "2048" )
+    private long checkoutStoreSize;
+
+    /**
+     * The checkouts of the store this execution reads, which are closed when it ends.
+     */
+    private final List<CheckoutStore.Checkout> checkouts = new ArrayList<CheckoutStore.Checkout>();
+
+    /**
+     * How the APIs are extracted. With <code>javadoc</code> the JDiff doclet describes the checked out sources. With
+     * <code>bytecode</code> the released jar of the comparisonVersion and the compiled classes of the base version are
+     * read directly, which requires neither a checkout nor a javadoc run, but requires the project to be compiled.
+     */
+    @Parameter( property = "jdiff.apiExtractor", defaultValue = "javadoc" )
+    private String apiExtractor;
+
+    /**
+     * The classifier of the compressed descriptors attached to releases by the descriptor goal. When the
+     * comparisonVersion has one it is compared against directly, without checking out, resolving or describing it
+     * again. Set it empty to always describe the comparisonVersion. Not used by aggregated reports, nor when the API is
+     * extracted from bytecode, whose descriptors differ from those of javadoc.
+     */
+    @Parameter( property = "jdiff.apiClassifier", defaultValue = "jdiff-api" )
+    private String apiClassifier;
+
+    /**
+     * How the APIs are compared. With <code>doclet</code> the JDiff doclet runs once more over the base sources to
+     * compare the descriptors and render its report. With <code>native</code> the plugin compares the descriptors
+     * itself and renders a report of the signature changes, without forking javadoc.
+     */
+    @Parameter( property = "jdiff.diffEngine", defaultValue = "doclet" )
+    private String diffEngine;
+
+    /**
+     * Compare the APIs of all reactor projects together. The other projects are skipped and the last project of the
+     * reactor describes each version once, from the source roots and classpaths of all modules, and generates a
+     * single combined report.
+     */
+    @Parameter( property = "jdiff.aggregate", defaultValue = "false" )
+    private boolean aggregate;
+
     @Parameter( defaultValue = "${reactorProjects}", required = true, readonly = true )
     List<MavenProject> reactorProjects;
 
@@ -71,6 +205,8 @@ public abstract class AbstractJDiffMojo
     private ArtifactMetadataSource metadataSource;
     @Component
     private ArtifactFactory factory;
+    @Component
+    private ArtifactResolver artifactResolver;
     /**
      * The local repository where the artifacts are located.
      */
@@ -97,88 +233,1059 @@ public abstract class AbstractJDiffMojo
     @Parameter
     private String name;
 
-    public File getReportOutputDirectory()
-    {
-        return reportOutputDirectory;
+    public File getReportOutputDirectory()
+    {
+        return reportOutputDirectory;
+    }
+
+    public void executeReport( Locale locale )
+        throws MavenReportException
+    {
+        try
+        {
+            if ( isBytecodeExtraction() )
+            {
+                executeBytecodeReport();
+            }
+            else
+            {
+                executeSourceReport();
+            }
+        }
+        finally
+        {
+            closeCheckouts();
+            reportMetrics();
+        }
+    }
+
+    private void executeSourceReport()
+        throws MavenReportException
+    {
+        List<String> comparisonSpecs = getComparisonVersionSpecs();
+
+        Map<String, List<MavenProject>> apis = new LinkedHashMap<String, List<MavenProject>>();
+        List<String> lhsTags = new ArrayList<String>();
+        List<String> srcDirs = new ArrayList<String>();
+        String rhsTag;
+        try
+        {
+            List<MavenProject> rhsProjects = new ArrayList<MavenProject>();
+            for ( MavenProject apiProject : getApiProjects() )
+            {
+                MavenProject rhsProject = resolveProject( apiProject, baseVersion );
+                if ( rhsProject == null )
+                {
+                    getLog().info( "Skipping " + apiProject.getArtifactId() + ", it is missing from " + baseVersion );
+                    continue;
+                }
+                rhsProjects.add( rhsProject );
+                srcDirs.add( getSourceDirectory( rhsProject.getBuild() ) );
+            }
+            if ( rhsProjects.isEmpty() )
+            {
+                throw new MavenReportException( "Unable to find the sources of " + baseVersion );
+            }
+            rhsTag = getApiName( rhsProjects.get( 0 ).getVersion() );
+            apis.put( rhsTag, rhsProjects );
+
+            for ( String comparisonSpec : comparisonSpecs )
+            {
+                String attachedTag = restoreApiDescriptor( comparisonSpec );
+                if ( attachedTag != null )
+                {
+                    if ( !apis.containsKey( attachedTag ) && !lhsTags.contains( attachedTag ) )
+                    {
+                        lhsTags.add( attachedTag );
+                    }
+                    continue;
+                }
+
+                List<MavenProject> lhsProjects = new ArrayList<MavenProject>();
+                for ( MavenProject apiProject : getApiProjects() )
+                {
+                    MavenProject lhsProject = resolveProject( apiProject, comparisonSpec );
+                    if ( lhsProject == null )
+                    {
+                        getLog().info( "Skipping " + apiProject.getArtifactId() + ", it is missing from "
+                            + comparisonSpec );
+                        continue;
+                    }
+                    lhsProjects.add( lhsProject );
+                }
+                if ( lhsProjects.isEmpty() )
+                {
+                    throw new MavenReportException( "Unable to find the sources of " + comparisonSpec );
+                }
+
+                String lhsTag = getApiName( lhsProjects.get( 0 ).getVersion() );
+                if ( !apis.containsKey( lhsTag ) && !lhsTags.contains( lhsTag ) )
+                {
+                    apis.put( lhsTag, lhsProjects );
+                    lhsTags.add( lhsTag );
+                }
+            }
+        }
+        catch ( ProjectBuildingException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+        catch ( MojoFailureException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+        catch ( MojoExecutionException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+
+        generateJDiffXMLs( apis );
+
+        compareApis( srcDirs, lhsTags, rhsTag );
+    }
+
+    private void executeBytecodeReport()
+        throws MavenReportException
+    {
+        List<String> comparisonSpecs = getComparisonVersionSpecs();
+
+        Map<String, List<File>> apis = new LinkedHashMap<String, List<File>>();
+        List<String> lhsTags = new ArrayList<String>();
+        List<String> srcDirs = new ArrayList<String>();
+        String rhsTag = null;
+        try
+        {
+            List<File> rhsLocations = new ArrayList<File>();
+            for ( MavenProject apiProject : getApiProjects() )
+            {
+                String rhsVersion = apiProject.getVersion();
+                if ( rhsVersion.equals( baseVersion ) )
+                {
+                    File rhsClasses = new File( getOutputDirectory( apiProject.getBuild() ) );
+                    if ( !rhsClasses.isDirectory() )
+                    {
+                        throw new MavenReportException( "No compiled classes found in " + rhsClasses
+                            + ", compile the project before extracting its API from bytecode." );
+                    }
+                    rhsLocations.add( rhsClasses );
+                }
+                else
+                {
+                    Artifact rhsArtifact = resolveApiArtifact( apiProject, baseVersion );
+                    if ( rhsArtifact == null )
+                    {
+                        throw new MojoFailureException( "Unable to find a version matching " + baseVersion );
+                    }
+                    rhsLocations.add( rhsArtifact.getFile() );
+                    rhsVersion = rhsArtifact.getVersion();
+                }
+                if ( rhsTag == null )
+                {
+                    rhsTag = getApiName( rhsVersion );
+                }
+                srcDirs.add( getSourceDirectory( apiProject.getBuild() ) );
+            }
+            apis.put( rhsTag, rhsLocations );
+
+            for ( String comparisonSpec : comparisonSpecs )
+            {
+                String lhsTag = null;
+                List<File> lhsLocations = new ArrayList<File>();
+                for ( MavenProject apiProject : getApiProjects() )
+                {
+                    Artifact lhsArtifact = resolveApiArtifact( apiProject, comparisonSpec );
+                    if ( lhsArtifact == null )
+                    {
+                        if ( !aggregate )
+                        {
+                            throw new MojoFailureException( "Unable to find a version matching " + comparisonSpec );
+                        }
+                        getLog().info( "Skipping " + apiProject.getArtifactId() + ", it is missing from "
+                            + comparisonSpec );
+                        continue;
+                    }
+                    if ( lhsTag == null )
+                    {
+                        lhsTag = getApiName( lhsArtifact.getVersion() );
+                    }
+                    lhsLocations.add( lhsArtifact.getFile() );
+                }
+                if ( lhsTag == null )
+                {
+                    throw new MavenReportException( "Unable to find the classes of " + comparisonSpec );
+                }
+
+                if ( !apis.containsKey( lhsTag ) && !lhsTags.contains( lhsTag ) )
+                {
+                    apis.put( lhsTag, lhsLocations );
+                    lhsTags.add( lhsTag );
+                }
+            }
+        }
+        catch ( MojoFailureException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+        catch ( MojoExecutionException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+
+        Map<String, Callable<Void>> tasks = new LinkedHashMap<String, Callable<Void>>();
+        for ( final Map.Entry<String, List<File>> api : apis.entrySet() )
+        {
+            tasks.put( api.getKey(), new Callable<Void>()
+            {
+                public Void call()
+                    throws IOException
+                {
+                    generateJDiffXMLFromClasses( api.getValue(), api.getKey() );
+                    return null;
+                }
+            } );
+        }
+        runConcurrently( tasks, "generate the JDiff descriptors" );
+
+        compareApis( srcDirs, lhsTags, rhsTag );
+    }
+
+    /**
+     * @return the specifications of the versions to compare the base version against
+     * @throws MavenReportException if the comparisonVersion range can't be expanded
+     */
+    private List<String> getComparisonVersionSpecs()
+        throws MavenReportException
+    {
+        if ( comparisonVersions != null && !comparisonVersions.isEmpty() )
+        {
+            return comparisonVersions;
+        }
+        if ( comparisonVersionCount <= 1 )
+        {
+            return Collections.singletonList( comparisonVersion );
+        }
+
+        try
+        {
+            List<String> versions =
+                resolveVersions( getApiProjects().get( 0 ), comparisonVersion, comparisonVersionCount );
+            if ( versions.isEmpty() )
+            {
+                return Collections.singletonList( comparisonVersion );
+            }
+            getLog().info( "Comparing against " + StringUtils.join( versions.iterator(), ", " ) );
+            return versions;
+        }
+        catch ( MojoFailureException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+        catch ( MojoExecutionException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+    }
+
+    /**
+     * Compares the APIs once their descriptors have been generated, by generating the report of each of the
+     * {@code lhsTags} against the {@code rhsTag}. The descriptors are in the working directory, named after their api
+     * name.
+     *
+     * @param srcDirs the source directories of the base version
+     * @param lhsTags the api names of the versions compared against
+     * @param rhsTag the api name of the base version
+     * @throws MavenReportException if the APIs can't be compared
+     */
+    protected void compareApis( List<String> srcDirs, List<String> lhsTags, String rhsTag )
+        throws MavenReportException
+    {
+        generateReports( srcDirs, lhsTags, rhsTag );
+    }
+
+    /**
+     * Generates the report of each of the {@code lhsTags} against the {@code rhsTag}. A single report is written to
+     * the report output directory, several ones are written to a subdirectory per version, concurrently when more
+     * than one thread is configured, and are listed by an index page.
+     *
+     * @param srcDirs the source directories of the base version
+     * @param lhsTags the api names of the versions compared against
+     * @param rhsTag the api name of the base version
+     * @throws MavenReportException if a report can't be generated
+     */
+    private void generateReports( final List<String> srcDirs, List<String> lhsTags, final String rhsTag )
+        throws MavenReportException
+    {
+        if ( lhsTags.size() == 1 )
+        {
+            generateReport( srcDirs, lhsTags.get( 0 ), rhsTag, getReportOutputDirectory() );
+            return;
+        }
+
+        Map<String, Callable<Void>> tasks = new LinkedHashMap<String, Callable<Void>>();
+        for ( final String lhsTag : lhsTags )
+        {
+            tasks.put( lhsTag, new Callable<Void>()
+            {
+                public Void call()
+                    throws MavenReportException
+                {
+                    generateReport( srcDirs, lhsTag, rhsTag, new File( getReportOutputDirectory(), lhsTag ) );
+                    return null;
+                }
+            } );
+        }
+        runConcurrently( tasks, "generate the JDiff reports" );
+
+        try
+        {
+            writeIndex( lhsTags, rhsTag );
+        }
+        catch ( IOException e )
+        {
+            throw new MavenReportException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Writes the page linking to the reports of each of the {@code lhsTags}.
+     *
+     * @param lhsTags the api names of the versions compared against
+     * @param rhsTag the api name of the base version
+     * @throws IOException if the page can't be written
+     */
+    private void writeIndex( List<String> lhsTags, String rhsTag )
+        throws IOException
+    {
+        StringBuffer html = new StringBuffer();
+        html.append( "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n" );
+        html.append( "<html>\n<head>\n<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n" );
+        html.append( "<title>API Differences of " ).append( StringEscapeUtils.escapeHtml( rhsTag ) );
+        html.append( "</title>\n</head>\n<body>\n<h1>API Differences of " );
+        html.append( StringEscapeUtils.escapeHtml( rhsTag ) ).append( "</h1>\n<ul>\n" );
+        for ( String lhsTag : lhsTags )
+        {
+            html.append( "<li><a href=\"" ).append( StringEscapeUtils.escapeHtml( lhsTag ) );
+            html.append( "/changes.html\">Changes since " ).append( StringEscapeUtils.escapeHtml( lhsTag ) );
+            html.append( "</a></li>\n" );
+        }
+        html.append( "</ul>\n</body>\n</html>\n" );
+
+        File index = new File( getReportOutputDirectory(), "changes.html" );
+        if ( !index.isFile() || !html.toString().equals( FileUtils.fileRead( index, "UTF-8" ) ) )
+        {
+            FileUtils.fileWrite( index.getAbsolutePath(), "UTF-8", html.toString() );
+        }
+    }
+
+    private void copyResources( File outputDirectory )
+    {
+        InputStream in = getClass().getResourceAsStream( "/black.gif" );
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( new File( outputDirectory, "black.gif" ) );
+            IOUtil.copy( in, out );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( in );
+            IOUtil.close( out );
+        }
+    }
+
+    private boolean isBytecodeExtraction()
+    {
+        return "bytecode".equals( apiExtractor );
+    }
+
+    /**
+     * Resolves the jar holding the compiled classes of the {@code versionSpec} of {@code apiProject}.
+     *
+     * @param apiProject the project
+     * @param versionSpec the version or version range
+     * @return the resolved artifact, or {@code null} if no version matches
+     */
+    private Artifact resolveApiArtifact( MavenProject apiProject, String versionSpec )
+        throws MojoFailureException, MojoExecutionException
+    {
+        Artifact versionArtifact = resolveArtifact( apiProject, versionSpec );
+        if ( versionArtifact.getVersion() == null )
+        {
+            return null;
+        }
+
+        Artifact artifact =
+            factory.createArtifactWithClassifier( apiProject.getGroupId(), apiProject.getArtifactId(),
+                                                  versionArtifact.getVersion(), "jar", getArtifactClassifier() );
+        try
+        {
+            artifactResolver.resolve( artifact, remoteRepositories, localRepository );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            throw new MojoFailureException( "Unable to find " + artifact + ": " + e.getMessage() );
+        }
+        return artifact;
+    }
+
+    /**
+     * Restores the descriptor attached to the {@code versionSpec} of the api project by the descriptor goal, when there
+     * is a single api project. Only source reports use it: the descriptor has been generated by javadoc.
+     *
+     * @param versionSpec the version or version range
+     * @return the api name of the restored descriptor, or {@code null} if the version has to be described
+     */
+    private String restoreApiDescriptor( String versionSpec )
+        throws MojoFailureException, MojoExecutionException
+    {
+        List<MavenProject> apiProjects = getApiProjects();
+        String classifier = getApiClassifier();
+        if ( StringUtils.isEmpty( classifier ) || apiProjects.size() != 1 )
+        {
+            return null;
+        }
+
+        MavenProject apiProject = apiProjects.get( 0 );
+        Artifact versionArtifact = resolveArtifact( apiProject, versionSpec );
+        if ( versionArtifact.getVersion() == null )
+        {
+            return null;
+        }
+
+        Artifact artifact =
+            factory.createArtifactWithClassifier( apiProject.getGroupId(), apiProject.getArtifactId(),
+                                                  versionArtifact.getVersion(), API_ARTIFACT_TYPE, classifier );
+        try
+        {
+            artifactResolver.resolve( artifact, remoteRepositories, localRepository );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            getLog().debug( "Unable to resolve " + artifact + ": " + e.getMessage() );
+            return null;
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            getLog().debug( "No JDiff descriptor attached to " + versionArtifact.getVersion() );
+            return null;
+        }
+
+        String apiname = getApiName( versionArtifact.getVersion() );
+        try
+        {
+            restoreJDiffXML( artifact.getFile(), apiname );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to restore the JDiff descriptor " + artifact.getFile() + ": "
+                + e.getMessage(), e );
+        }
+        getLog().info( "Using the JDiff descriptor attached to " + artifact.getId() );
+        return apiname;
+    }
+
+    /**
+     * @return the classifier of the descriptors attached to releases, or {@code null} if they aren't used
+     */
+    protected String getApiClassifier()
+    {
+        return apiClassifier;
+    }
+
+    /**
+     * @return the classifier of the jar holding the compiled classes, or {@code null} for the main artifact
+     */
+    protected abstract String getArtifactClassifier();
+
+    /**
+     * @return the classifier of the jar holding the sources, such as {@code sources}
+     */
+    protected abstract String getSourcesClassifier();
+
+    /**
+     * Replaces the source roots of {@code project}, which has been built from the repository, by {@code sourceRoot}.
+     *
+     * @param project the project
+     * @param sourceRoot the directory holding the unpacked sources
+     */
+    protected abstract void setSourceRoot( MavenProject project, String sourceRoot );
+
+    /**
+     * Generates the JDiff XML descriptors of all {@code apis}, concurrently when more than one thread is configured.
+     * The errors of all failing descriptors are reported together.
+     *
+     * @param apis the projects to describe, mapped by api name
+     * @throws MavenReportException if any of the descriptors can't be generated
+     */
+    protected void generateJDiffXMLs( Map<String, List<MavenProject>> apis )
+        throws MavenReportException
+    {
+        Map<String, Callable<Void>> tasks = new LinkedHashMap<String, Callable<Void>>();
+        for ( final Map.Entry<String, List<MavenProject>> api : apis.entrySet() )
+        {
+            tasks.put( api.getKey(), new Callable<Void>()
+            {
+                public Void call()
+                    throws JavadocExecutionException
+                {
+                    generateJDiffXML( api.getValue(), api.getKey() );
+                    return null;
+                }
+            } );
+        }
+        runConcurrently( tasks, "generate the JDiff descriptors" );
+    }
+
+    /**
+     * Runs all {@code tasks}, concurrently when more than one thread is configured. The errors of all failing tasks are
+     * reported together.
+     *
+     * @param tasks the tasks, mapped by name
+     * @param description what the tasks do, for the error messages
+     * @throws MavenReportException if any of the tasks fails
+     */
+    private void runConcurrently( Map<String, Callable<Void>> tasks, String description )
+        throws MavenReportException
+    {
+        int threadCount = Math.min( getThreads(), tasks.size() );
+        if ( threadCount <= 1 )
+        {
+            for ( Callable<Void> task : tasks.values() )
+            {
+                try
+                {
+                    task.call();
+                }
+                catch ( MavenReportException e )
+                {
+                    throw e;
+                }
+                catch ( Exception e )
+                {
+                    throw new MavenReportException( e.getMessage(), e );
+                }
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+        try
+        {
+            Map<String, Future<Void>> results = new LinkedHashMap<String, Future<Void>>();
+            for ( Map.Entry<String, Callable<Void>> task : tasks.entrySet() )
+            {
+                results.put( task.getKey(), executor.submit( task.getValue() ) );
+            }
+
+            List<String> failures = new ArrayList<String>();
+            ExecutionException firstFailure = null;
+            for ( Map.Entry<String, Future<Void>> result : results.entrySet() )
+            {
+                try
+                {
+                    result.getValue().get();
+                }
+                catch ( ExecutionException e )
+                {
+                    failures.add( result.getKey() + ": " + e.getCause().getMessage() );
+                    if ( firstFailure == null )
+                    {
+                        firstFailure = e;
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new MavenReportException( "Interrupted while waiting to " + description, e );
+                }
+            }
+
+            if ( !failures.isEmpty() )
+            {
+                throw new MavenReportException( "Unable to " + description + " "
+                    + StringUtils.join( failures.iterator(), ", " ), firstFailure );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    protected abstract String getApiName( String lhsTag );
+
+    protected abstract String getSourceDirectory( Build build );
+
+    protected abstract String getOutputDirectory( Build build );
+
+    /**
+     * @return the projects whose API is reported on, which are all reactor projects with sources in aggregate mode
+     */
+    protected List<MavenProject> getApiProjects()
+    {
+        if ( !aggregate )
+        {
+            return Collections.singletonList( project );
+        }
+
+        List<MavenProject> result = new ArrayList<MavenProject>();
+        for ( MavenProject reactorProject : reactorProjects )
+        {
+            if ( !getProjectSourceRoots( reactorProject ).isEmpty() )
+            {
+                result.add( reactorProject );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if the current project is the last one of the reactor
+     */
+    private boolean isLastReactorProject()
+    {
+        return project.equals( reactorProjects.get( reactorProjects.size() - 1 ) );
+    }
+
+    public boolean isExternalReport()
+    {
+        return true;
+    }
+
+    /**
+     * Resolves the {@code versionSpec} of {@code module}, from its sources jar or from the checkout.
+     *
+     * @param module the reactor project
+     * @param versionSpec the version or version range
+     * @return the project, or {@code null} if the module doesn't exist in the checkout
+     */
+    private MavenProject resolveProject( MavenProject module, String versionSpec )
+        throws MojoFailureException, MojoExecutionException, ProjectBuildingException
+    {
+        MavenProject result;
+        if ( module.getVersion().equals( versionSpec ) )
+        {
+            result = module;
+        }
+        else
+        {
+            if ( useSourcesJar )
+            {
+                result = resolveProjectFromSourcesJar( module, versionSpec );
+                if ( result != null )
+                {
+                    return result;
+                }
+            }
+
+            File executionRootDirectory = new File( getSession().getExecutionRootDirectory() );
+            String modulePath  = executionRootDirectory.toURI().relativize( module.getBasedir().toURI() ).getPath();
+
+            File checkoutDirectory = getCheckoutDirectory( versionSpec, false );
+
+            File pomFile = new File( checkoutDirectory, modulePath + "pom.xml" );
+            getLog().debug( pomFile.getAbsolutePath() );
+            if ( sparseCheckout && !pomFile.isFile() )
+            {
+                getLog().info( "No " + modulePath + "pom.xml in the sparse checkout of " + versionSpec
+                    + ", falling back to a full checkout" );
+                return resolveProjectFromFullCheckout( modulePath, versionSpec );
+            }
+            if ( !pomFile.isFile() )
+            {
+                return null;
+            }
+
+            //FIXME the project built by this call has unresolved variables in path when running on maven 2.2.1
+            result = mavenProjectBuilder.build( pomFile, localRepository, null );
+
+            if ( sparseCheckout && !new File( result.getBuild().getSourceDirectory() ).isDirectory() )
+            {
+                // the source root of the old version differs from the one of the reactor project
+                getLog().info( "No source directory " + result.getBuild().getSourceDirectory()
+                    + " in the sparse checkout of " + versionSpec + ", falling back to a full checkout" );
+                return resolveProjectFromFullCheckout( modulePath, versionSpec );
+            }
+        }
+        return result;
+    }
+
+    private MavenProject resolveProjectFromFullCheckout( String modulePath, String versionSpec )
+        throws MojoFailureException, MojoExecutionException, ProjectBuildingException
+    {
+        File pomFile = new File( getCheckoutDirectory( versionSpec, true ), modulePath + "pom.xml" );
+        getLog().debug( pomFile.getAbsolutePath() );
+        if ( !pomFile.isFile() )
+        {
+            return null;
+        }
+        return mavenProjectBuilder.build( pomFile, localRepository, null );
+    }
+
+    /**
+     * Builds the project of {@code versionSpec} from the repository, with the unpacked sources jar as its source root.
+     *
+     * @param module the reactor project
+     * @param versionSpec the version or version range
+     * @return the project, or {@code null} if there is no sources jar
+     */
+    private MavenProject resolveProjectFromSourcesJar( MavenProject module, String versionSpec )
+        throws MojoFailureException, MojoExecutionException, ProjectBuildingException
+    {
+        Artifact artifact = resolveArtifact( module, versionSpec );
+        if ( artifact.getVersion() == null )
+        {
+            return null;
+        }
+
+        Artifact sourcesArtifact =
+            factory.createArtifactWithClassifier( module.getGroupId(), module.getArtifactId(), artifact.getVersion(),
+                                                  "jar", getSourcesClassifier() );
+        try
+        {
+            artifactResolver.resolve( sourcesArtifact, remoteRepositories, localRepository );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            getLog().info( "Unable to resolve " + sourcesArtifact + ", falling back to SCM: " + e.getMessage() );
+            return null;
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            getLog().info( "No " + getSourcesClassifier() + " jar for " + artifact.getVersion()
+                + ", falling back to SCM" );
+            return null;
+        }
+
+        File sourcesDirectory = new File( getWorkingDirectory(), module.getArtifactId() + "-" + artifact.getVersion()
+            + "-" + getSourcesClassifier() );
+        try
+        {
+            if ( forceCheckout || !sourcesDirectory.isDirectory() )
+            {
+                getLog().info( "Unpacking " + sourcesArtifact.getFile() + " to " + sourcesDirectory );
+                FileUtils.deleteDirectory( sourcesDirectory );
+                JDiffUtils.unpack( sourcesArtifact.getFile(), sourcesDirectory );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to unpack " + sourcesArtifact.getFile() + ": " + e.getMessage(),
+                                              e );
+        }
+
+        MavenProject result = mavenProjectBuilder.buildFromRepository( artifact, remoteRepositories, localRepository );
+        setSourceRoot( result, sourcesDirectory.getAbsolutePath() );
+        return result;
+    }
+
+    /**
+     * Returns the directory holding the checkout of {@code versionSpec}, checking it out on first use. The checkout
+     * covers the whole reactor, so it is done once per build and version.
+     *
+     * @param versionSpec the version or version range
+     * @param full {@code true} to check out everything, even with {@link #sparseCheckout}
+     * @return the checkout directory
+     */
+    private File getCheckoutDirectory( final String versionSpec, final boolean full )
+        throws MojoFailureException, MojoExecutionException
+    {
+        final MavenProject rootProject = reactorProjects.get( 0 );
+        File checkoutDirectory =
+            runOnce( JDIFF_CHECKOUT_DIRECTORY + ":" + versionSpec + ( full ? ":full" : "" ),
+                     "the checkout of " + versionSpec, new Callable<File>()
+                     {
+                         public File call()
+                             throws MojoFailureException, MojoExecutionException
+                         {
+                             return checkout( rootProject, versionSpec, full );
+                         }
+                     } );
+
+        if ( useCheckoutStore )
+        {
+            synchronized ( checkouts )
+            {
+                for ( CheckoutStore.Checkout checkout : checkouts )
+                {
+                    if ( checkout.getDirectory().equals( checkoutDirectory ) )
+                    {
+                        return checkoutDirectory;
+                    }
+                }
+                // checked out by another module, keep it from being evicted while this one reads it
+                try
+                {
+                    checkouts.add( getCheckoutStore().open( checkoutDirectory ) );
+                }
+                catch ( IOException e )
+                {
+                    throw new MojoExecutionException( e.getMessage(), e );
+                }
+            }
+        }
+        return checkoutDirectory;
+    }
+
+    private CheckoutStore getCheckoutStore()
+    {
+        return new CheckoutStore( checkoutStoreDirectory, checkoutStoreSize * 1024 * 1024, getLog() );
+    }
+
+    /**
+     * Closes the checkouts of the store opened by this execution, so other builds may evict them again.
+     */
+    private void closeCheckouts()
+    {
+        synchronized ( checkouts )
+        {
+            for ( CheckoutStore.Checkout checkout : checkouts )
+            {
+                try
+                {
+                    checkout.close();
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Unable to release the stored checkout " + checkout.getDirectory() + ": "
+                        + e.getMessage() );
+                }
+            }
+            checkouts.clear();
+        }
+    }
+
+    /**
+     * Runs {@code task} once per reactor build: the first module to ask for its result registers it in the plugin
+     * context of the first reactor project and runs it, the modules built concurrently wait for its outcome. A failed
+     * task is reported to every module without being attempted again.
+     *
+     * @param key the key of the task in the plugin context
+     * @param description the description of the task, for the log
+     * @param task the task
+     * @return the result of the task
+     */
+    @SuppressWarnings( "unchecked" )
+    private <T> T runOnce( String key, String description, Callable<T> task )
+        throws MojoFailureException, MojoExecutionException
+    {
+        Map<String, Object> pluginContext =
+            getSession().getPluginContext( getPluginDescriptor(), reactorProjects.get( 0 ) );
+
+        FutureTask<T> future;
+        boolean owner = false;
+        synchronized ( pluginContext )
+        {
+            future = (FutureTask<T>) pluginContext.get( key );
+            if ( future == null )
+            {
+                future = new FutureTask<T>( task );
+                pluginContext.put( key, future );
+                owner = true;
+            }
+        }
+
+        if ( owner )
+        {
+            future.run();
+        }
+        else if ( !future.isDone() )
+        {
+            getLog().info( "Waiting for " + description + " by another module" );
+        }
+
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for " + description, e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof MojoFailureException )
+            {
+                throw new MojoFailureException( e.getCause().getMessage(), e );
+            }
+            throw new MojoExecutionException( e.getCause().getMessage(), e );
+        }
+    }
+
+    /**
+     * Returns the versions of {@code artifact} available in the repositories. They are retrieved once per reactor
+     * build, and only when the version cache holds no recent list.
+     *
+     * @param artifact the artifact
+     * @param project the project whose remote repositories are queried
+     * @return the available versions
+     */
+    private List<ArtifactVersion> getAvailableVersions( final Artifact artifact, final MavenProject project )
+        throws MojoFailureException, MojoExecutionException
+    {
+        String id = artifact.getGroupId() + ":" + artifact.getArtifactId();
+        List<String> versions =
+            runOnce( JDIFF_AVAILABLE_VERSIONS + ":" + id, "the versions of " + id, new Callable<List<String>>()
+            {
+                public List<String> call()
+                    throws MojoExecutionException
+                {
+                    return retrieveAvailableVersions( artifact, project );
+                }
+            } );
+
+        List<ArtifactVersion> result = new ArrayList<ArtifactVersion>();
+        for ( String version : versions )
+        {
+            result.add( new DefaultArtifactVersion( version ) );
+        }
+        return result;
     }
 
-    public void executeReport( Locale locale )
-        throws MavenReportException
+    @SuppressWarnings( "unchecked" )
+    private List<String> retrieveAvailableVersions( Artifact artifact, MavenProject project )
+        throws MojoExecutionException
     {
-        MavenProject lhsProject, rhsProject;
+        boolean offline = getSession().getSettings().isOffline();
+        VersionCache cache = new VersionCache( versionCacheDirectory, versionCacheTtl * 60 * 1000 );
+        String range = String.valueOf( artifact.getVersionRange() );
+        List<String> remoteRepositories = new ArrayList<String>();
+        for ( ArtifactRepository repository : (List<ArtifactRepository>) project.getRemoteArtifactRepositories() )
+        {
+            remoteRepositories.add( repository.getId() + "=" + repository.getUrl() );
+        }
+        String repositoriesKey = VersionCache.getRepositoriesKey( localRepository.getBasedir(), remoteRepositories );
         try
         {
-            lhsProject = resolveProject( comparisonVersion );
-            rhsProject = resolveProject( baseVersion );
+            List<String> cached =
+                cache.get( artifact.getGroupId(), artifact.getArtifactId(), range, repositoriesKey, offline );
+            if ( cached != null )
+            {
+                getLog().debug( "Using the cached versions of " + artifact.getDependencyConflictId() );
+                return cached;
+            }
         }
-        catch ( ProjectBuildingException e )
+        catch ( IOException e )
         {
-            throw new MavenReportException( e.getMessage() );
+            getLog().warn( "Unable to read the cached versions: " + e.getMessage() );
         }
-        catch ( MojoFailureException e )
+
+        List<ArtifactRepository> repositories;
+        if ( offline )
         {
-            throw new MavenReportException( e.getMessage() );
+            getLog().info( "No cached versions of " + artifact.getDependencyConflictId()
+                + ", using the local repository only in offline mode" );
+            repositories = Collections.<ArtifactRepository>emptyList();
         }
-        catch ( MojoExecutionException e )
+        else
         {
-            throw new MavenReportException( e.getMessage() );
+            repositories = project.getRemoteArtifactRepositories();
         }
 
-        String lhsTag = getApiName( lhsProject.getVersion() );
-        String rhsTag = getApiName( rhsProject.getVersion() );
-
+        List<String> versions = new ArrayList<String>();
         try
         {
-            generateJDiffXML( lhsProject, lhsTag );
-            generateJDiffXML( rhsProject, rhsTag );
+            @SuppressWarnings( "unchecked" )
+            List<ArtifactVersion> availableVersions =
+                metadataSource.retrieveAvailableVersions( artifact, localRepository, repositories );
+            for ( ArtifactVersion version : availableVersions )
+            {
+                versions.add( version.toString() );
+            }
         }
-        catch ( JavadocExecutionException e )
+        catch ( ArtifactMetadataRetrievalException e )
         {
-            throw new MavenReportException( e.getMessage(), e );
+            throw new MojoExecutionException( "Error determining previous version: " + e.getMessage(), e );
         }
 
-        generateReport( getSourceDirectory( rhsProject.getBuild() ), lhsTag, rhsTag );
+        if ( !offline )
+        {
+            try
+            {
+                cache.put( artifact.getGroupId(), artifact.getArtifactId(), range, repositoriesKey, versions );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Unable to cache the versions: " + e.getMessage() );
+            }
+        }
+        return versions;
+    }
 
+    /**
+     * Checks out {@code versionSpec}, either in the shared checkout store or in the working directory of
+     * {@code rootProject}.
+     *
+     * @param rootProject the first reactor project
+     * @param versionSpec the version or version range
+     * @param full {@code true} to check out everything, even with {@link #sparseCheckout}
+     * @return the checkout directory
+     */
+    private File checkout( MavenProject rootProject, String versionSpec, boolean full )
+        throws MojoFailureException, MojoExecutionException
+    {
+        Artifact artifact = resolveArtifact( rootProject, versionSpec );
+        MavenProject externalProject;
         try
         {
-            IOUtil.copy( getClass().getResourceAsStream( "/black.gif" ), new FileWriter( new File( reportOutputDirectory, "black.gif" ) ) );
+            externalProject = mavenProjectBuilder.buildFromRepository( artifact, remoteRepositories, localRepository );
         }
-        catch ( IOException e )
+        catch ( ProjectBuildingException e )
         {
-            getLog().warn( e.getMessage() );
+            throw new MojoExecutionException( e.getMessage(), e );
         }
-    }
-
-    protected abstract String getApiName( String lhsTag );
-
-    protected abstract String getSourceDirectory( Build build );
-
-    public boolean isExternalReport()
-    {
-        return true;
-    }
 
-    private MavenProject resolveProject( String versionSpec )
-        throws MojoFailureException, MojoExecutionException, ProjectBuildingException
-    {
-        MavenProject result;
-        if ( project.getVersion().equals( versionSpec ) )
+        final boolean sparse = sparseCheckout && !full;
+        File checkoutDirectory;
+        try
+        {
+            if ( useCheckoutStore )
+            {
+                final MavenProject scmProject = externalProject;
+                CheckoutStore.Fetcher fetcher = new CheckoutStore.Fetcher()
+                {
+                    public void fetch( File directory )
+                        throws IOException, MojoFailureException, ScmException
+                    {
+                        fetchSources( directory, scmProject, sparse );
+                    }
+                };
+                CheckoutStore.Checkout checkout =
+                    getCheckoutStore().checkout( getConnection( externalProject ), externalProject.getVersion(),
+                                                 sparse, forceCheckout, fetcher );
+                synchronized ( checkouts )
+                {
+                    checkouts.add( checkout );
+                }
+                checkoutDirectory = checkout.getDirectory();
+            }
+            else
+            {
+                checkoutDirectory =
+                    new File( new File( rootProject.getBuild().getDirectory(), "jdiff" ),
+                              externalProject.getVersion() + ( sparseCheckout && full ? "-full" : "" ) );
+                fetchSources( checkoutDirectory, externalProject, sparse );
+            }
+        }
+        catch ( IOException e )
         {
-            result = project;
+            throw new MojoExecutionException( e.getMessage(), e );
         }
-        else
+        catch ( ScmException e )
         {
-            File executionRootDirectory = new File( getSession().getExecutionRootDirectory() );
-            String modulePath  = executionRootDirectory.toURI().relativize( project.getBasedir().toURI() ).getPath();
-
-            File checkoutDirectory = (File) getSession().getPluginContext( getPluginDescriptor(), reactorProjects.get( 0 ) ).get( JDIFF_CHECKOUT_DIRECTORY );
-
-            //FIXME the project built by this call has unresolved variables in path when running on maven 2.2.1
-            result = mavenProjectBuilder.build( new File( checkoutDirectory, modulePath + "pom.xml" ), localRepository, null );
-
-            getLog().debug(  new File( checkoutDirectory, modulePath + "pom.xml" ).getAbsolutePath() );
+            throw new MojoExecutionException( e.getMessage(), e );
         }
-        return result;
+
+        return checkoutDirectory;
     }
 
     private String getConnection( MavenProject mavenProject )
@@ -207,49 +1314,251 @@ public abstract class AbstractJDiffMojo
         return connection;
     }
 
-    private void fetchSources( final File checkoutDir, MavenProject mavenProject )
+    private void fetchSources( final File checkoutDir, MavenProject mavenProject, boolean sparse )
         throws IOException, MojoFailureException, ScmException
     {
-        if ( forceCheckout && checkoutDir.exists() )
+        BuildMetrics.Phase phase = getMetrics().start( "checkout" );
+        try
+        {
+            if ( forceCheckout && checkoutDir.exists() )
+            {
+                FileUtils.deleteDirectory( checkoutDir );
+            }
+
+            String includes = sparse ? getCheckoutIncludes() : null;
+            getLog().debug( "Checkout includes: " + includes );
+
+            String tag = mavenProject.getScm() == null ? null : mavenProject.getScm().getTag();
+            if ( "HEAD".equals( tag ) )
+            {
+                tag = null;
+            }
+
+            if ( checkoutDir.mkdirs() )
+            {
+
+                getLog().info( "Performing checkout to " + checkoutDir );
+
+                new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).checkout( checkoutDir.getPath(),
+                                                                                                         includes, null,
+                                                                                                         tag );
+            }
+            else
+            {
+                getLog().info( "Performing update to " + checkoutDir );
+
+                new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).update( checkoutDir.getPath(),
+                                                                                                       includes, null,
+                                                                                                       tag );
+            }
+
+            phase.set( "bytes", FileUtils.sizeOfDirectory( checkoutDir ) );
+        }
+        finally
+        {
+            phase.stop();
+        }
+    }
+
+    /**
+     * Collects the paths needed to build and describe the reactor projects: their <code>pom.xml</code> and both their
+     * main and test source roots, relative to the execution root.
+     *
+     * @return the comma separated include patterns
+     */
+    @SuppressWarnings( "unchecked" )
+    private String getCheckoutIncludes()
+    {
+        URI executionRoot = new File( getSession().getExecutionRootDirectory() ).toURI();
+
+        Set<String> includes = new LinkedHashSet<String>();
+        for ( MavenProject reactorProject : reactorProjects )
         {
-            FileUtils.deleteDirectory( checkoutDir );
+            URI basedir = reactorProject.getBasedir().toURI();
+            String modulePath = executionRoot.relativize( basedir ).getPath();
+
+            includes.add( modulePath + "pom.xml" );
+
+            List<String> sourceRoots = new ArrayList<String>();
+            sourceRoots.addAll( reactorProject.getCompileSourceRoots() );
+            sourceRoots.addAll( reactorProject.getTestCompileSourceRoots() );
+            for ( String sourceRoot : sourceRoots )
+            {
+                URI sourceRootUri = new File( sourceRoot ).toURI();
+                String relativePath = basedir.relativize( sourceRootUri ).getPath();
+                if ( !relativePath.equals( sourceRootUri.getPath() ) )
+                {
+                    // only roots within the project exist in the SCM
+                    includes.add( modulePath + relativePath + ( relativePath.endsWith( "/" ) ? "" : "/" ) + "**" );
+                }
+            }
         }
+        return StringUtils.join( includes.iterator(), "," );
+    }
 
-        if ( checkoutDir.mkdirs() )
+    /**
+     * Generates the report comparing {@code oldApi} to {@code newApi}. An incremental report is rendered to a staging
+     * directory first, and only its changed pages are copied to {@code outputDirectory}.
+     *
+     * @param srcDirs the source directories of the base version
+     * @param oldApi the api name of the version compared against
+     * @param newApi the api name of the base version
+     * @param outputDirectory the report output directory
+     * @throws MavenReportException if the report can't be generated
+     */
+    private void generateReport( List<String> srcDirs, String oldApi, String newApi, File outputDirectory )
+        throws MavenReportException
+    {
+        BuildMetrics.Phase phase = getMetrics().start( "report " + oldApi );
+        try
         {
+            File renderDirectory = outputDirectory;
+            if ( incrementalReport )
+            {
+                renderDirectory = new File( getWorkingDirectory(), "report-" + oldApi );
+                FileUtils.deleteDirectory( renderDirectory );
+            }
 
-            getLog().info( "Performing checkout to " + checkoutDir );
+            if ( isUnchanged( oldApi, newApi ) )
+            {
+                getLog().info( "No API changes between " + oldApi + " and " + newApi + ", skipping the report" );
+                phase.set( "unchanged", 1 );
+                writeUnchangedPage( oldApi, newApi, renderDirectory );
+            }
+            else if ( "native".equals( diffEngine ) )
+            {
+                generateNativeReport( oldApi, newApi, renderDirectory );
+            }
+            else
+            {
+                generateDocletReport( srcDirs, oldApi, newApi, renderDirectory, phase );
+            }
+            copyResources( renderDirectory );
 
-            new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).checkout( checkoutDir.getPath() );
+            if ( incrementalReport )
+            {
+                ReportManifest manifest = new ReportManifest( outputDirectory );
+                manifest.synchronize( renderDirectory );
+                getLog().info( "JDiff report against " + oldApi + ": " + manifest.getWritten() + " pages written, "
+                    + manifest.getUnchanged() + " unchanged, " + manifest.getRemoved() + " removed" );
+                phase.set( "pagesWritten", manifest.getWritten() );
+                phase.set( "pagesUnchanged", manifest.getUnchanged() );
+            }
         }
-        else
+        catch ( IOException e )
+        {
+            throw new MavenReportException( e.getMessage(), e );
+        }
+        finally
+        {
+            phase.stop();
+        }
+    }
+
+    /**
+     * Compares the fingerprints of two APIs.
+     *
+     * @param oldApi the api name of the old version
+     * @param newApi the api name of the new version
+     * @return {@code true} if the fingerprints of both APIs are known and equal
+     * @throws IOException if a snapshot or a descriptor can't be read
+     */
+    private boolean isUnchanged( String oldApi, String newApi )
+        throws IOException
+    {
+        Long oldFingerprint = getFingerprint( oldApi );
+        Long newFingerprint = getFingerprint( newApi );
+        return oldFingerprint != null && oldFingerprint.equals( newFingerprint );
+    }
+
+    /**
+     * Returns the fingerprint of an API, read from its snapshot. When there's no snapshot, because
+     * {@code writeSnapshots} was off when the API was generated, the fingerprint is computed from the descriptor.
+     *
+     * @param apiname the api name
+     * @return the fingerprint, or {@code null} if the API has neither a snapshot nor a descriptor
+     * @throws IOException if the snapshot or the descriptor can't be read
+     */
+    private Long getFingerprint( String apiname )
+        throws IOException
+    {
+        File snapshot = new File( getWorkingDirectory(), apiname + ApiSnapshot.EXTENSION );
+        if ( snapshot.isFile() )
+        {
+            return Long.valueOf( new ApiSnapshot( snapshot ).getFingerprint() );
+        }
+
+        File descriptor = new File( getWorkingDirectory(), apiname + ".xml" );
+        if ( !descriptor.isFile() )
         {
-            getLog().info( "Performing update to " + checkoutDir );
+            getLog().info( "No snapshot or descriptor of " + apiname
+                + ", the unchanged API shortcut needs writeSnapshots to be enabled" );
+            return null;
+        }
 
-            new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).update( checkoutDir.getPath() );
+        File tempSnapshot = File.createTempFile( apiname + "-", ApiSnapshot.EXTENSION, getWorkingDirectory() );
+        try
+        {
+            new ApiSnapshotWriter().write( descriptor, tempSnapshot );
+            return Long.valueOf( new ApiSnapshot( tempSnapshot ).getFingerprint() );
         }
+        finally
+        {
+            tempSnapshot.delete();
+        }
+    }
+
+    /**
+     * Writes the page reporting that two APIs are equal in place of the JDiff report.
+     *
+     * @param oldApi the api name of the old version
+     * @param newApi the api name of the new version
+     * @param outputDirectory the directory of the report
+     * @throws IOException if the page can't be written
+     */
+    private void writeUnchangedPage( String oldApi, String newApi, File outputDirectory )
+        throws IOException
+    {
+        String title = "API Differences between " + StringEscapeUtils.escapeHtml( oldApi ) + " and "
+            + StringEscapeUtils.escapeHtml( newApi );
+
+        StringBuffer html = new StringBuffer();
+        html.append( "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n" );
+        html.append( "<html>\n<head>\n<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n" );
+        html.append( "<title>" ).append( title ).append( "</title>\n</head>\n<body>\n<h1>" ).append( title );
+        html.append( "</h1>\n<p>No API changes.</p>\n</body>\n</html>\n" );
+
+        outputDirectory.mkdirs();
+        FileUtils.fileWrite( new File( outputDirectory, "changes.html" ).getAbsolutePath(), "UTF-8",
+                             html.toString() );
     }
 
-    private void generateReport( String srcDir, String oldApi, String newApi )
+    private void generateDocletReport( List<String> srcDirs, String oldApi, String newApi, File outputDirectory,
+                                       BuildMetrics.Phase phase )
         throws MavenReportException
     {
         try
         {
-            getReportOutputDirectory().mkdirs();
+            outputDirectory.mkdirs();
 
+            // always forked: the doclet resolves -oldapi and -newapi against the current directory
             JavadocExecutor javadoc = new JavadocExecutor( getJavadocExecutable(), getLog() );
+            javadoc.setOutputFile( getJavadocOutputFile( "report-" + oldApi ) );
 
             javadoc.addArgument( "-private" );
 
-            javadoc.addArgumentPair( "d", getReportOutputDirectory().getAbsolutePath() );
+            javadoc.addArgumentPair( "d", outputDirectory.getAbsolutePath() );
 
-            javadoc.addArgumentPair( "sourcepath", srcDir );
+            javadoc.addPathArgumentPair( "sourcepath", srcDirs );
 
-            List<String> classpathElements = new ArrayList<String>();
+            Set<String> classpathElements = new LinkedHashSet<String>();
             classpathElements.add( getBuildOutputDirectory() );
-            classpathElements.addAll( JDiffUtils.getClasspathElements( project ) );
-            String classpath = StringUtils.join( classpathElements.iterator(), File.pathSeparator );
-            javadoc.addArgumentPair( "classpath", StringUtils.quoteAndEscape( classpath, '\'' ) );
+            for ( MavenProject apiProject : getApiProjects() )
+            {
+                classpathElements.addAll( JDiffUtils.getClasspathElements( apiProject ) );
+            }
+            javadoc.addPathArgumentPair( "classpath", new ArrayList<String>( classpathElements ) );
+            configureJvm( javadoc, getSourceFileCount( newApi ), classpathElements );
 
             javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
 
@@ -266,7 +1575,18 @@ public abstract class AbstractJDiffMojo
                 javadoc.addArgument( pckg );
             }
 
-            javadoc.execute( getWorkingDirectory().getAbsolutePath() );
+            JavadocResult result = javadoc.execute( getWorkingDirectory().getAbsolutePath() );
+            phase.set( "warnings", result.getWarnings() );
+            if ( result.getPeakRssKb() >= 0 )
+            {
+                phase.set( "childPeakRssKb", result.getPeakRssKb() );
+            }
+            if ( result.getDifferencePercent() >= 0 )
+            {
+                getLog().info( "JDiff: " + result.getDifferencePercent() + "% difference between " + oldApi
+                    + " and " + newApi );
+                phase.set( "differencePercent", Math.round( result.getDifferencePercent() ) );
+            }
         }
         catch ( IOException e )
         {
@@ -278,6 +1598,40 @@ public abstract class AbstractJDiffMojo
         }
     }
 
+    /**
+     * Compares the descriptors of two APIs in the working directory, through their snapshots when both have one.
+     *
+     * @param oldApi the api name of the old API
+     * @param newApi the api name of the new API
+     * @return the differences
+     * @throws IOException if a descriptor can't be read
+     */
+    protected ApiDiff compareDescriptors( String oldApi, String newApi )
+        throws IOException
+    {
+        File oldSnapshot = new File( getWorkingDirectory(), oldApi + ApiSnapshot.EXTENSION );
+        File newSnapshot = new File( getWorkingDirectory(), newApi + ApiSnapshot.EXTENSION );
+        if ( oldSnapshot.isFile() && newSnapshot.isFile() )
+        {
+            return new ApiComparator().compare( oldSnapshot, newSnapshot );
+        }
+        return new ApiComparator().compare( new File( getWorkingDirectory(), oldApi + ".xml" ),
+                                            new File( getWorkingDirectory(), newApi + ".xml" ) );
+    }
+
+    private void generateNativeReport( String oldApi, String newApi, File outputDirectory )
+        throws MavenReportException
+    {
+        try
+        {
+            new ApiDiffHtmlWriter().write( compareDescriptors( oldApi, newApi ), outputDirectory );
+        }
+        catch ( IOException e )
+        {
+            throw new MavenReportException( e.getMessage(), e );
+        }
+    }
+
     /** {@inheritDoc} */
     public String getDescription( Locale locale )
     {
@@ -306,61 +1660,108 @@ public abstract class AbstractJDiffMojo
         return getDestDir() + "/changes";
     }
 
-    private Artifact resolveArtifact( String versionSpec )
+    private Artifact resolveArtifact( MavenProject project, String versionSpec )
         throws MojoFailureException, MojoExecutionException
     {
-        // Find the previous version JAR and resolve it, and it's dependencies
-        VersionRange range;
-        try
-        {
-            range = VersionRange.createFromVersionSpec( versionSpec );
-        }
-        catch ( InvalidVersionSpecificationException e )
-        {
-            throw new MojoFailureException( "Invalid comparison version: " + e.getMessage() );
-        }
-
-        Artifact previousArtifact;
+        BuildMetrics.Phase phase = getMetrics().start( "resolve " + project.getArtifactId() + ":" + versionSpec );
         try
         {
-            previousArtifact =
-                factory.createDependencyArtifact( project.getGroupId(), project.getArtifactId(), range,
-                                                  project.getPackaging(), null, Artifact.SCOPE_COMPILE );
+            // Find the previous version JAR and resolve it, and it's dependencies
+            VersionRange range;
+            try
+            {
+                range = VersionRange.createFromVersionSpec( versionSpec );
+            }
+            catch ( InvalidVersionSpecificationException e )
+            {
+                throw new MojoFailureException( "Invalid comparison version: " + e.getMessage() );
+            }
 
-            if ( !previousArtifact.getVersionRange().isSelectedVersionKnown( previousArtifact ) )
+            Artifact previousArtifact;
+            try
             {
-                getLog().debug( "Searching for versions in range: " + previousArtifact.getVersionRange() );
-                @SuppressWarnings( "unchecked" )
-                List<ArtifactVersion> availableVersions =
-                    metadataSource.retrieveAvailableVersions( previousArtifact, localRepository,
-                                                              project.getRemoteArtifactRepositories() );
-                filterSnapshots( availableVersions );
-                ArtifactVersion version = range.matchVersion( availableVersions );
-                if ( version != null )
+                previousArtifact =
+                    factory.createDependencyArtifact( project.getGroupId(), project.getArtifactId(), range,
+                                                      project.getPackaging(), null, Artifact.SCOPE_COMPILE );
+
+                if ( !previousArtifact.getVersionRange().isSelectedVersionKnown( previousArtifact ) )
                 {
-                    previousArtifact.selectVersion( version.toString() );
+                    getLog().debug( "Searching for versions in range: " + previousArtifact.getVersionRange() );
+                    List<ArtifactVersion> availableVersions = getAvailableVersions( previousArtifact, project );
+                    filterSnapshots( availableVersions );
+                    ArtifactVersion version = range.matchVersion( availableVersions );
+                    if ( version != null )
+                    {
+                        previousArtifact.selectVersion( version.toString() );
+                    }
                 }
             }
+            catch ( OverConstrainedVersionException e1 )
+            {
+                throw new MojoFailureException( "Invalid comparison version: " + e1.getMessage() );
+            }
+
+            if ( previousArtifact.getVersion() == null )
+            {
+                getLog().info( "Unable to find a previous version of the project in the repository" );
+            }
+            else
+            {
+                getLog().debug( "Previous version: " + previousArtifact.getVersion() );
+            }
+
+            return previousArtifact;
         }
-        catch ( OverConstrainedVersionException e1 )
-        {
-            throw new MojoFailureException( "Invalid comparison version: " + e1.getMessage() );
-        }
-        catch ( ArtifactMetadataRetrievalException e11 )
+        finally
         {
-            throw new MojoExecutionException( "Error determining previous version: " + e11.getMessage(), e11 );
+            phase.stop();
         }
+    }
 
-        if ( previousArtifact.getVersion() == null )
+    /**
+     * Lists the most recent released versions of {@code project} matching {@code versionSpec}.
+     *
+     * @param project the project
+     * @param versionSpec the version range
+     * @param count the maximum number of versions
+     * @return the versions, newest first
+     */
+    private List<String> resolveVersions( MavenProject project, String versionSpec, int count )
+        throws MojoFailureException, MojoExecutionException
+    {
+        VersionRange range;
+        try
         {
-            getLog().info( "Unable to find a previous version of the project in the repository" );
+            range = VersionRange.createFromVersionSpec( versionSpec );
         }
-        else
+        catch ( InvalidVersionSpecificationException e )
         {
-            getLog().debug( "Previous version: " + previousArtifact.getVersion() );
+            throw new MojoFailureException( "Invalid comparison version: " + e.getMessage() );
         }
 
-        return previousArtifact;
+        Artifact artifact =
+            factory.createDependencyArtifact( project.getGroupId(), project.getArtifactId(), range,
+                                              project.getPackaging(), null, Artifact.SCOPE_COMPILE );
+        List<ArtifactVersion> availableVersions =
+            new ArrayList<ArtifactVersion>( getAvailableVersions( artifact, project ) );
+        filterSnapshots( availableVersions );
+        Collections.sort( availableVersions, new Comparator<ArtifactVersion>()
+        {
+            public int compare( ArtifactVersion o1, ArtifactVersion o2 )
+            {
+                return o2.compareTo( o1 );
+            }
+        } );
+
+        List<String> versions = new ArrayList<String>();
+        for ( ArtifactVersion version : availableVersions )
+        {
+            if ( versions.size() < count && range.containsVersion( version ) )
+            {
+                versions.add( version.toString() );
+            }
+        }
+        return versions;
     }
 
     private void filterSnapshots( List<ArtifactVersion> versions )
@@ -379,44 +1780,13 @@ public abstract class AbstractJDiffMojo
         return ResourceBundle.getBundle( "jdiff-report", locale, this.getClass().getClassLoader() );
     }
 
-
-
-
-
-    @SuppressWarnings( "unchecked" )
     public void execute()
         throws MojoExecutionException, MojoFailureException
     {
-        // first project should do the checkout
-        if( project.equals( reactorProjects.get( 0 ) ) )
+        if ( aggregate && !isLastReactorProject() )
         {
-            Artifact artifact = resolveArtifact( comparisonVersion );
-            MavenProject externalProject;
-            try
-            {
-                externalProject = mavenProjectBuilder.buildFromRepository( artifact, remoteRepositories, localRepository );
-            }
-            catch ( ProjectBuildingException e )
-            {
-                throw new MojoExecutionException( e.getMessage(), e );
-            }
-
-            File checkoutDirectory = new File( getWorkingDirectory(), externalProject.getVersion() );
-
-            try
-            {
-                fetchSources( checkoutDirectory, externalProject );
-
-                getSession().getPluginContext( getPluginDescriptor(), project ).put( JDIFF_CHECKOUT_DIRECTORY, checkoutDirectory );
-            }
-            catch ( IOException e )
-            {
-                throw new MojoExecutionException( e.getMessage(), e );
-            }
-            catch ( ScmException e )
-            {
-                throw new MojoExecutionException( e.getMessage(), e );
-            }
+            getLog().info( "Skipping, the aggregated report is generated by the last project of the reactor" );
+            return;
         }
 
         if ( !canGenerateReport() )
@@ -500,7 +1870,11 @@ public abstract class AbstractJDiffMojo
 
     public boolean canGenerateReport()
     {
-       return !getProjectSourceRoots( project ).isEmpty();
+        if ( aggregate )
+        {
+            return isLastReactorProject() && !getApiProjects().isEmpty();
+        }
+        return !getProjectSourceRoots( project ).isEmpty();
     }
 
     private List<String> getProjectSourceRoots( MavenProject project )
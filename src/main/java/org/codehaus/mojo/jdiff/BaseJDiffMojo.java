@@ -1,14 +1,31 @@
 package org.codehaus.mojo.jdiff;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.lang.SystemUtils;
 import org.apache.maven.artifact.Artifact;
@@ -21,12 +38,31 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.toolchain.Toolchain;
 import org.apache.maven.toolchain.ToolchainManager;
+import org.codehaus.mojo.jdiff.api.ApiDescriptor;
+import org.codehaus.mojo.jdiff.api.ApiPackage;
+import org.codehaus.mojo.jdiff.api.ApiSnapshot;
+import org.codehaus.mojo.jdiff.api.ApiSnapshotWriter;
+import org.codehaus.mojo.jdiff.api.ApiXmlMerger;
+import org.codehaus.mojo.jdiff.api.ApiXmlWriter;
+import org.codehaus.mojo.jdiff.api.ClassFileApiExtractor;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 
 public abstract class BaseJDiffMojo
     extends AbstractMojo
 {
+    /**
+     * The type of the compressed descriptors attached to the project by the descriptor goal.
+     */
+    protected static final String API_ARTIFACT_TYPE = "xml.gz";
+
+    /**
+     * The <code>name</code> attribute of the root element of a JDiff XML descriptor.
+     */
+    private static final Pattern API_NAME = Pattern.compile( "<api\\b[^>]*?\\bname=\"([^\"]*)\"" );
+
     /**
      * The working directory for this plugin.
      */
@@ -39,12 +75,96 @@ public abstract class BaseJDiffMojo
     @Parameter( property = "javadocExecutable" )
     private String javadocExecutable;
 
+    /**
+     * Run javadoc inside the Maven JVM instead of forking a javadoc process or using a worker. In-process runs are
+     * serialized, because the doclet keeps state in static fields and prints to the standard output, and guarded
+     * against <code>System.exit</code>. Javadoc is still forked when a toolchain or the
+     * <code>javadocExecutable</code> parameter selects another JDK, or when the JVM doesn't allow to install the guard,
+     * as Java 18 and later without <code>-Djava.security.manager=allow</code>.
+     */
+    @Parameter( property = "jdiff.inProcess", defaultValue = "false" )
+    private boolean inProcess;
+
+    /**
+     * Generate the JDiff XML descriptors that aren't generated in-process in a persistent worker JVM of the selected
+     * JDK, which is reused by the following modules of the build instead of forking javadoc for every descriptor.
+     * Requires <code>redirectJavadocOutput</code>. A worker exits with the Maven JVM, or after being idle for 600
+     * seconds when the Maven JVM outlives the build. When a worker dies during a request, for instance because the
+     * doclet called <code>System.exit</code> where the JVM doesn't allow to guard against it, a warning is logged and
+     * javadoc is forked for that descriptor instead.
+     */
+    @Parameter( property = "jdiff.javadocWorker", defaultValue = "false" )
+    private boolean javadocWorker;
+
+    /**
+     * Write the output of forked javadoc processes to log files in the working directory instead of the build log.
+     * Only the first errors and warnings are copied to the build log.
+     */
+    @Parameter( property = "jdiff.redirectJavadocOutput", defaultValue = "true" )
+    private boolean redirectJavadocOutput;
+
     /**
      * List of packages.
      */
     @Parameter( property = "includePackageNames" )
     private ArrayList<String> includePackageNames;
 
+    /**
+     * The number of threads used to generate independent JDiff XML descriptors concurrently, such as those of the
+     * comparisonVersion and the baseVersion, and the reports against several comparison versions. Use <code>1</code>
+     * to generate them one after the other.
+     */
+    @Parameter( property = "jdiff.threads", defaultValue = "1" )
+    private int threads;
+
+    /**
+     * The number of javadoc runs the packages of a JDiff XML descriptor are split into, balanced by the size of their
+     * sources. The runs are concurrent and their descriptors are merged into one. Use <code>0</code> for one run per
+     * available processor, or <code>1</code> to describe all packages in a single run.
+     */
+    @Parameter( property = "jdiff.descriptorShards", defaultValue = "1" )
+    private int descriptorShards;
+
+    /**
+     * Reuse JDiff XML descriptors generated by earlier builds when neither the sources, the packages, the classpath nor
+     * the doclet have changed. Off by default, as the cache is shared by all builds on this machine.
+     */
+    @Parameter( property = "jdiff.useDescriptorCache", defaultValue = "false" )
+    private boolean useDescriptorCache;
+
+    /**
+     * The directory where JDiff XML descriptors are cached between builds.
+     */
+    @Parameter( property = "jdiff.descriptorCacheDirectory", defaultValue = "${user.home}/.m2/jdiff-cache" )
+    private File descriptorCacheDirectory;
+
+    /**
+     * The maximum size of the descriptor cache in megabytes. The least recently used descriptors are evicted first.
+     */
+    @Parameter( property = "jdiff.descriptorCacheSize", defaultValue = "256" )
+    private long descriptorCacheSize;
+
+    /**
+     * Write a compact binary snapshot next to each JDiff XML descriptor. The native diff engine and the check goal
+     * compare the snapshots instead of parsing the XML again.
+     */
+    @Parameter( property = "jdiff.writeSnapshots", defaultValue = "true" )
+    private boolean writeSnapshots;
+
+    /**
+     * The maximum heap of forked javadoc processes, such as <code>2g</code>. By default it is estimated from the number
+     * of source files and the size of the classpath.
+     */
+    @Parameter( property = "jdiff.javadocMaxHeap" )
+    private String javadocMaxHeap;
+
+    /**
+     * Additional JVM options of forked javadoc processes, such as <code>-XX:+UseSerialGC</code>, which are passed
+     * with <code>-J</code>. Without a collector option the JVM picks its default one.
+     */
+    @Parameter( property = "jdiff.javadocJvmOptions" )
+    private List<String> javadocJvmOptions;
+
     @Component
     private ToolchainManager toolchainManager;
 
@@ -55,9 +175,16 @@ public abstract class BaseJDiffMojo
     private MavenSession session;
 
     /**
-     * Holds the packages of both the comparisonVersion and baseVersion
+     * Holds the packages of both the comparisonVersion and baseVersion, which may be collected concurrently
      */
-    private final Set<String> packages = new HashSet<String>();
+    private final Set<String> packages = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    private BuildMetrics metrics;
+
+    /**
+     * The number of source files of each described api, by api name
+     */
+    private final Map<String, Integer> sourceFileCounts = new ConcurrentHashMap<String, Integer>();
 
     @Parameter( defaultValue = "${project}", required = true, readonly = true )
     protected MavenProject project;
@@ -75,6 +202,11 @@ public abstract class BaseJDiffMojo
         return packages;
     }
 
+    protected final int getThreads()
+    {
+        return Math.max( 1, threads );
+    }
+
     @SuppressWarnings( "unchecked" )
     protected final Map<String, Artifact> getPluginArtifactMap()
     {
@@ -95,24 +227,43 @@ public abstract class BaseJDiffMojo
     protected void generateJDiffXML(MavenProject project, String apiname )
         throws JavadocExecutionException
     {
+        generateJDiffXML( Collections.singletonList( project ), apiname );
+    }
+
+    /**
+     * Generates a single JDiff XML descriptor for the sources of all {@code projects}.
+     *
+     * @param projects the projects to describe together
+     * @param apiname the api name used as a filename
+     * @throws JavadocExecutionException thrown if an error occurred during the process
+     */
+    protected void generateJDiffXML( List<MavenProject> projects, String apiname )
+        throws JavadocExecutionException
+    {
+        BuildMetrics.Phase phase = getMetrics().start( "descriptor " + apiname );
         try
         {
-            JavadocExecutor javadoc = new JavadocExecutor( getJavadocExecutable(), getLog() );
-
-            javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
-            javadoc.addArgumentPair( "docletpath", getDocletpath() );
-            javadoc.addArgumentPair( "apiname", apiname );
-            javadoc.addArgumentPair( "apidir", getWorkingDirectory().getAbsolutePath() );
-
-            List<String> classpathElements = new ArrayList<String>();
-            classpathElements.add( getBuildOutputDirectory() );
-            classpathElements.addAll( JDiffUtils.getClasspathElements( project ) );
-            String classpath = StringUtils.join( classpathElements.iterator(), File.pathSeparator );
-            javadoc.addArgumentPair( "classpath", StringUtils.quoteAndEscape( classpath, '\'' ) );
-
-            String sourcePath =
-                StringUtils.join( JDiffUtils.getProjectSourceRoots( project, getCompileSourceRoots(project) ).iterator(), File.pathSeparator );
-            javadoc.addArgumentPair( "sourcepath", StringUtils.quoteAndEscape( sourcePath, '\'' ) );
+            Set<String> classpath = new LinkedHashSet<String>();
+            classpath.add( getBuildOutputDirectory() );
+            List<String> sourceRoots = new ArrayList<String>();
+            List<File> sourceDirectories = new ArrayList<File>();
+            Set<String> scannedPackages = new TreeSet<String>();
+            int sourceFiles = 0;
+            for ( MavenProject project : projects )
+            {
+                classpath.addAll( JDiffUtils.getClasspathElements( project ) );
+                List<String> projectSourceRoots =
+                    JDiffUtils.getProjectSourceRoots( project, getCompileSourceRoots( project ) );
+                sourceRoots.addAll( projectSourceRoots );
+                for ( String sourceRoot : projectSourceRoots )
+                {
+                    sourceDirectories.add( FileUtils.resolveFile( project.getBasedir(), sourceRoot ) );
+                }
+                sourceFiles += JDiffUtils.scanSources( project.getBasedir(), projectSourceRoots, scannedPackages );
+            }
+            phase.set( "sourceFiles", sourceFiles );
+            sourceFileCounts.put( apiname, Integer.valueOf( sourceFiles ) );
+            List<String> classpathElements = new ArrayList<String>( classpath );
 
             Set<String> pckgs = new TreeSet<String>();
 
@@ -123,22 +274,485 @@ public abstract class BaseJDiffMojo
             }
             else
             {
-                pckgs = JDiffUtils.getPackages( project.getBasedir(), getCompileSourceRoots(project) );
+                pckgs = scannedPackages;
+            }
+
+            getPackages().addAll( pckgs );
+            phase.set( "packages", pckgs.size() );
+
+            File descriptor = new File( getWorkingDirectory(), apiname + ".xml" );
+            String cacheKey = null;
+            if ( useDescriptorCache )
+            {
+                try
+                {
+                    cacheKey =
+                        DescriptorCache.computeKey( apiname, sourceDirectories, pckgs, classpathElements,
+                                                    getDocletVersion(),
+                                                    DescriptorCache.getJdkVersion( getJavadocExecutable() ) );
+                }
+                catch ( IOException e )
+                {
+                    getLog().info( "Not caching the JDiff descriptor for " + apiname + ": " + e.getMessage() );
+                }
+                try
+                {
+                    if ( cacheKey != null && getDescriptorCache().restore( cacheKey, descriptor ) )
+                    {
+                        getLog().info( "Using cached JDiff descriptor for " + apiname );
+                        phase.set( "cached", 1 );
+                        writeSnapshot( apiname, null, phase );
+                        return;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Unable to restore the cached JDiff descriptor: " + e.getMessage() );
+                }
             }
 
-            for ( String pckg : pckgs )
+            int shards = descriptorShards > 0 ? descriptorShards : Runtime.getRuntime().availableProcessors();
+            if ( shards > 1 && pckgs.size() > 1 )
             {
-                javadoc.addArgument( pckg );
+                generateShardedJDiffXML( apiname, JDiffUtils.getPackageSizes( sourceDirectories, pckgs ), shards,
+                                         sourceFiles, classpathElements, sourceRoots, phase );
+            }
+            else
+            {
+                JavadocExecutor javadoc = createDescriptorExecutor( apiname, getWorkingDirectory(), apiname,
+                                                                    sourceFiles, classpathElements, sourceRoots,
+                                                                    pckgs );
+                JavadocResult result = javadoc.execute( getWorkingDirectory().getAbsolutePath() );
+                phase.set( "warnings", result.getWarnings() );
+                if ( result.getPeakRssKb() >= 0 )
+                {
+                    phase.set( "childPeakRssKb", result.getPeakRssKb() );
+                }
             }
 
-            getPackages().addAll( pckgs );
+            if ( cacheKey != null && descriptor.isFile() )
+            {
+                try
+                {
+                    getDescriptorCache().store( cacheKey, descriptor );
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Unable to cache the JDiff descriptor: " + e.getMessage() );
+                }
+            }
 
-            javadoc.execute( getWorkingDirectory().getAbsolutePath() );
+            writeSnapshot( apiname, null, phase );
         }
         catch ( IOException e )
         {
             throw new JavadocExecutionException( e.getMessage(), e );
         }
+        finally
+        {
+            phase.stop();
+        }
+    }
+
+    /**
+     * Creates the javadoc run generating a JDiff XML descriptor.
+     *
+     * @param apiname the api name used as a filename
+     * @param apidir the directory to write the descriptor to
+     * @param outputName the name of the javadoc run for its output file
+     * @param sourceFiles the number of source files javadoc reads
+     * @param classpathElements the classpath
+     * @param sourceRoots the source path
+     * @param pckgs the packages to describe
+     * @return the javadoc executor
+     * @throws IOException if the javadoc executable can't be found
+     */
+    private JavadocExecutor createDescriptorExecutor( String apiname, File apidir, String outputName, int sourceFiles,
+                                                      List<String> classpathElements, List<String> sourceRoots,
+                                                      Collection<String> pckgs )
+        throws IOException
+    {
+        JavadocExecutor javadoc = createJavadocExecutor();
+        javadoc.setOutputFile( getJavadocOutputFile( outputName ) );
+
+        javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
+        javadoc.addArgumentPair( "docletpath", getDocletpath() );
+        javadoc.addArgumentPair( "apiname", apiname );
+        javadoc.addArgumentPair( "apidir", apidir.getAbsolutePath() );
+
+        configureJvm( javadoc, sourceFiles, classpathElements );
+        javadoc.addPathArgumentPair( "classpath", classpathElements );
+        javadoc.addPathArgumentPair( "sourcepath", sourceRoots );
+
+        for ( String pckg : pckgs )
+        {
+            javadoc.addArgument( pckg );
+        }
+        return javadoc;
+    }
+
+    /**
+     * Splits the packages into shards balanced by the size of their sources, generates the JDiff XML descriptor of each
+     * shard concurrently, each into a directory of its own, and merges them into the descriptor of the api.
+     *
+     * @param apiname the api name used as a filename
+     * @param packageSizes the size of the sources of each package
+     * @param shardCount the maximum number of shards
+     * @param sourceFiles the number of source files of all packages
+     * @param classpathElements the classpath
+     * @param sourceRoots the source path
+     * @param phase the metrics phase of the descriptor
+     * @throws IOException if a shard can't be generated or the shards can't be merged
+     * @throws JavadocExecutionException if javadoc fails on a shard
+     */
+    private void generateShardedJDiffXML( final String apiname, Map<String, Long> packageSizes, int shardCount,
+                                          int sourceFiles, List<String> classpathElements, List<String> sourceRoots,
+                                          BuildMetrics.Phase phase )
+        throws IOException, JavadocExecutionException
+    {
+        List<Set<String>> shards = JDiffUtils.partitionPackages( packageSizes, shardCount );
+
+        File shardsDirectory = new File( getWorkingDirectory(), "shards-" + apiname );
+        FileUtils.deleteDirectory( shardsDirectory );
+        getLog().info( "Describing " + apiname + " in " + shards.size() + " shards" );
+        phase.set( "shards", shards.size() );
+
+        long totalSize = 1;
+        for ( Long size : packageSizes.values() )
+        {
+            totalSize += size.longValue();
+        }
+
+        List<File> parts = new ArrayList<File>();
+        List<Future<JavadocResult>> results = new ArrayList<Future<JavadocResult>>();
+        ExecutorService executor = Executors.newFixedThreadPool( shards.size() );
+        try
+        {
+            for ( int i = 0; i < shards.size(); i++ )
+            {
+                Set<String> shard = shards.get( i );
+                File apidir = new File( shardsDirectory, String.valueOf( i ) );
+                parts.add( new File( apidir, apiname + ".xml" ) );
+
+                long shardSize = 0;
+                for ( String pckg : shard )
+                {
+                    shardSize += packageSizes.get( pckg ).longValue();
+                }
+                // the heap of each run is estimated from its share of the sources
+                int shardSourceFiles = (int) ( sourceFiles * ( shardSize + 1 ) / totalSize );
+
+                final JavadocExecutor javadoc =
+                    createDescriptorExecutor( apiname, apidir, apiname + "-shard" + i, shardSourceFiles,
+                                              classpathElements, sourceRoots, shard );
+                results.add( executor.submit( new Callable<JavadocResult>()
+                {
+                    public JavadocResult call()
+                        throws JavadocExecutionException
+                    {
+                        return javadoc.execute( getWorkingDirectory().getAbsolutePath() );
+                    }
+                } ) );
+            }
+
+            int warnings = 0;
+            long peakRssKb = -1;
+            for ( Future<JavadocResult> future : results )
+            {
+                JavadocResult result = future.get();
+                warnings += Math.max( 0, result.getWarnings() );
+                if ( result.getPeakRssKb() >= 0 )
+                {
+                    // the shards run side by side
+                    peakRssKb = Math.max( 0, peakRssKb ) + result.getPeakRssKb();
+                }
+            }
+            phase.set( "warnings", warnings );
+            if ( peakRssKb >= 0 )
+            {
+                phase.set( "childPeakRssKb", peakRssKb );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new JavadocExecutionException( "Interrupted while describing " + apiname, e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof JavadocExecutionException )
+            {
+                throw (JavadocExecutionException) e.getCause();
+            }
+            throw new JavadocExecutionException( e.getCause().getMessage(), e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        new ApiXmlMerger().merge( parts, new File( getWorkingDirectory(), apiname + ".xml" ) );
+        FileUtils.deleteDirectory( shardsDirectory );
+    }
+
+    /**
+     * Restores a JDiff XML descriptor from a compressed descriptor attached to a release by the descriptor goal, under
+     * {@code apiname} instead of the name it was generated with.
+     *
+     * @param archive the compressed descriptor
+     * @param apiname the api name used as a filename
+     * @throws IOException if the descriptor can't be restored
+     */
+    protected void restoreJDiffXML( File archive, String apiname )
+        throws IOException
+    {
+        BuildMetrics.Phase phase = getMetrics().start( "descriptor " + apiname );
+        try
+        {
+            phase.set( "attached", 1 );
+            getWorkingDirectory().mkdirs();
+
+            Reader in = new InputStreamReader( new GZIPInputStream( new FileInputStream( archive ), 65536 ),
+                                               ApiXmlWriter.ENCODING );
+            try
+            {
+                Writer out = new OutputStreamWriter( new FileOutputStream( new File( getWorkingDirectory(), apiname
+                    + ".xml" ) ), ApiXmlWriter.ENCODING );
+                try
+                {
+                    // the root element comes right after the prolog
+                    char[] buffer = new char[8192];
+                    int length = 0;
+                    for ( int n; length < buffer.length
+                        && ( n = in.read( buffer, length, buffer.length - length ) ) > 0; )
+                    {
+                        length += n;
+                    }
+                    String head = new String( buffer, 0, length );
+                    Matcher matcher = API_NAME.matcher( head );
+                    if ( matcher.find() )
+                    {
+                        head = head.substring( 0, matcher.start( 1 ) ) + apiname + head.substring( matcher.end( 1 ) );
+                    }
+                    out.write( head );
+                    IOUtil.copy( in, out );
+                }
+                finally
+                {
+                    IOUtil.close( out );
+                }
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+
+            writeSnapshot( apiname, null, phase );
+        }
+        finally
+        {
+            phase.stop();
+        }
+    }
+
+    /**
+     * Generates the JDiff XML descriptor from compiled classes instead of sources.
+     *
+     * @param locations the jar files or class output directories
+     * @param apiname the api name used as a filename
+     * @throws IOException if the classes can't be read or the descriptor can't be written
+     */
+    protected void generateJDiffXMLFromClasses( List<File> locations, String apiname )
+        throws IOException
+    {
+        BuildMetrics.Phase phase = getMetrics().start( "descriptor " + apiname );
+        try
+        {
+            ClassFileApiExtractor extractor = new ClassFileApiExtractor();
+            for ( File location : locations )
+            {
+                extractor.addLocation( location );
+            }
+
+            if ( !includePackageNames.isEmpty() )
+            {
+                getLog().debug( "Included packages (overwritten by [includePackageNames] parameter) : "
+                    + includePackageNames );
+            }
+            ApiDescriptor api = extractor.getDescriptor( apiname, includePackageNames );
+
+            int classes = 0;
+            for ( ApiPackage apiPackage : api.getPackages() )
+            {
+                getPackages().add( apiPackage.getName() );
+                classes += apiPackage.getClasses().size();
+            }
+            phase.set( "packages", api.getPackages().size() );
+            phase.set( "classes", classes );
+
+            new ApiXmlWriter().write( api, getWorkingDirectory() );
+            writeSnapshot( apiname, api, phase );
+        }
+        finally
+        {
+            phase.stop();
+        }
+    }
+
+    /**
+     * Writes the snapshot of a descriptor, or deletes a stale one when snapshots are disabled.
+     *
+     * @param apiname the api name used as a filename
+     * @param api the api, or {@code null} to read it from the XML descriptor
+     * @param phase the metrics phase of the descriptor
+     * @throws IOException if the descriptor can't be read or the snapshot can't be written
+     */
+    private void writeSnapshot( String apiname, ApiDescriptor api, BuildMetrics.Phase phase )
+        throws IOException
+    {
+        File snapshot = new File( getWorkingDirectory(), apiname + ApiSnapshot.EXTENSION );
+        if ( !writeSnapshots )
+        {
+            snapshot.delete();
+            return;
+        }
+
+        File descriptor = new File( getWorkingDirectory(), apiname + ".xml" );
+        if ( api != null )
+        {
+            new ApiSnapshotWriter().write( api, snapshot );
+        }
+        else if ( descriptor.isFile() )
+        {
+            new ApiSnapshotWriter().write( descriptor, snapshot );
+        }
+        else
+        {
+            snapshot.delete();
+            return;
+        }
+        phase.set( "descriptorBytes", descriptor.length() );
+        phase.set( "snapshotBytes", snapshot.length() );
+    }
+
+    /**
+     * @return the metrics of this run
+     */
+    protected final synchronized BuildMetrics getMetrics()
+    {
+        if ( metrics == null )
+        {
+            metrics = new BuildMetrics( getProject().getId() );
+        }
+        return metrics;
+    }
+
+    /**
+     * Logs the metrics of this run and writes them to the working directory.
+     */
+    protected final void reportMetrics()
+    {
+        BuildMetrics buildMetrics = getMetrics();
+        buildMetrics.log( getLog() );
+        try
+        {
+            buildMetrics.write( new File( getWorkingDirectory(), BuildMetrics.FILENAME ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to write the JDiff metrics: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @param name the name of the javadoc run
+     * @return the file to write the output of the javadoc run to, or {@code null} to log it
+     */
+    protected final File getJavadocOutputFile( String name )
+    {
+        return redirectJavadocOutput ? new File( getWorkingDirectory(), name + "-javadoc.log" ) : null;
+    }
+
+    /**
+     * @param apiname the api name
+     * @return the number of source files of the api, or 0 if it hasn't been described from sources
+     */
+    protected final int getSourceFileCount( String apiname )
+    {
+        Integer count = sourceFileCounts.get( apiname );
+        return count == null ? 0 : count.intValue();
+    }
+
+    /**
+     * Sets the heap and the other JVM options of a forked javadoc.
+     *
+     * @param javadoc the javadoc executor
+     * @param sourceFiles the number of source files javadoc reads
+     * @param classpathElements the classpath of javadoc
+     */
+    protected final void configureJvm( JavadocExecutor javadoc, int sourceFiles, Collection<String> classpathElements )
+    {
+        String maxHeap = javadocMaxHeap;
+        if ( StringUtils.isEmpty( maxHeap ) )
+        {
+            long megabytes = estimateMaxHeapMb( sourceFiles, classpathElements );
+            if ( javadoc.isWorker() )
+            {
+                // fewer distinct heaps let more modules share a worker
+                megabytes = Long.highestOneBit( megabytes - 1 ) << 1;
+            }
+            maxHeap = megabytes + "m";
+            getLog().debug( "Estimated javadoc heap for " + sourceFiles + " source files: " + maxHeap );
+        }
+        javadoc.addJvmOption( "-Xmx" + maxHeap );
+
+        if ( javadocJvmOptions != null )
+        {
+            for ( String option : javadocJvmOptions )
+            {
+                javadoc.addJvmOption( option );
+            }
+        }
+    }
+
+    /**
+     * Estimates the heap javadoc needs: a base for the JVM and the doclet, 128 kilobytes per source file for its syntax
+     * trees and doc comments, and a quarter of the size of the classpath jars for the symbols it loads from them.
+     *
+     * @param sourceFiles the number of source files
+     * @param classpathElements the classpath
+     * @return the maximum heap in megabytes, a multiple of 64 megabytes
+     */
+    static long estimateMaxHeapMb( int sourceFiles, Collection<String> classpathElements )
+    {
+        long bytes = ( 128L << 20 ) + sourceFiles * ( 128L << 10 );
+        for ( String element : classpathElements )
+        {
+            File file = new File( element );
+            if ( file.isFile() )
+            {
+                bytes += file.length() / 4;
+            }
+        }
+        long megabytes = ( bytes + ( 1 << 20 ) - 1 ) >> 20;
+        return Math.max( 256, ( megabytes + 63 ) / 64 * 64 );
+    }
+
+    /**
+     * Creates a javadoc executor which runs in-process if requested and no other JDK has been selected.
+     *
+     * @return the javadoc executor
+     * @throws IOException if the javadoc executable can't be found
+     */
+    protected final JavadocExecutor createJavadocExecutor()
+        throws IOException
+    {
+        boolean forkRequired = StringUtils.isNotEmpty( javadocExecutable ) || getToolchain() != null;
+
+        JavadocExecutor javadoc = new JavadocExecutor( getJavadocExecutable(), getLog() );
+        javadoc.setInProcess( inProcess && !forkRequired );
+        javadoc.setWorker( javadocWorker );
+        return javadoc;
     }
 
     /**
@@ -257,6 +871,16 @@ public abstract class BaseJDiffMojo
         return tc;
     }
 
+    private DescriptorCache getDescriptorCache()
+    {
+        return new DescriptorCache( descriptorCacheDirectory, descriptorCacheSize * 1024 * 1024, getLog() );
+    }
+
+    private String getDocletVersion()
+    {
+        return getPluginArtifactMap().get( "jdiff:jdiff" ).getVersion() + "/" + getPluginDescriptor().getVersion();
+    }
+
     protected String getDocletpath()
     {
         //@todo prepend with optional docletArtifacts
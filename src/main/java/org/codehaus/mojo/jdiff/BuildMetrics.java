@@ -0,0 +1,384 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Timings and resource usage of the phases of a run, such as artifact resolution, checkout, descriptor generation and
+ * report generation. Phases may be recorded concurrently.
+ * <p>
+ * Besides the wall time each phase records the CPU time of its thread, which covers in-process javadoc runs, and the
+ * CPU time of the child processes the JVM has waited for, which covers forked javadoc runs and SCM commands. The latter
+ * and the peak resident set size of the JVM are read from <code>/proc</code>, so they are only available on Linux, and
+ * they are process wide: with parallel builds they include the work of the other modules, and the peak resident set
+ * size is the high-water mark of the whole build so far rather than the one of the phase. The peak resident set size
+ * of a forked javadoc is recorded as the <code>childPeakRssKb</code> counter of its phase.
+ */
+public class BuildMetrics
+{
+    /**
+     * The file written to the working directory.
+     */
+    public static final String FILENAME = "jdiff-metrics.json";
+
+    /**
+     * Linux reports the child CPU times in USER_HZ, which is fixed to 100 for user space.
+     */
+    private static final long MILLIS_PER_TICK = 10;
+
+    private static final File PROC_STAT = new File( "/proc/self/stat" );
+
+    private static final File PROC_STATUS = new File( "/proc/self/status" );
+
+    private final String module;
+
+    private final List<Phase> phases = new ArrayList<Phase>();
+
+    public BuildMetrics( String module )
+    {
+        this.module = module;
+    }
+
+    /**
+     * Starts measuring a phase. The phase is recorded once it is stopped.
+     *
+     * @param name the name of the phase
+     * @return the running phase
+     */
+    public Phase start( String name )
+    {
+        return new Phase( name );
+    }
+
+    /**
+     * @return the recorded phases
+     */
+    public synchronized List<Phase> getPhases()
+    {
+        return new ArrayList<Phase>( phases );
+    }
+
+    private synchronized void record( Phase phase )
+    {
+        phases.add( phase );
+    }
+
+    /**
+     * Writes the recorded phases as JSON.
+     *
+     * @param file the target file
+     * @throws IOException if the file can't be written
+     */
+    public void write( File file )
+        throws IOException
+    {
+        StringBuffer json = new StringBuffer();
+        json.append( "{\n  \"module\": " ).append( quote( module ) ).append( ",\n  \"phases\": [" );
+        List<Phase> recorded = getPhases();
+        for ( int i = 0; i < recorded.size(); i++ )
+        {
+            Phase phase = recorded.get( i );
+            json.append( i == 0 ? "\n" : ",\n" );
+            json.append( "    { \"name\": " ).append( quote( phase.name ) );
+            json.append( ", \"wallMillis\": " ).append( phase.wallMillis );
+            json.append( ", \"threadCpuMillis\": " ).append( phase.threadCpuMillis );
+            json.append( ", \"childCpuMillis\": " ).append( phase.childCpuMillis );
+            json.append( ", \"jvmPeakRssKb\": " ).append( phase.jvmPeakRssKb );
+            for ( Map.Entry<String, Long> counter : phase.counters.entrySet() )
+            {
+                json.append( ", " ).append( quote( counter.getKey() ) ).append( ": " ).append( counter.getValue() );
+            }
+            json.append( " }" );
+        }
+        json.append( "\n  ]\n}\n" );
+
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            writer.write( json.toString() );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    /**
+     * Logs the recorded phases as a table.
+     *
+     * @param log the log
+     */
+    public void log( Log log )
+    {
+        List<Phase> recorded = getPhases();
+        if ( recorded.isEmpty() )
+        {
+            return;
+        }
+
+        int width = "Phase".length();
+        for ( Phase phase : recorded )
+        {
+            width = Math.max( width, phase.name.length() );
+        }
+
+        log.info( "JDiff metrics for " + module + ":" );
+        log.info( row( width, "Phase", "Wall ms", "CPU ms", "Child ms", "JVM peak RSS KB", "Counters" ) );
+        for ( Phase phase : recorded )
+        {
+            StringBuffer counters = new StringBuffer();
+            for ( Map.Entry<String, Long> counter : phase.counters.entrySet() )
+            {
+                if ( counters.length() > 0 )
+                {
+                    counters.append( ", " );
+                }
+                counters.append( counter.getKey() ).append( '=' ).append( counter.getValue() );
+            }
+            log.info( row( width, phase.name, format( phase.wallMillis ), format( phase.threadCpuMillis ),
+                           format( phase.childCpuMillis ), format( phase.jvmPeakRssKb ), counters.toString() ) );
+        }
+    }
+
+    private static String row( int width, String name, String wall, String cpu, String child, String rss,
+                               String counters )
+    {
+        return StringUtils.rightPad( name, width ) + " " + StringUtils.leftPad( wall, 9 ) + " "
+            + StringUtils.leftPad( cpu, 9 ) + " " + StringUtils.leftPad( child, 9 ) + " "
+            + StringUtils.leftPad( rss, 15 ) + "  " + counters;
+    }
+
+    private static String format( long value )
+    {
+        return value < 0 ? "-" : String.valueOf( value );
+    }
+
+    private static String quote( String value )
+    {
+        StringBuffer result = new StringBuffer( "\"" );
+        for ( char c : value.toCharArray() )
+        {
+            if ( c == '"' || c == '\\' )
+            {
+                result.append( '\\' ).append( c );
+            }
+            else if ( c < ' ' )
+            {
+                result.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                result.append( c );
+            }
+        }
+        return result.append( '"' ).toString();
+    }
+
+    /**
+     * @return the user and system CPU time of the waited-for child processes in milliseconds, or -1 if unknown
+     */
+    private static long getChildCpuMillis()
+    {
+        try
+        {
+            String stat = FileUtils.fileRead( PROC_STAT );
+            // the command name may contain spaces, the fields are counted from its closing parenthesis
+            String[] fields = stat.substring( stat.lastIndexOf( ')' ) + 2 ).split( " " );
+            // cutime and cstime are the 16th and 17th fields, the 3rd one is the first after the command name
+            return ( Long.parseLong( fields[13] ) + Long.parseLong( fields[14] ) ) * MILLIS_PER_TICK;
+        }
+        catch ( IOException e )
+        {
+            return -1;
+        }
+        catch ( RuntimeException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the peak resident set size of this JVM since it started in kilobytes, or -1 if unknown
+     */
+    private static long getJvmPeakRssKb()
+    {
+        return getPeakRssKb( PROC_STATUS );
+    }
+
+    /**
+     * Returns the sum of the peak resident set sizes of a running process and its descendants, such as a javadoc
+     * launched through a shell. The peaks of the processes may not coincide, so this is an upper bound.
+     *
+     * @param pid the process id
+     * @return the peak resident set size in kilobytes, or -1 if unknown
+     */
+    static long getProcessTreePeakRssKb( long pid )
+    {
+        long peakRss = getPeakRssKb( new File( "/proc/" + pid + "/status" ) );
+        if ( peakRss < 0 )
+        {
+            return -1;
+        }
+
+        try
+        {
+            String children = FileUtils.fileRead( new File( "/proc/" + pid + "/task/" + pid + "/children" ) ).trim();
+            if ( children.length() > 0 )
+            {
+                for ( String child : children.split( " " ) )
+                {
+                    peakRss += Math.max( 0, getProcessTreePeakRssKb( Long.parseLong( child ) ) );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // the kernel doesn't list the children
+        }
+        catch ( RuntimeException e )
+        {
+            // unexpected format
+        }
+        return peakRss;
+    }
+
+    private static long getPeakRssKb( File status )
+    {
+        try
+        {
+            for ( String line : FileUtils.fileRead( status ).split( "\n" ) )
+            {
+                if ( line.startsWith( "VmHWM:" ) )
+                {
+                    return Long.parseLong( line.substring( "VmHWM:".length() ).replace( "kB", "" ).trim() );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // not on Linux
+        }
+        catch ( RuntimeException e )
+        {
+            // unexpected format
+        }
+        return -1;
+    }
+
+    private static long getThreadCpuMillis()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if ( !threads.isCurrentThreadCpuTimeSupported() )
+        {
+            return -1;
+        }
+        return threads.getCurrentThreadCpuTime() / 1000000;
+    }
+
+    /**
+     * A phase being measured. Counters may be set until it is stopped.
+     */
+    public final class Phase
+    {
+        private final String name;
+
+        private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+
+        private final long startNanos;
+
+        private final long startThreadCpu;
+
+        private final long startChildCpu;
+
+        private long wallMillis;
+
+        private long threadCpuMillis;
+
+        private long childCpuMillis;
+
+        private long jvmPeakRssKb;
+
+        private boolean stopped;
+
+        private Phase( String name )
+        {
+            this.name = name;
+            this.startNanos = System.nanoTime();
+            this.startThreadCpu = getThreadCpuMillis();
+            this.startChildCpu = getChildCpuMillis();
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Sets a counter of this phase, such as the number of packages.
+         *
+         * @param counter the name of the counter
+         * @param value the value
+         */
+        public void set( String counter, long value )
+        {
+            counters.put( counter, value );
+        }
+
+        /**
+         * Stops measuring and records this phase. Further calls are ignored.
+         */
+        public void stop()
+        {
+            if ( stopped )
+            {
+                return;
+            }
+            stopped = true;
+
+            wallMillis = ( System.nanoTime() - startNanos ) / 1000000;
+            threadCpuMillis = difference( startThreadCpu, getThreadCpuMillis() );
+            childCpuMillis = difference( startChildCpu, getChildCpuMillis() );
+            jvmPeakRssKb = getJvmPeakRssKb();
+            record( this );
+        }
+
+        private long difference( long start, long end )
+        {
+            return start < 0 || end < 0 ? -1 : end - start;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReportException;
+import org.codehaus.mojo.jdiff.api.ApiCompatibility;
+
+/**
+ * Checks the API of the Java sources for breaking changes against the comparison version, without generating a report,
+ * and fails the build when there are too many of them.
+ */
+@Mojo( name = "check", defaultPhase = LifecyclePhase.VERIFY, requiresDependencyResolution = ResolutionScope.COMPILE,
+       threadSafe = true )
+public class CheckMojo
+    extends AbstractJDiffMojo
+{
+    /**
+     * The number of breaking changes against each comparison version above which the build fails.
+     */
+    @Parameter( property = "jdiff.maxBreakingChanges", defaultValue = "0" )
+    private int maxBreakingChanges;
+
+    /**
+     * Skip the check.
+     */
+    @Parameter( property = "jdiff.skipCheck", defaultValue = "false" )
+    private boolean skipCheck;
+
+    private Map<String, ApiCompatibility> results;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.AbstractMojo#execute()
+     */
+    @Override
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        if ( skipCheck )
+        {
+            getLog().info( "Skipping the API check" );
+            return;
+        }
+
+        super.execute();
+        if ( results == null )
+        {
+            return;
+        }
+
+        List<String> failures = new LinkedList<String>();
+        for ( Map.Entry<String, ApiCompatibility> result : results.entrySet() )
+        {
+            List<String> breakingChanges = result.getValue().getBreakingChanges();
+            for ( String breakingChange : breakingChanges )
+            {
+                getLog().warn( "Breaking change against " + result.getKey() + ": " + breakingChange );
+            }
+            getLog().info( "API check against " + result.getKey() + ": " + breakingChanges.size()
+                + " breaking changes, " + result.getValue().getCompatibleChanges() + " compatible changes" );
+            if ( breakingChanges.size() > maxBreakingChanges )
+            {
+                failures.add( result.getKey() + " (" + breakingChanges.size() + ")" );
+            }
+        }
+
+        if ( !failures.isEmpty() )
+        {
+            throw new MojoFailureException( "The API has more than " + maxBreakingChanges
+                + " breaking changes against " + failures );
+        }
+    }
+
+    @Override
+    protected void compareApis( List<String> srcDirs, List<String> lhsTags, String rhsTag )
+        throws MavenReportException
+    {
+        Map<String, ApiCompatibility> compatibilities = new LinkedHashMap<String, ApiCompatibility>();
+        for ( String lhsTag : lhsTags )
+        {
+            BuildMetrics.Phase phase = getMetrics().start( "check " + lhsTag );
+            try
+            {
+                ApiCompatibility compatibility = ApiCompatibility.classify( compareDescriptors( lhsTag, rhsTag ) );
+                phase.set( "breakingChanges", compatibility.getBreakingChanges().size() );
+                phase.set( "compatibleChanges", compatibility.getCompatibleChanges() );
+                compatibilities.put( lhsTag, compatibility );
+            }
+            catch ( IOException e )
+            {
+                throw new MavenReportException( e.getMessage(), e );
+            }
+            finally
+            {
+                phase.stop();
+            }
+        }
+        results = compatibilities;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    protected List<String> getCompileSourceRoots( MavenProject project )
+    {
+        return ( project.getCompileSourceRoots() == null
+            ? Collections.<String>emptyList()
+            : new LinkedList<String>( project.getCompileSourceRoots() ) );
+    }
+
+    @Override
+    protected String getDestDir()
+    {
+        return null;
+    }
+
+    @Override
+    protected String getBuildOutputDirectory()
+    {
+        return getProject().getBuild().getOutputDirectory();
+    }
+
+    @Override
+    protected String getSourceDirectory( Build build )
+    {
+        return build.getSourceDirectory();
+    }
+
+    @Override
+    protected String getOutputDirectory( Build build )
+    {
+        return build.getOutputDirectory();
+    }
+
+    @Override
+    protected String getArtifactClassifier()
+    {
+        return null;
+    }
+
+    @Override
+    protected String getSourcesClassifier()
+    {
+        return "sources";
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    protected void setSourceRoot( MavenProject project, String sourceRoot )
+    {
+        project.getCompileSourceRoots().clear();
+        project.addCompileSourceRoot( sourceRoot );
+    }
+
+    @Override
+    protected String getApiName( String lhsTag )
+    {
+        return lhsTag;
+    }
+}
@@ -0,0 +1,543 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.scm.ScmException;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Store of SCM checkouts shared by all builds on a machine, keyed by connection URL and version, with sparse checkouts
+ * kept apart from full ones. Each entry is guarded by a file lock, so concurrent builds wait for each other instead of
+ * checking out the same sources twice. An entry is locked exclusively while it is fetched, and shared for as long as a
+ * {@link Checkout} of it is open, so any number of builds read it at the same time. Once the store exceeds its maximum
+ * size, the least recently used entries no build has open are evicted.
+ */
+public class CheckoutStore
+{
+    /**
+     * Fetches the sources of an entry which hasn't been checked out yet.
+     */
+    public interface Fetcher
+    {
+        /**
+         * @param directory the empty directory to check out to
+         */
+        void fetch( File directory )
+            throws IOException, MojoFailureException, ScmException;
+    }
+
+    private static final String LOCK_EXTENSION = ".lock";
+
+    private static final String COMPLETE_EXTENSION = ".complete";
+
+    /**
+     * Guards the maps below. It is never held while waiting for a file lock or fetching.
+     */
+    private static final Object JVM_LOCK = new Object();
+
+    /**
+     * File locks are held by the JVM, so the threads of the same build are serialized on each entry separately.
+     */
+    private static final Map<String, ReentrantLock> KEY_LOCKS = new HashMap<String, ReentrantLock>();
+
+    /**
+     * The shared locks this JVM holds on entries, by key.
+     */
+    private static final Map<String, SharedLock> SHARED_LOCKS = new HashMap<String, SharedLock>();
+
+    private File directory;
+
+    private long maxSize;
+
+    private Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param directory the directory of the store
+     * @param maxSize the maximum size of all checkouts in bytes
+     * @param log the mojo logger
+     */
+    public CheckoutStore( File directory, long maxSize, Log log )
+    {
+        this.directory = directory;
+
+        this.maxSize = maxSize;
+
+        this.log = log;
+    }
+
+    /**
+     * Returns the checkout of {@code connectionUrl} at {@code version}, fetching it if it isn't in the store yet. A
+     * complete entry is only locked shared, so concurrent builds read it at the same time; the exclusive lock is only
+     * taken to fetch a missing entry or to replace it on {@code force}. A sparse checkout is satisfied by a complete
+     * full one. The entry can't be evicted until the returned checkout is closed.
+     *
+     * @param connectionUrl the SCM connection URL
+     * @param version the checked out version
+     * @param sparse {@code true} if the fetcher only checks out part of the sources
+     * @param force {@code true} to discard an existing checkout
+     * @param fetcher fetches the sources of a new entry
+     * @return the open checkout
+     * @throws IOException if the store can't be locked or updated, or if the fetcher fails
+     * @throws MojoFailureException if the fetcher fails
+     * @throws ScmException if the fetcher fails
+     */
+    public Checkout checkout( String connectionUrl, String version, boolean sparse, boolean force, Fetcher fetcher )
+        throws IOException, MojoFailureException, ScmException
+    {
+        directory.mkdirs();
+
+        String description = connectionUrl + " (" + version + ")";
+        String fullKey = JDiffUtils.fingerprint( connectionUrl, version );
+        Checkout checkout = null;
+        if ( sparse && !force )
+        {
+            checkout = openComplete( fullKey );
+        }
+
+        String key = sparse ? JDiffUtils.fingerprint( connectionUrl, version, "sparse" ) : fullKey;
+        ReentrantLock keyLock = getKeyLock( key );
+        keyLock.lock();
+        try
+        {
+            if ( checkout == null && force && isOpen( key ) )
+            {
+                log.warn( "The stored checkout of " + description + " is in use by this build, it isn't checked out"
+                    + " again" );
+                force = false;
+            }
+            if ( checkout == null && !force )
+            {
+                checkout = openComplete( key );
+            }
+            if ( checkout != null )
+            {
+                log.info( "Using stored checkout of " + description );
+            }
+            else
+            {
+                checkout = fetch( key, description, force, fetcher );
+            }
+        }
+        finally
+        {
+            keyLock.unlock();
+        }
+
+        evict();
+        return checkout;
+    }
+
+    /**
+     * Opens a checkout of this store again, for instance by another module of the build, so its entry can't be
+     * evicted until the returned checkout is closed.
+     *
+     * @param checkoutDirectory the directory of the checkout
+     * @return the open checkout
+     * @throws IOException if the entry can't be locked or has been evicted
+     */
+    public Checkout open( File checkoutDirectory )
+        throws IOException
+    {
+        Checkout checkout = openComplete( checkoutDirectory.getName() );
+        if ( checkout == null )
+        {
+            throw new IOException( "The stored checkout " + checkoutDirectory
+                + " has been evicted by another build, run the build again" );
+        }
+        return checkout;
+    }
+
+    /**
+     * Opens a complete entry, waiting while another build fetches it.
+     *
+     * @param key the key of the entry
+     * @return the open checkout, or {@code null} if the entry isn't complete
+     * @throws IOException if the entry can't be locked
+     */
+    private Checkout openComplete( String key )
+        throws IOException
+    {
+        ReentrantLock keyLock = getKeyLock( key );
+        keyLock.lock();
+        try
+        {
+            boolean open;
+            synchronized ( JVM_LOCK )
+            {
+                SharedLock shared = SHARED_LOCKS.get( key );
+                if ( shared != null )
+                {
+                    shared.references++;
+                }
+                open = shared != null;
+            }
+            if ( !open && !lockShared( key ) )
+            {
+                return null;
+            }
+
+            // mark as recently used
+            new File( directory, key + COMPLETE_EXTENSION ).setLastModified( System.currentTimeMillis() );
+            return new Checkout( key, new File( directory, key ) );
+        }
+        finally
+        {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Fetches an entry under an exclusive lock, unless another build completed it in the meantime, and opens it.
+     * The caller holds the lock of the key in this JVM.
+     */
+    private Checkout fetch( String key, String description, boolean force, Fetcher fetcher )
+        throws IOException, MojoFailureException, ScmException
+    {
+        File entry = new File( directory, key );
+        File complete = new File( directory, key + COMPLETE_EXTENSION );
+        while ( true )
+        {
+            RandomAccessFile lockFile = new RandomAccessFile( new File( directory, key + LOCK_EXTENSION ), "rw" );
+            try
+            {
+                log.debug( "Waiting for the exclusive lock on checkout store entry " + key );
+                FileLock lock = lockFile.getChannel().lock();
+                try
+                {
+                    if ( force || !complete.isFile() )
+                    {
+                        complete.delete();
+                        FileUtils.deleteDirectory( entry );
+
+                        log.info( "Checking out " + description + " to the checkout store" );
+                        fetcher.fetch( entry );
+
+                        FileUtils.fileWrite( complete.getAbsolutePath(), String.valueOf( sizeOf( entry ) ) );
+                        force = false;
+                    }
+                    else
+                    {
+                        log.info( "Using stored checkout of " + description );
+                    }
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            finally
+            {
+                lockFile.close();
+            }
+
+            // file locks can't be downgraded, another build may evict the entry in between
+            Checkout checkout = openComplete( key );
+            if ( checkout != null )
+            {
+                return checkout;
+            }
+        }
+    }
+
+    /**
+     * Takes a shared lock on a complete entry for this JVM. The caller holds the lock of the key in this JVM.
+     *
+     * @param key the key of the entry
+     * @return {@code true} if the entry has been locked, {@code false} if it isn't complete
+     * @throws IOException if the entry can't be locked
+     */
+    private boolean lockShared( String key )
+        throws IOException
+    {
+        File lockPath = new File( directory, key + LOCK_EXTENSION );
+        if ( !new File( directory, key + COMPLETE_EXTENSION ).isFile() && !lockPath.isFile() )
+        {
+            return false;
+        }
+
+        RandomAccessFile lockFile = new RandomAccessFile( lockPath, "rw" );
+        boolean locked = false;
+        try
+        {
+            FileLock lock = lockFile.getChannel().lock( 0, Long.MAX_VALUE, true );
+            if ( new File( directory, key + COMPLETE_EXTENSION ).isFile() )
+            {
+                synchronized ( JVM_LOCK )
+                {
+                    SHARED_LOCKS.put( key, new SharedLock( lockFile, lock ) );
+                }
+                locked = true;
+            }
+            else
+            {
+                lock.release();
+            }
+        }
+        finally
+        {
+            if ( !locked )
+            {
+                lockFile.close();
+            }
+        }
+        return locked;
+    }
+
+    private static boolean isOpen( String key )
+    {
+        synchronized ( JVM_LOCK )
+        {
+            return SHARED_LOCKS.containsKey( key );
+        }
+    }
+
+    /**
+     * @return the lock serializing the threads of this JVM on an entry, which are not excluded by file locks
+     */
+    private static ReentrantLock getKeyLock( String key )
+    {
+        synchronized ( JVM_LOCK )
+        {
+            ReentrantLock keyLock = KEY_LOCKS.get( key );
+            if ( keyLock == null )
+            {
+                keyLock = new ReentrantLock();
+                KEY_LOCKS.put( key, keyLock );
+            }
+            return keyLock;
+        }
+    }
+
+    private static void release( String key )
+        throws IOException
+    {
+        synchronized ( JVM_LOCK )
+        {
+            SharedLock shared = SHARED_LOCKS.get( key );
+            if ( shared != null && --shared.references == 0 )
+            {
+                SHARED_LOCKS.remove( key );
+                try
+                {
+                    shared.lock.release();
+                }
+                finally
+                {
+                    shared.file.close();
+                }
+            }
+        }
+    }
+
+    private void evict()
+        throws IOException
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+
+        List<File> entries = new ArrayList<File>();
+        long size = 0;
+        for ( File file : files )
+        {
+            if ( file.getName().endsWith( COMPLETE_EXTENSION ) )
+            {
+                entries.add( file );
+                size += readSize( file );
+            }
+        }
+
+        Collections.sort( entries, new Comparator<File>()
+        {
+            public int compare( File o1, File o2 )
+            {
+                long diff = o1.lastModified() - o2.lastModified();
+                return diff < 0 ? -1 : ( diff > 0 ? 1 : 0 );
+            }
+        } );
+
+        for ( File complete : entries )
+        {
+            if ( size <= maxSize )
+            {
+                break;
+            }
+
+            String key = complete.getName().substring( 0, complete.getName().length() - COMPLETE_EXTENSION.length() );
+            ReentrantLock keyLock = getKeyLock( key );
+            if ( !keyLock.tryLock() )
+            {
+                // being opened or fetched by another thread of this build
+                continue;
+            }
+            try
+            {
+                if ( isOpen( key ) )
+                {
+                    // in use by this build
+                    continue;
+                }
+
+                RandomAccessFile lockFile = new RandomAccessFile( new File( directory, key + LOCK_EXTENSION ), "rw" );
+                try
+                {
+                    // entries another build holds open, or is fetching, can't be locked exclusively and are skipped
+                    FileLock lock = lockFile.getChannel().tryLock();
+                    if ( lock != null )
+                    {
+                        try
+                        {
+                            long entrySize = readSize( complete );
+                            complete.delete();
+                            FileUtils.deleteDirectory( new File( directory, key ) );
+                            size -= entrySize;
+                            log.debug( "Evicted checkout store entry " + key );
+                        }
+                        finally
+                        {
+                            lock.release();
+                        }
+                    }
+                }
+                finally
+                {
+                    lockFile.close();
+                }
+            }
+            finally
+            {
+                keyLock.unlock();
+            }
+        }
+    }
+
+    private static long readSize( File complete )
+    {
+        try
+        {
+            return Long.parseLong( FileUtils.fileRead( complete ).trim() );
+        }
+        catch ( IOException e )
+        {
+            return 0;
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * A checkout of the store, whose entry isn't evicted until it is closed.
+     */
+    public static final class Checkout
+        implements Closeable
+    {
+        private final String key;
+
+        private final File directory;
+
+        private boolean closed;
+
+        private Checkout( String key, File directory )
+        {
+            this.key = key;
+            this.directory = directory;
+        }
+
+        /**
+         * @return the directory holding the checkout
+         */
+        public File getDirectory()
+        {
+            return directory;
+        }
+
+        /**
+         * Releases the lock on the entry once no checkout of it is open in this JVM anymore.
+         *
+         * @throws IOException if the lock can't be released
+         */
+        public synchronized void close()
+            throws IOException
+        {
+            if ( !closed )
+            {
+                closed = true;
+                release( key );
+            }
+        }
+    }
+
+    /**
+     * A shared lock on an entry and the number of open checkouts of it in this JVM.
+     */
+    private static final class SharedLock
+    {
+        private final RandomAccessFile file;
+
+        private final FileLock lock;
+
+        private int references = 1;
+
+        SharedLock( RandomAccessFile file, FileLock lock )
+        {
+            this.file = file;
+            this.lock = lock;
+        }
+    }
+
+    private static long sizeOf( File file )
+    {
+        if ( file.isFile() )
+        {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                size += sizeOf( child );
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,351 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Content-addressed store of JDiff XML descriptors, shared between builds. Entries are keyed by a fingerprint of
+ * everything the doclet reads, so a descriptor is only regenerated when the sources, packages, classpath, doclet or
+ * JDK change. Entries are gzipped, and the least recently used ones are evicted once the store exceeds its maximum size.
+ */
+public class DescriptorCache
+{
+    private static final String EXTENSION = ".xml.gz";
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private File directory;
+
+    private long maxSize;
+
+    private Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param directory the directory holding the cached descriptors
+     * @param maxSize the maximum size of the cache in bytes
+     * @param log the mojo logger
+     */
+    public DescriptorCache( File directory, long maxSize, Log log )
+    {
+        this.directory = directory;
+
+        this.maxSize = maxSize;
+
+        this.log = log;
+    }
+
+    /**
+     * Decompresses the cached descriptor to {@code target}.
+     *
+     * @param key the cache key
+     * @param target the descriptor file to restore
+     * @return {@code true} if the descriptor was cached, otherwise {@code false}
+     * @throws IOException if the descriptor can't be copied
+     */
+    public boolean restore( String key, File target )
+        throws IOException
+    {
+        File entry = new File( directory, key + EXTENSION );
+        if ( !entry.isFile() )
+        {
+            return false;
+        }
+
+        target.getParentFile().mkdirs();
+        InputStream in = new GZIPInputStream( new FileInputStream( entry ), BUFFER_SIZE );
+        try
+        {
+            OutputStream out = new FileOutputStream( target );
+            try
+            {
+                IOUtil.copy( in, out, BUFFER_SIZE );
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        // mark as recently used
+        entry.setLastModified( System.currentTimeMillis() );
+        return true;
+    }
+
+    /**
+     * Stores the {@code descriptor} under {@code key} and evicts the least recently used entries when the cache grows
+     * too large.
+     *
+     * @param key the cache key
+     * @param descriptor the generated descriptor
+     * @throws IOException if the descriptor can't be stored
+     */
+    public void store( String key, File descriptor )
+        throws IOException
+    {
+        directory.mkdirs();
+
+        // compress to a temporary file first, so concurrent builds never read a partial entry
+        File tmp = File.createTempFile( key, ".tmp", directory );
+        compress( descriptor, tmp );
+
+        File entry = new File( directory, key + EXTENSION );
+        if ( !tmp.renameTo( entry ) )
+        {
+            tmp.delete();
+        }
+
+        evict();
+    }
+
+    private void evict()
+    {
+        File[] entries = directory.listFiles();
+        if ( entries == null )
+        {
+            return;
+        }
+
+        List<File> descriptors = new ArrayList<File>();
+        long size = 0;
+        for ( File entry : entries )
+        {
+            if ( entry.getName().endsWith( EXTENSION ) )
+            {
+                descriptors.add( entry );
+                size += entry.length();
+            }
+        }
+
+        Collections.sort( descriptors, new Comparator<File>()
+        {
+            public int compare( File o1, File o2 )
+            {
+                long diff = o1.lastModified() - o2.lastModified();
+                return diff < 0 ? -1 : ( diff > 0 ? 1 : 0 );
+            }
+        } );
+
+        for ( File descriptor : descriptors )
+        {
+            if ( size <= maxSize )
+            {
+                break;
+            }
+            long length = descriptor.length();
+            if ( descriptor.delete() )
+            {
+                log.debug( "Evicted cached JDiff descriptor " + descriptor.getName() );
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Compresses a descriptor with gzip.
+     *
+     * @param descriptor the descriptor
+     * @param target the compressed file
+     * @throws IOException if the descriptor can't be compressed
+     */
+    static void compress( File descriptor, File target )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( descriptor );
+        try
+        {
+            OutputStream out = new GZIPOutputStream( new FileOutputStream( target ), BUFFER_SIZE );
+            try
+            {
+                IOUtil.copy( in, out, BUFFER_SIZE );
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Computes the cache key of a descriptor.
+     *
+     * @param apiname the api name, which is written into the descriptor
+     * @param sourceDirectories the source roots passed to javadoc, resolved against their project
+     * @param packages the documented packages
+     * @param classpathElements the classpath passed to javadoc, jars are identified by their size and modification time
+     *            and class directories by the same metadata of the class files they contain
+     * @param docletVersion the version of the doclet generating the descriptor
+     * @param jdkVersion the version of the JDK running javadoc, see {@link #getJdkVersion(String)}
+     * @return the hexadecimal fingerprint
+     * @throws IOException if a source root isn't a directory or a source file can't be read
+     */
+    public static String computeKey( String apiname, List<File> sourceDirectories, Collection<String> packages,
+                                     List<String> classpathElements, String docletVersion, String jdkVersion )
+        throws IOException
+    {
+        MessageDigest digest = JDiffUtils.newDigest();
+
+        JDiffUtils.update( digest, apiname );
+        JDiffUtils.update( digest, docletVersion );
+        JDiffUtils.update( digest, jdkVersion );
+
+        List<String> sortedPackages = new ArrayList<String>( packages );
+        Collections.sort( sortedPackages );
+        for ( String pckg : sortedPackages )
+        {
+            JDiffUtils.update( digest, pckg );
+        }
+
+        for ( String element : classpathElements )
+        {
+            File file = new File( element );
+            JDiffUtils.update( digest, file.getAbsolutePath() );
+            if ( file.isFile() )
+            {
+                // jars are identified by their metadata, hashing their content would cost more than javadoc
+                JDiffUtils.update( digest, String.valueOf( file.length() ) );
+                JDiffUtils.update( digest, String.valueOf( file.lastModified() ) );
+            }
+            else if ( file.isDirectory() )
+            {
+                // target/classes and reactor outputs keep their path across builds, their class files don't
+                @SuppressWarnings( "unchecked" )
+                List<String> classFiles = FileUtils.getFileNames( file, "**/*.class", null, false );
+                String[] sortedClassFiles = classFiles.toArray( new String[classFiles.size()] );
+                Arrays.sort( sortedClassFiles );
+
+                for ( String classFile : sortedClassFiles )
+                {
+                    File f = new File( file, classFile );
+                    JDiffUtils.update( digest, classFile );
+                    JDiffUtils.update( digest, String.valueOf( f.length() ) );
+                    JDiffUtils.update( digest, String.valueOf( f.lastModified() ) );
+                }
+            }
+        }
+
+        byte[] buffer = new byte[8192];
+        for ( File root : sourceDirectories )
+        {
+            if ( !root.exists() )
+            {
+                // like a generated sources directory nothing has been generated into, it contributes no sources
+                JDiffUtils.update( digest, "-" );
+                continue;
+            }
+            if ( !root.isDirectory() )
+            {
+                throw new FileNotFoundException( "The source root " + root + " is not a directory" );
+            }
+            JDiffUtils.update( digest, "+" );
+
+            @SuppressWarnings( "unchecked" )
+            List<String> files = FileUtils.getFileNames( root, "**/*.java", null, false );
+            String[] sortedFiles = files.toArray( new String[files.size()] );
+            Arrays.sort( sortedFiles );
+
+            for ( String file : sortedFiles )
+            {
+                JDiffUtils.update( digest, file );
+
+                InputStream in = new FileInputStream( new File( root, file ) );
+                try
+                {
+                    int read;
+                    while ( ( read = in.read( buffer ) ) != -1 )
+                    {
+                        digest.update( buffer, 0, read );
+                    }
+                }
+                finally
+                {
+                    IOUtil.close( in );
+                }
+            }
+        }
+
+        return JDiffUtils.toHex( digest.digest() );
+    }
+
+    /**
+     * Identifies the JDK of an executable, like javadoc, by the <code>JAVA_VERSION</code> of its <code>release</code>
+     * file, or by the location and metadata of the executable for JDKs without one.
+     *
+     * @param jdkExecutable an executable in the <code>bin</code> directory of the JDK
+     * @return the version of the JDK
+     * @throws IOException if the <code>release</code> file can't be read
+     */
+    public static String getJdkVersion( String jdkExecutable )
+        throws IOException
+    {
+        File executable = new File( jdkExecutable ).getAbsoluteFile();
+        File release = new File( executable.getParentFile().getParentFile(), "release" );
+        if ( release.isFile() )
+        {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream( release );
+            try
+            {
+                properties.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+
+            String version = properties.getProperty( "JAVA_VERSION" );
+            if ( version != null )
+            {
+                return version.replace( "\"", "" );
+            }
+        }
+        return executable.getPath() + "/" + executable.length() + "/" + executable.lastModified();
+    }
+}
@@ -19,22 +19,27 @@ package org.codehaus.mojo.jdiff;
  * under the License.
  */
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.util.StringUtils;
 
 /**
  * Generates an API descriptor of the Java sources.
  */
-@Mojo( name = "descriptor", requiresDependencyResolution = ResolutionScope.COMPILE )
+@Mojo( name = "descriptor", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true )
 @Execute( phase = LifecyclePhase.GENERATE_SOURCES )
 public class DescriptorMojo
     extends BaseJDiffMojo
@@ -52,6 +57,17 @@ public class DescriptorMojo
     @Parameter( defaultValue = "${project.build.outputDirectory}", required = true, readonly = true )
     private String buildOutputDirectory;
 
+    /**
+     * Attach the compressed descriptor to the project with this classifier, so it is installed and deployed along with
+     * it. Reports compare against the descriptors attached to releases without checking out their sources. Set it
+     * empty to not attach the descriptor.
+     */
+    @Parameter( property = "jdiff.apiClassifier", defaultValue = "jdiff-api" )
+    private String apiClassifier;
+
+    @Component
+    private MavenProjectHelper projectHelper;
+
     /**
      * {@inheritDoc}
      *
@@ -63,12 +79,27 @@ public class DescriptorMojo
         try
         {
             generateJDiffXML(getProject(), apiname );
+
+            if ( StringUtils.isNotEmpty( apiClassifier ) )
+            {
+                File archive = new File( getWorkingDirectory(), apiname + "." + API_ARTIFACT_TYPE );
+                DescriptorCache.compress( new File( getWorkingDirectory(), apiname + ".xml" ), archive );
+                projectHelper.attachArtifact( getProject(), API_ARTIFACT_TYPE, apiClassifier, archive );
+            }
         }
         catch ( JavadocExecutionException e )
         {
             getLog().error( "Error when generating the JDiff descriptor" );
             throw new MojoExecutionException( e.getMessage(), e );
         }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to attach the JDiff descriptor: " + e.getMessage(), e );
+        }
+        finally
+        {
+            reportMetrics();
+        }
     }
 
     @Override
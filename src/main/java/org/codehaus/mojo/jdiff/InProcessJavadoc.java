@@ -0,0 +1,320 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Runs javadoc inside the Maven JVM with the system {@link DocumentationTool}, so the compiler classes stay warm
+ * between invocations. The doclet is loaded by a fresh class loader for every run, because the JDiff doclet keeps its
+ * options in static fields. Runs are serialized, since the doclet also prints to the shared standard output, and guarded
+ * by a security manager turning the calls of the doclet to {@link System#exit(int)} into failures of the run.
+ */
+final class InProcessJavadoc
+{
+    /**
+     * Serializes the runs of this JVM.
+     */
+    private static final Object LOCK = new Object();
+
+    private static Boolean exitGuardSupported;
+
+    private InProcessJavadoc()
+    {
+        // hide constructor of utility class
+    }
+
+    /**
+     * @return {@code true} if the running JVM provides a documentation tool and allows to guard it against
+     *         {@link System#exit(int)}
+     */
+    static boolean isAvailable()
+    {
+        return ToolProvider.getSystemDocumentationTool() != null && isExitGuardSupported();
+    }
+
+    /**
+     * Java 18 and later refuse to install a security manager unless <code>java.security.manager=allow</code> is set.
+     */
+    private static boolean isExitGuardSupported()
+    {
+        synchronized ( LOCK )
+        {
+            if ( exitGuardSupported == null )
+            {
+                SecurityManager previous = System.getSecurityManager();
+                try
+                {
+                    System.setSecurityManager( new ExitGuard( previous, null ) );
+                    System.setSecurityManager( previous );
+                    exitGuardSupported = Boolean.TRUE;
+                }
+                catch ( UnsupportedOperationException e )
+                {
+                    exitGuardSupported = Boolean.FALSE;
+                }
+                catch ( SecurityException e )
+                {
+                    exitGuardSupported = Boolean.FALSE;
+                }
+            }
+            return exitGuardSupported.booleanValue();
+        }
+    }
+
+    /**
+     * Overrides the detection of the exit guard, so the fallback to a forked javadoc can be tested on any JVM.
+     *
+     * @param supported whether the exit guard is supported, or {@code null} to detect it again
+     */
+    static void setExitGuardSupported( Boolean supported )
+    {
+        synchronized ( LOCK )
+        {
+            exitGuardSupported = supported;
+        }
+    }
+
+    /**
+     * Execute javadoc with the {@code arguments} as they would have been passed to the executable.
+     *
+     * @param arguments the javadoc arguments, including {@code -doclet} and {@code -docletpath}
+     * @param log the mojo logger
+     * @throws JavadocExecutionException if the doclet can't be loaded or the javadoc task doesn't succeed
+     */
+    static void execute( List<String> arguments, Log log )
+        throws JavadocExecutionException
+    {
+        synchronized ( LOCK )
+        {
+            executeGuarded( arguments, log );
+        }
+    }
+
+    private static void executeGuarded( List<String> arguments, Log log )
+        throws JavadocExecutionException
+    {
+        DocumentationTool tool = ToolProvider.getSystemDocumentationTool();
+
+        String docletName = null;
+        String docletpath = "";
+        List<String> options = new ArrayList<String>();
+        for ( Iterator<String> it = arguments.iterator(); it.hasNext(); )
+        {
+            String argument = it.next();
+            if ( "-doclet".equals( argument ) && it.hasNext() )
+            {
+                docletName = it.next();
+            }
+            else if ( "-docletpath".equals( argument ) && it.hasNext() )
+            {
+                docletpath = it.next();
+            }
+            else
+            {
+                options.add( argument );
+            }
+        }
+
+        if ( docletName == null )
+        {
+            throw new JavadocExecutionException( "No doclet specified for the in-process javadoc execution." );
+        }
+
+        URLClassLoader docletLoader = new URLClassLoader( toURLs( docletpath ), tool.getClass().getClassLoader() );
+
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+        SecurityManager securityManager = System.getSecurityManager();
+        ExitGuard exitGuard = new ExitGuard( securityManager, currentThread );
+
+        boolean success;
+        try
+        {
+            currentThread.setContextClassLoader( docletLoader );
+            System.setSecurityManager( exitGuard );
+
+            Class<?> docletClass = docletLoader.loadClass( docletName );
+
+            log.debug( "javadoc (in-process) " + StringUtils.join( options.iterator(), " " ) );
+
+            success = tool.getTask( null, null, null, docletClass, options, null ).call().booleanValue();
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new JavadocExecutionException( "Unable to load doclet " + docletName, e );
+        }
+        catch ( ExitException e )
+        {
+            throw new JavadocExecutionException( "generateJDiff doclet failed, it called System.exit("
+                + e.getStatus() + ")" );
+        }
+        catch ( RuntimeException e )
+        {
+            for ( Throwable cause = e.getCause(); cause != null; cause = cause.getCause() )
+            {
+                if ( cause instanceof ExitException )
+                {
+                    throw new JavadocExecutionException( "generateJDiff doclet failed, it called System.exit("
+                        + ( (ExitException) cause ).getStatus() + ")" );
+                }
+            }
+            throw new JavadocExecutionException( "generateJDiff doclet failed.", e );
+        }
+        finally
+        {
+            System.setSecurityManager( securityManager );
+            currentThread.setContextClassLoader( contextClassLoader );
+            try
+            {
+                docletLoader.close();
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Unable to close the doclet classloader: " + e.getMessage() );
+            }
+        }
+
+        if ( !success && exitGuard.getRefusedStatus() != null )
+        {
+            // javadoc 9 and later report the exceptions of the doclet as a fatal error instead of throwing them
+            throw new JavadocExecutionException( "generateJDiff doclet failed, it called System.exit("
+                + exitGuard.getRefusedStatus() + ")" );
+        }
+        if ( !success )
+        {
+            throw new JavadocExecutionException( "generate JDiff doclet failed." );
+        }
+    }
+
+    /**
+     * Thrown instead of exiting the JVM.
+     */
+    private static final class ExitException
+        extends SecurityException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ExitException( int status )
+        {
+            super( "System.exit(" + status + ") is not allowed while javadoc runs in-process" );
+            this.status = status;
+        }
+
+        int getStatus()
+        {
+            return status;
+        }
+    }
+
+    /**
+     * Refuses {@link System#exit(int)} from the thread running javadoc, and leaves every other check to the security
+     * manager it replaces, if any.
+     */
+    private static final class ExitGuard
+        extends SecurityManager
+    {
+        private final SecurityManager delegate;
+
+        private final Thread guardedThread;
+
+        private volatile Integer refusedStatus;
+
+        ExitGuard( SecurityManager delegate, Thread guardedThread )
+        {
+            this.delegate = delegate;
+            this.guardedThread = guardedThread;
+        }
+
+        @Override
+        public void checkExit( int status )
+        {
+            if ( Thread.currentThread() == guardedThread )
+            {
+                refusedStatus = Integer.valueOf( status );
+                throw new ExitException( status );
+            }
+            if ( delegate != null )
+            {
+                delegate.checkExit( status );
+            }
+        }
+
+        /**
+         * @return the status of the last refused {@link System#exit(int)}, or {@code null} if none was refused
+         */
+        Integer getRefusedStatus()
+        {
+            return refusedStatus;
+        }
+
+        @Override
+        public void checkPermission( Permission perm )
+        {
+            if ( delegate != null )
+            {
+                delegate.checkPermission( perm );
+            }
+        }
+
+        @Override
+        public void checkPermission( Permission perm, Object context )
+        {
+            if ( delegate != null )
+            {
+                delegate.checkPermission( perm, context );
+            }
+        }
+    }
+
+    private static URL[] toURLs( String path )
+        throws JavadocExecutionException
+    {
+        List<URL> urls = new ArrayList<URL>();
+        for ( String element : StringUtils.split( path, File.pathSeparator ) )
+        {
+            try
+            {
+                urls.add( new File( element ).toURI().toURL() );
+            }
+            catch ( MalformedURLException e )
+            {
+                throw new JavadocExecutionException( "Invalid docletpath element " + element, e );
+            }
+        }
+        return urls.toArray( new URL[urls.size()] );
+    }
+}
@@ -36,7 +36,7 @@ import org.apache.maven.reporting.MavenReport;
 /**
  * Generates an API difference report between Java sources of two SCM versions
  */
-@Mojo( name = "jdiff", requiresDependencyResolution = ResolutionScope.COMPILE )
+@Mojo( name = "jdiff", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true )
 @Execute( phase = LifecyclePhase.GENERATE_SOURCES )
 public class JDiffMojo
     extends AbstractJDiffMojo
@@ -87,6 +87,32 @@ public class JDiffMojo
         return build.getSourceDirectory();
     }
 
+    @Override
+    protected String getOutputDirectory( Build build )
+    {
+        return build.getOutputDirectory();
+    }
+
+    @Override
+    protected String getArtifactClassifier()
+    {
+        return null;
+    }
+
+    @Override
+    protected String getSourcesClassifier()
+    {
+        return "sources";
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    protected void setSourceRoot( MavenProject project, String sourceRoot )
+    {
+        project.getCompileSourceRoots().clear();
+        project.addCompileSourceRoot( sourceRoot );
+    }
+
     @Override
     protected String getApiName( String lhsTag )
     {
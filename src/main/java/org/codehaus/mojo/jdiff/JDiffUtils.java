@@ -20,17 +20,41 @@ package org.codehaus.mojo.jdiff;
  */
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 
 /**
  * Utility-class for this plugin.
@@ -65,26 +89,346 @@ public class JDiffUtils
     }
 
     public static Set<String> getPackages( File basedir, List<String> compileSourceRoots  )
+        throws IOException
     {
         Set<String> packages = new HashSet<String>();
+        scanSources( basedir, compileSourceRoots, packages );
+        return packages;
+    }
+
+    /**
+     * Walks the source roots in parallel, adding the name of every package holding a <code>.java</code> file to
+     * {@code packages}. Source roots which don't exist are ignored.
+     *
+     * @param basedir the directory the relative source roots are resolved against
+     * @param compileSourceRoots the source roots
+     * @param packages the set to add the package names to
+     * @return the number of <code>.java</code> files
+     * @throws IOException if a directory can't be read
+     */
+    public static int scanSources( File basedir, List<String> compileSourceRoots, Set<String> packages )
+        throws IOException
+    {
+        Set<String> found = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+        AtomicInteger sourceFiles = new AtomicInteger();
+
+        final List<SourceDirectoryScan> scans = new ArrayList<SourceDirectoryScan>();
         for ( String compileRoot : compileSourceRoots )
         {
+            File root = FileUtils.resolveFile( basedir, compileRoot );
+            if ( root.isDirectory() )
+            {
+                Set<Path> visited = Collections.newSetFromMap( new ConcurrentHashMap<Path, Boolean>() );
+                visited.add( root.toPath().toRealPath() );
+                scans.add( new SourceDirectoryScan( root.toPath(), "", found, sourceFiles, visited ) );
+            }
+        }
+
+        try
+        {
+            ForkJoinPool.commonPool().invoke( new RecursiveAction()
+            {
+                protected void compute()
+                {
+                    invokeAll( scans );
+                }
+            } );
+        }
+        catch ( UncheckedIOException e )
+        {
+            throw e.getCause();
+        }
+
+        packages.addAll( found );
+        return sourceFiles.get();
+    }
+
+    /**
+     * Scans a single directory and forks a scan of each of its subdirectories. A package is recorded as soon as the
+     * first <code>.java</code> file of its directory is seen. Symbolic links are followed, but every directory is only
+     * scanned once, so link cycles end. The directories of the plexus default excludes, such as <code>.svn</code> or
+     * <code>.git</code>, are skipped.
+     */
+    private static class SourceDirectoryScan
+        extends RecursiveAction
+    {
+        private static final Set<String> EXCLUDED_DIRECTORIES = getExcludedDirectories();
+
+        private final Path directory;
+
+        private final String packageName;
+
+        private final Set<String> packages;
+
+        private final AtomicInteger sourceFiles;
+
+        private final Set<Path> visited;
+
+        SourceDirectoryScan( Path directory, String packageName, Set<String> packages, AtomicInteger sourceFiles,
+                             Set<Path> visited )
+        {
+            this.directory = directory;
+            this.packageName = packageName;
+            this.packages = packages;
+            this.sourceFiles = sourceFiles;
+            this.visited = visited;
+        }
+
+        /**
+         * @return the names of the directories excluded by the plexus default excludes, like <code>CVS</code> for
+         *         <code>**&#47;CVS/**</code>
+         */
+        private static Set<String> getExcludedDirectories()
+        {
+            Set<String> names = new HashSet<String>();
+            for ( String pattern : DirectoryScanner.DEFAULTEXCLUDES )
+            {
+                String name = pattern;
+                if ( name.startsWith( "**/" ) )
+                {
+                    name = name.substring( 3 );
+                }
+                if ( name.endsWith( "/**" ) )
+                {
+                    name = name.substring( 0, name.length() - 3 );
+                }
+                if ( name.indexOf( '/' ) < 0 && name.indexOf( '*' ) < 0 && name.indexOf( '?' ) < 0 )
+                {
+                    names.add( name );
+                }
+            }
+            return names;
+        }
+
+        protected void compute()
+        {
+            List<SourceDirectoryScan> subdirectories = new ArrayList<SourceDirectoryScan>();
+            int files = 0;
             try
             {
-                @SuppressWarnings( "unchecked" )
-                List<String> files =
-                    FileUtils.getFileNames( FileUtils.resolveFile( basedir, compileRoot ), "**/*.java",
-                                            null, false );
-                for ( String file : files )
+                DirectoryStream<Path> entries = Files.newDirectoryStream( directory );
+                try
+                {
+                    for ( Path entry : entries )
+                    {
+                        String name = entry.getFileName().toString();
+                        if ( name.endsWith( ".java" ) && Files.isRegularFile( entry ) )
+                        {
+                            if ( files++ == 0 )
+                            {
+                                packages.add( packageName );
+                            }
+                        }
+                        else if ( Files.isDirectory( entry ) && !EXCLUDED_DIRECTORIES.contains( name )
+                            && visited.add( entry.toRealPath() ) )
+                        {
+                            String subpackage = packageName.length() == 0 ? name : packageName + '.' + name;
+                            subdirectories.add( new SourceDirectoryScan( entry, subpackage, packages, sourceFiles,
+                                                                         visited ) );
+                        }
+                    }
+                }
+                finally
                 {
-                    packages.add( FileUtils.dirname( file ).replace( File.separatorChar, '.' ) );
+                    entries.close();
                 }
             }
             catch ( IOException e )
             {
-                // do nothing
+                throw new UncheckedIOException( e );
             }
+
+            sourceFiles.addAndGet( files );
+            invokeAll( subdirectories );
+        }
+    }
+
+    /**
+     * Measures the size of the sources of each package, as the total length of its <code>.java</code> files in all
+     * source directories.
+     *
+     * @param sourceDirectories the source directories
+     * @param packages the package names
+     * @return the size in bytes of each package
+     */
+    public static Map<String, Long> getPackageSizes( List<File> sourceDirectories, Collection<String> packages )
+    {
+        Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+        for ( String pckg : packages )
+        {
+            long size = 0;
+            for ( File sourceDirectory : sourceDirectories )
+            {
+                File[] files = new File( sourceDirectory, pckg.replace( '.', File.separatorChar ) ).listFiles();
+                if ( files != null )
+                {
+                    for ( File file : files )
+                    {
+                        if ( file.getName().endsWith( ".java" ) && file.isFile() )
+                        {
+                            size += file.length();
+                        }
+                    }
+                }
+            }
+            sizes.put( pckg, Long.valueOf( size ) );
+        }
+        return sizes;
+    }
+
+    /**
+     * Splits packages into at most {@code count} shards of about the same size. The largest packages are placed
+     * first, each into the smallest shard so far.
+     *
+     * @param sizes the size of each package
+     * @param count the maximum number of shards
+     * @return the shards, each with its package names sorted, none of them empty unless there are no packages
+     */
+    public static List<Set<String>> partitionPackages( Map<String, Long> sizes, int count )
+    {
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>( sizes.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<String, Long>>()
+        {
+            public int compare( Map.Entry<String, Long> o1, Map.Entry<String, Long> o2 )
+            {
+                int result = o2.getValue().compareTo( o1.getValue() );
+                return result != 0 ? result : o1.getKey().compareTo( o2.getKey() );
+            }
+        } );
+
+        int shardCount = Math.max( 1, Math.min( count, entries.size() ) );
+        List<Set<String>> shards = new ArrayList<Set<String>>( shardCount );
+        long[] totals = new long[shardCount];
+        for ( int i = 0; i < shardCount; i++ )
+        {
+            shards.add( new TreeSet<String>() );
+        }
+        for ( Map.Entry<String, Long> entry : entries )
+        {
+            int smallest = 0;
+            for ( int i = 1; i < shardCount; i++ )
+            {
+                if ( totals[i] < totals[smallest] )
+                {
+                    smallest = i;
+                }
+            }
+            shards.get( smallest ).add( entry.getKey() );
+            // even empty packages cost a little
+            totals[smallest] += Math.max( 1, entry.getValue().longValue() );
+        }
+        return shards;
+    }
+
+    /**
+     * @return a new SHA-1 digest, as used for the fingerprints of this plugin
+     */
+    public static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // every JVM is required to support SHA-1
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Adds {@code value} to the digest, followed by a separator so consecutive values can't be confused.
+     *
+     * @param digest the digest
+     * @param value the value, may be {@code null}
+     */
+    public static void update( MessageDigest digest, String value )
+    {
+        try
+        {
+            digest.update( String.valueOf( value ).getBytes( "UTF-8" ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        digest.update( (byte) 0 );
+    }
+
+    /**
+     * @param values the values to fingerprint
+     * @return the hexadecimal SHA-1 fingerprint of the {@code values}
+     */
+    public static String fingerprint( String... values )
+    {
+        MessageDigest digest = newDigest();
+        for ( String value : values )
+        {
+            update( digest, value );
+        }
+        return toHex( digest.digest() );
+    }
+
+    public static String toHex( byte[] bytes )
+    {
+        StringBuffer hex = new StringBuffer( bytes.length * 2 );
+        for ( byte b : bytes )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) );
+            hex.append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Extracts all entries of a zip or jar file.
+     *
+     * @param archive the archive
+     * @param targetDirectory the directory to extract to
+     * @throws IOException if the archive can't be read, or an entry points outside the target directory
+     */
+    public static void unpack( File archive, File targetDirectory )
+        throws IOException
+    {
+        String targetPath = targetDirectory.getCanonicalPath() + File.separator;
+
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                File file = new File( targetDirectory, entry.getName() );
+                if ( !file.getCanonicalPath().startsWith( targetPath ) )
+                {
+                    throw new IOException( "Entry " + entry.getName() + " of " + archive
+                        + " points outside the target directory" );
+                }
+
+                if ( entry.isDirectory() )
+                {
+                    file.mkdirs();
+                    continue;
+                }
+
+                file.getParentFile().mkdirs();
+                InputStream in = zip.getInputStream( entry );
+                OutputStream out = null;
+                try
+                {
+                    out = new FileOutputStream( file );
+                    IOUtil.copy( in, out );
+                }
+                finally
+                {
+                    IOUtil.close( out );
+                    IOUtil.close( in );
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
         }
-        return packages;
     }
 }
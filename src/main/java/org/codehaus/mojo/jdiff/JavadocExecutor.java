@@ -19,9 +19,22 @@ package org.codehaus.mojo.jdiff;
  * under the License.
  */
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.DefaultConsumer;
@@ -31,7 +44,33 @@ import org.codehaus.plexus.util.cli.DefaultConsumer;
  */
 public class JavadocExecutor
 {
-    private Commandline cmd = new Commandline();
+    /**
+     * Arguments of up to this many characters in total are passed on the command line, longer ones through an
+     * argument file.
+     */
+    static final int INLINE_ARGUMENTS_LIMIT = 2048;
+
+    /**
+     * The interval in milliseconds at which the memory of a forked javadoc is sampled.
+     */
+    private static final long MEMORY_SAMPLING_INTERVAL = 200;
+
+    private String executable;
+
+    private List<String> arguments = new ArrayList<String>();
+
+    private List<String> jvmOptions = new ArrayList<String>();
+
+    /**
+     * Indexes of the arguments holding a path, which must be quoted on the command line
+     */
+    private Set<Integer> pathArguments = new HashSet<Integer>();
+
+    private boolean inProcess;
+
+    private boolean worker;
+
+    private File outputFile;
     
     private Log log;
     
@@ -43,11 +82,54 @@ public class JavadocExecutor
      */
     public JavadocExecutor( String executable, Log log )
     {
-        cmd.setExecutable( executable );
+        this.executable = executable;
         
         this.log = log;
     }
+
+    /**
+     * Run javadoc inside the current JVM through the system {@link javax.tools.DocumentationTool} instead of forking
+     * the executable. When no such tool is available the executable is forked anyway.
+     * 
+     * @param inProcess {@code true} to run javadoc in-process
+     */
+    public void setInProcess( boolean inProcess )
+    {
+        this.inProcess = inProcess;
+    }
     
+    /**
+     * Send the request to a persistent {@link JavadocWorker} JVM of the JDK of the executable instead of forking the
+     * executable, so the classes loaded and compiled by earlier requests are reused. Workers need an
+     * {@link #setOutputFile(File) output file} and ignore the working directory, all paths must be absolute. The
+     * executable is forked when no worker can be used.
+     * 
+     * @param worker {@code true} to use a persistent worker
+     */
+    public void setWorker( boolean worker )
+    {
+        this.worker = worker;
+    }
+
+    /**
+     * @return {@code true} if the request may be sent to a persistent worker
+     */
+    public boolean isWorker()
+    {
+        return worker && outputFile != null;
+    }
+
+    /**
+     * Write the output of a forked javadoc straight to {@code outputFile} instead of pumping it through the build log.
+     * Only the first errors and warnings are copied to the log.
+     * 
+     * @param outputFile the file to write the output to, or {@code null} to log the output
+     */
+    public void setOutputFile( File outputFile )
+    {
+        this.outputFile = outputFile;
+    }
+
     /**
      * Add a javadoc argument pair
      * 
@@ -56,11 +138,35 @@ public class JavadocExecutor
      */
     public void addArgumentPair( String argKey, String argValue )
     {
-        cmd.createArg().setValue( "-" + argKey );
+        arguments.add( "-" + argKey );
         
-        cmd.createArg().setValue( argValue );
+        arguments.add( argValue );
+    }
+
+    /**
+     * Add a javadoc argument pair whose value is a path, such as {@code classpath} or {@code sourcepath}.
+     * 
+     * @param argKey the key
+     * @param pathElements the elements of the path
+     */
+    public void addPathArgumentPair( String argKey, List<String> pathElements )
+    {
+        addArgumentPair( argKey, StringUtils.join( pathElements.iterator(), File.pathSeparator ) );
+
+        pathArguments.add( Integer.valueOf( arguments.size() - 1 ) );
     }
     
+    /**
+     * Add an option of the JVM of a forked javadoc, such as {@code -Xmx1g}. JVM options are always passed on the
+     * command line as {@code -J<option>}, javadoc doesn't accept them in argument files. They are ignored in-process.
+     * 
+     * @param option the JVM option
+     */
+    public void addJvmOption( String option )
+    {
+        jvmOptions.add( option );
+    }
+
     /**
      * Add an javadoc argument
      * 
@@ -68,17 +174,18 @@ public class JavadocExecutor
      */
     public void addArgument( String arg )
     {
-        cmd.createArg().setValue( arg );
+        arguments.add( arg );
     }
     
     /**
      * Execute from the {@code workingDir}
      * 
      * @param workingDir the directory to execute the javadoc command from 
+     * @return the result, whose counts are unknown unless the output has been written to a file
      * @throws JavadocExecutionException if an exception occurs during the execution of javadoc
      *   or if that execution doesn't exit with {@code 0}
      */
-    public void execute( String workingDir ) throws JavadocExecutionException
+    public JavadocResult execute( String workingDir ) throws JavadocExecutionException
     {
         File dir = new File( workingDir );
         
@@ -86,26 +193,293 @@ public class JavadocExecutor
         {
             dir.mkdirs();
         }
-        
-        cmd.setWorkingDirectory( dir.getAbsolutePath() );
-        
+
+        if ( inProcess )
+        {
+            if ( InProcessJavadoc.isAvailable() )
+            {
+                if ( !jvmOptions.isEmpty() )
+                {
+                    log.debug( "Ignoring the JVM options " + jvmOptions + " of the in-process javadoc" );
+                }
+                InProcessJavadoc.execute( arguments, log );
+                return new JavadocResult( null );
+            }
+            log.debug( "No system documentation tool or System.exit guard available, forking " + executable );
+        }
+
+        if ( isWorker() )
+        {
+            File java = JavadocWorkerPool.getJavaExecutable( executable );
+            if ( java != null )
+            {
+                JavadocResult result = executeInWorker( java );
+                if ( result != null )
+                {
+                    return result;
+                }
+            }
+        }
+
         int exitCode = 0;
-                
+        JavadocResult result = new JavadocResult( null );
+
+        File argfile = null;
         try
         {
+            if ( getArgumentsLength() > INLINE_ARGUMENTS_LIMIT )
+            {
+                argfile = File.createTempFile( "javadoc", ".options", dir );
+            }
+            Commandline cmd = createCommandline( dir, argfile );
+
             log.debug( cmd.toString() );
-            exitCode = CommandLineUtils.executeCommandLine( cmd, 
-                                                            new DefaultConsumer(), 
-                                                            new DefaultConsumer() );
+            if ( outputFile != null )
+            {
+                long[] peakRss = new long[] { -1 };
+                exitCode = executeRedirected( cmd, dir, peakRss );
+                result = JavadocResult.read( outputFile, log );
+                result.setPeakRssKb( peakRss[0] );
+            }
+            else
+            {
+                exitCode = CommandLineUtils.executeCommandLine( cmd, 
+                                                                new DefaultConsumer(), 
+                                                                new DefaultConsumer() );
+            }
         }
         catch ( Exception ex )
         {
             throw new JavadocExecutionException( "generateJDiff doclet failed.", ex );
         }
+        finally
+        {
+            // kept for troubleshooting along with the logged command line
+            if ( argfile != null && !log.isDebugEnabled() )
+            {
+                argfile.delete();
+            }
+        }
         
+        if ( exitCode != 0 && result.isOutOfMemory() )
+        {
+            throw new JavadocExecutionException( "generate JDiff doclet ran out of memory with the JVM options "
+                + jvmOptions + ", see " + outputFile );
+        }
+        if ( exitCode != 0 )
+        {
+            throw new JavadocExecutionException( outputFile == null ? "generate JDiff doclet failed."
+                            : "generate JDiff doclet failed, see " + outputFile );
+        }
+        return result;
+    }
+
+    /**
+     * Runs the request in a persistent worker of the JDK.
+     * 
+     * @param java the java executable of the JDK
+     * @return the result, or {@code null} if the worker exited before replying and javadoc must be forked
+     * @throws JavadocExecutionException if the worker can't be started or javadoc doesn't succeed
+     */
+    private JavadocResult executeInWorker( File java )
+        throws JavadocExecutionException
+    {
+        outputFile.getParentFile().mkdirs();
+
+        int exitCode;
+        JavadocResult result;
+        try
+        {
+            JavadocWorkerPool.Worker javadocWorker = JavadocWorkerPool.acquire( java, jvmOptions, log );
+            try
+            {
+                log.debug( javadocWorker + ": " + StringUtils.join( arguments.iterator(), " " ) );
+                exitCode = javadocWorker.execute( arguments, outputFile );
+            }
+            finally
+            {
+                JavadocWorkerPool.release( javadocWorker );
+            }
+            result = JavadocResult.read( outputFile, log );
+        }
+        catch ( IOException e )
+        {
+            throw new JavadocExecutionException( "generateJDiff doclet failed.", e );
+        }
+
+        if ( exitCode == JavadocWorker.EXIT_OUT_OF_MEMORY || ( exitCode != 0 && result.isOutOfMemory() ) )
+        {
+            throw new JavadocExecutionException( "generate JDiff doclet ran out of memory with the JVM options "
+                + jvmOptions + ", see " + outputFile );
+        }
+        if ( exitCode < 0 )
+        {
+            log.warn( "The javadoc worker exited during the request, see " + outputFile + ". Forking " + executable
+                + " instead" );
+            return null;
+        }
         if ( exitCode != 0 )
         {
-            throw new JavadocExecutionException( "generate JDiff doclet failed." );
+            throw new JavadocExecutionException( "generate JDiff doclet failed, see " + outputFile );
+        }
+        return result;
+    }
+
+    /**
+     * Runs the command line with both its output streams redirected to the output file, so no thread of this JVM
+     * has to pump them. While it runs the peak resident set size of the process and its children is sampled.
+     * 
+     * @param cmd the command line
+     * @param dir the working directory
+     * @param peakRss holds the peak resident set size in kilobytes on return, or -1 if unknown
+     * @return the exit code
+     * @throws IOException if the process can't be started or is interrupted
+     */
+    private int executeRedirected( Commandline cmd, File dir, long[] peakRss )
+        throws IOException
+    {
+        outputFile.getParentFile().mkdirs();
+
+        ProcessBuilder builder = new ProcessBuilder( cmd.getShellCommandline() );
+        builder.directory( dir );
+        builder.redirectErrorStream( true );
+        builder.redirectOutput( outputFile );
+
+        Process process = builder.start();
+        process.getOutputStream().close();
+        long pid = getPid( process );
+        try
+        {
+            while ( !process.waitFor( MEMORY_SAMPLING_INTERVAL, TimeUnit.MILLISECONDS ) )
+            {
+                if ( pid > 0 )
+                {
+                    peakRss[0] = Math.max( peakRss[0], BuildMetrics.getProcessTreePeakRssKb( pid ) );
+                }
+            }
+            return process.exitValue();
+        }
+        catch ( InterruptedException e )
+        {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for " + executable );
+        }
+    }
+
+    /**
+     * @return the process id of {@code process}, or -1 if it can't be determined
+     */
+    private static long getPid( Process process )
+    {
+        try
+        {
+            // Java 9 and later
+            return ( (Number) Process.class.getMethod( "pid" ).invoke( process ) ).longValue();
+        }
+        catch ( Exception e )
+        {
+            try
+            {
+                // java.lang.UNIXProcess of Java 8
+                Field pid = process.getClass().getDeclaredField( "pid" );
+                pid.setAccessible( true );
+                return pid.getLong( process );
+            }
+            catch ( Exception e1 )
+            {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return the total length of the arguments
+     */
+    int getArgumentsLength()
+    {
+        int length = 0;
+        for ( String argument : arguments )
+        {
+            length += argument.length() + 1;
+        }
+        return length;
+    }
+
+    /**
+     * Creates the command line to fork the executable with.
+     * 
+     * @param dir the working directory
+     * @param argfile the file to write the arguments to, or {@code null} to pass them on the command line
+     * @return the command line
+     * @throws IOException if the argument file can't be written
+     */
+    Commandline createCommandline( File dir, File argfile )
+        throws IOException
+    {
+        Commandline cmd = new Commandline();
+
+        cmd.setExecutable( executable );
+
+        cmd.setWorkingDirectory( dir.getAbsolutePath() );
+
+        for ( String option : jvmOptions )
+        {
+            cmd.createArg().setValue( "-J" + option );
+        }
+
+        if ( argfile != null )
+        {
+            writeArgfile( argfile );
+            cmd.createArg().setValue( "@" + argfile.getAbsolutePath() );
+            return cmd;
+        }
+
+        for ( int i = 0; i < arguments.size(); i++ )
+        {
+            String argument = arguments.get( i );
+            if ( pathArguments.contains( Integer.valueOf( i ) ) )
+            {
+                argument = StringUtils.quoteAndEscape( argument, '\'' );
+            }
+            cmd.createArg().setValue( argument );
+        }
+        return cmd;
+    }
+
+    /**
+     * Writes the arguments one per line, each single quoted with its backslashes and quotes escaped, which is how
+     * javadoc reads them back from an argument file.
+     * 
+     * @param argfile the file to write
+     * @throws IOException if the file can't be written
+     */
+    private void writeArgfile( File argfile )
+        throws IOException
+    {
+        // javadoc reads argument files in the platform encoding
+        Writer writer = new BufferedWriter( new FileWriter( argfile ) );
+        try
+        {
+            for ( String argument : arguments )
+            {
+                writer.write( '\'' );
+                for ( int i = 0; i < argument.length(); i++ )
+                {
+                    char c = argument.charAt( i );
+                    if ( c == '\\' || c == '\'' )
+                    {
+                        writer.write( '\\' );
+                    }
+                    writer.write( c );
+                }
+                writer.write( '\'' );
+                writer.write( '\n' );
+            }
+        }
+        finally
+        {
+            IOUtil.close( writer );
         }
     }
-}
\ No newline at end of file
+}
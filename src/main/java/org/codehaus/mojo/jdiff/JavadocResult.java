@@ -0,0 +1,205 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The outcome of a javadoc run whose output has been written to a file: the number of errors and warnings, and the
+ * API difference reported by the JDiff doclet when it runs with <code>-stats</code>.
+ */
+public class JavadocResult
+{
+    /**
+     * At most this many errors and warnings are copied to the build log, the others are only in the output file.
+     */
+    static final int MAX_LOGGED_LINES = 20;
+
+    private static final Pattern DIAGNOSTIC = Pattern.compile( ".*:\\s*(error|warning)\\s*[:-].*" );
+
+    private static final Pattern COUNT = Pattern.compile( "\\s*(\\d+) (error|warning)s?\\s*" );
+
+    private static final Pattern DIFFERENCE = Pattern.compile( ".*?(\\d+(?:\\.\\d+)?)%\\s+difference.*" );
+
+    private final File outputFile;
+
+    private int errors = -1;
+
+    private int warnings = -1;
+
+    private double differencePercent = -1;
+
+    private boolean outOfMemory;
+
+    private long peakRssKb = -1;
+
+    JavadocResult( File outputFile )
+    {
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * @return the file holding the output, or {@code null} if the output hasn't been captured
+     */
+    public File getOutputFile()
+    {
+        return outputFile;
+    }
+
+    /**
+     * @return the number of errors, or -1 if unknown
+     */
+    public int getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * @return the number of warnings, or -1 if unknown
+     */
+    public int getWarnings()
+    {
+        return warnings;
+    }
+
+    /**
+     * @return the percentage of difference between the APIs reported by the doclet, or -1 if unknown
+     */
+    public double getDifferencePercent()
+    {
+        return differencePercent;
+    }
+
+    /**
+     * @return {@code true} if the output reports that javadoc ran out of memory
+     */
+    public boolean isOutOfMemory()
+    {
+        return outOfMemory;
+    }
+
+    /**
+     * @return the peak resident set size of the javadoc process in kilobytes, or -1 if unknown
+     */
+    public long getPeakRssKb()
+    {
+        return peakRssKb;
+    }
+
+    void setPeakRssKb( long peakRssKb )
+    {
+        this.peakRssKb = peakRssKb;
+    }
+
+    /**
+     * Reads the output of a javadoc run, copying its first errors and warnings to the log.
+     *
+     * @param outputFile the file holding the output
+     * @param log the log
+     * @return the result
+     * @throws IOException if the file can't be read
+     */
+    static JavadocResult read( File outputFile, Log log )
+        throws IOException
+    {
+        JavadocResult result = new JavadocResult( outputFile );
+        int diagnostics = 0;
+        int countedErrors = -1;
+        int countedWarnings = -1;
+
+        BufferedReader reader = new BufferedReader( new FileReader( outputFile ) );
+        try
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                Matcher matcher = DIAGNOSTIC.matcher( line );
+                if ( matcher.matches() )
+                {
+                    if ( diagnostics++ < MAX_LOGGED_LINES )
+                    {
+                        if ( "error".equals( matcher.group( 1 ) ) )
+                        {
+                            log.error( line );
+                        }
+                        else
+                        {
+                            log.warn( line );
+                        }
+                    }
+                    continue;
+                }
+
+                matcher = COUNT.matcher( line );
+                if ( matcher.matches() )
+                {
+                    if ( "error".equals( matcher.group( 2 ) ) )
+                    {
+                        countedErrors = Integer.parseInt( matcher.group( 1 ) );
+                    }
+                    else
+                    {
+                        countedWarnings = Integer.parseInt( matcher.group( 1 ) );
+                    }
+                    continue;
+                }
+
+                if ( line.contains( "java.lang.OutOfMemoryError" ) )
+                {
+                    result.outOfMemory = true;
+                    log.error( line );
+                    continue;
+                }
+
+                matcher = DIFFERENCE.matcher( line );
+                if ( matcher.matches() )
+                {
+                    result.differencePercent = Double.parseDouble( matcher.group( 1 ) );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+
+        // javadoc only prints the counts which aren't zero
+        result.errors = Math.max( countedErrors, 0 );
+        result.warnings = Math.max( countedWarnings, 0 );
+
+        if ( diagnostics > MAX_LOGGED_LINES )
+        {
+            log.warn( ( diagnostics - MAX_LOGGED_LINES ) + " more errors and warnings in " + outputFile );
+        }
+        else
+        {
+            log.debug( "javadoc output written to " + outputFile );
+        }
+        return result;
+    }
+}
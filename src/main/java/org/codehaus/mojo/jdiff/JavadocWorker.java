@@ -0,0 +1,312 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+
+/**
+ * The main class of a persistent javadoc worker JVM, started by {@link JavadocWorkerPool} with the <code>java</code>
+ * executable of the selected JDK. It runs one javadoc request after the other, so the compiler classes loaded and
+ * compiled by the JIT for one module are reused by the next.
+ * <p>
+ * Requests are read from the standard input: the number of arguments, the output file and the arguments, each string
+ * as its length followed by its UTF-8 bytes. The exit code of every request is written to the standard output, which
+ * is why everything javadoc and the doclet print goes to the output file of the request instead. The worker exits at
+ * the end of its standard input, that is when the build ends, or after being idle for the number of seconds given as
+ * its only argument. Where the JVM allows a security manager, <code>System.exit</code> is refused while a request
+ * runs, so a doclet exiting fails its request instead of the worker. Otherwise the worker dies with the request and
+ * the caller forks javadoc instead.
+ * <p>
+ * This class only depends on the JDK, it is the only class of the plugin loaded by the worker.
+ */
+public final class JavadocWorker
+{
+    static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    static final int EXIT_SUCCESS = 0;
+
+    static final int EXIT_FAILURE = 1;
+
+    /**
+     * The worker has run out of memory, it exits after replying.
+     */
+    static final int EXIT_OUT_OF_MEMORY = 3;
+
+    private static volatile long lastActivity = System.currentTimeMillis();
+
+    private JavadocWorker()
+    {
+        // hide constructor of utility class
+    }
+
+    public static void main( String[] args )
+        throws IOException
+    {
+        final long idleTimeout = args.length > 0 ? Long.parseLong( args[0] ) * 1000 : 0;
+
+        DataInputStream in = new DataInputStream( new BufferedInputStream( System.in ) );
+        DataOutputStream out =
+            new DataOutputStream( new BufferedOutputStream( new FileOutputStream( FileDescriptor.out ) ) );
+        PrintStream console = System.err;
+        System.setOut( console );
+
+        try
+        {
+            System.setSecurityManager( new ExitGuard() );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // Java 18 and later without -Djava.security.manager=allow, the worker runs unguarded
+        }
+
+        if ( idleTimeout > 0 )
+        {
+            Thread watchdog = new Thread( "jdiff-worker-watchdog" )
+            {
+                public void run()
+                {
+                    while ( true )
+                    {
+                        try
+                        {
+                            Thread.sleep( 1000 );
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            return;
+                        }
+                        if ( lastActivity > 0 && System.currentTimeMillis() - lastActivity > idleTimeout )
+                        {
+                            System.exit( EXIT_SUCCESS );
+                        }
+                    }
+                }
+            };
+            watchdog.setDaemon( true );
+            watchdog.start();
+        }
+
+        while ( true )
+        {
+            int argc;
+            try
+            {
+                argc = in.readInt();
+            }
+            catch ( EOFException e )
+            {
+                return;
+            }
+            // a request in progress is never idle
+            lastActivity = 0;
+
+            File outputFile = new File( readString( in ) );
+            List<String> arguments = new ArrayList<String>( argc );
+            for ( int i = 0; i < argc; i++ )
+            {
+                arguments.add( readString( in ) );
+            }
+
+            int exitCode;
+            PrintStream output = new PrintStream( new FileOutputStream( outputFile ), true );
+            try
+            {
+                System.setOut( output );
+                System.setErr( output );
+                exitCode = execute( arguments, output );
+            }
+            finally
+            {
+                System.setOut( console );
+                System.setErr( console );
+                output.close();
+            }
+
+            lastActivity = System.currentTimeMillis();
+            out.writeInt( exitCode );
+            out.flush();
+            if ( exitCode == EXIT_OUT_OF_MEMORY )
+            {
+                System.exit( exitCode );
+            }
+        }
+    }
+
+    /**
+     * Refuses <code>System.exit</code> while a request is in progress, and permits everything else.
+     */
+    private static final class ExitGuard
+        extends SecurityManager
+    {
+        @Override
+        public void checkExit( int status )
+        {
+            if ( lastActivity == 0 )
+            {
+                throw new SecurityException( "System.exit(" + status + ") refused during a javadoc request" );
+            }
+        }
+
+        @Override
+        public void checkPermission( Permission perm )
+        {
+            // permitted
+        }
+
+        @Override
+        public void checkPermission( Permission perm, Object context )
+        {
+            // permitted
+        }
+    }
+
+    /**
+     * Runs javadoc like {@link InProcessJavadoc}, with the doclet loaded by a fresh class loader.
+     *
+     * @param arguments the javadoc arguments, including <code>-doclet</code> and <code>-docletpath</code>
+     * @param output the output of the request
+     * @return the exit code
+     */
+    static int execute( List<String> arguments, PrintStream output )
+    {
+        DocumentationTool tool = ToolProvider.getSystemDocumentationTool();
+        if ( tool == null )
+        {
+            output.println( "error: no documentation tool available in " + System.getProperty( "java.home" ) );
+            return EXIT_FAILURE;
+        }
+
+        String docletName = null;
+        List<URL> docletpath = new ArrayList<URL>();
+        List<String> options = new ArrayList<String>();
+        for ( int i = 0; i < arguments.size(); i++ )
+        {
+            String argument = arguments.get( i );
+            if ( "-doclet".equals( argument ) && i + 1 < arguments.size() )
+            {
+                docletName = arguments.get( ++i );
+            }
+            else if ( "-docletpath".equals( argument ) && i + 1 < arguments.size() )
+            {
+                for ( String element : arguments.get( ++i ).split( File.pathSeparator ) )
+                {
+                    if ( element.length() > 0 )
+                    {
+                        try
+                        {
+                            docletpath.add( new File( element ).toURI().toURL() );
+                        }
+                        catch ( IOException e )
+                        {
+                            output.println( "error: invalid docletpath element " + element );
+                            return EXIT_FAILURE;
+                        }
+                    }
+                }
+            }
+            else
+            {
+                options.add( argument );
+            }
+        }
+
+        if ( docletName == null )
+        {
+            output.println( "error: no doclet specified" );
+            return EXIT_FAILURE;
+        }
+
+        URLClassLoader docletLoader =
+            new URLClassLoader( docletpath.toArray( new URL[docletpath.size()] ), tool.getClass().getClassLoader() );
+
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+        try
+        {
+            currentThread.setContextClassLoader( docletLoader );
+
+            Class<?> docletClass = docletLoader.loadClass( docletName );
+
+            PrintWriter writer = new PrintWriter( output, true );
+            boolean success = tool.getTask( writer, null, null, docletClass, options, null ).call().booleanValue();
+            writer.flush();
+            return success ? EXIT_SUCCESS : EXIT_FAILURE;
+        }
+        catch ( Throwable e )
+        {
+            e.printStackTrace( output );
+            for ( Throwable cause = e; cause != null; cause = cause.getCause() )
+            {
+                if ( cause instanceof OutOfMemoryError )
+                {
+                    return EXIT_OUT_OF_MEMORY;
+                }
+            }
+            return EXIT_FAILURE;
+        }
+        finally
+        {
+            currentThread.setContextClassLoader( contextClassLoader );
+            try
+            {
+                docletLoader.close();
+            }
+            catch ( IOException e )
+            {
+                // the next request uses a new class loader anyway
+            }
+        }
+    }
+
+    static String readString( DataInputStream in )
+        throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, UTF_8 );
+    }
+
+    static void writeString( DataOutputStream out, String value )
+        throws IOException
+    {
+        byte[] bytes = value.getBytes( UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+}
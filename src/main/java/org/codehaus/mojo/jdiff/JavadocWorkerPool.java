@@ -0,0 +1,277 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.SystemUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Holds the persistent {@link JavadocWorker} JVMs of the build. A worker is started for a JDK and a set of JVM options
+ * the first time a request needs one and is handed to the following requests with the same JDK and options, one
+ * request at a time. Concurrent requests get a worker each. The workers exit when the Maven JVM does, or after being
+ * idle for {@link #IDLE_TIMEOUT} seconds.
+ */
+final class JavadocWorkerPool
+{
+    /**
+     * The number of seconds after which an idle worker exits, in case the Maven JVM outlives the build.
+     */
+    static final int IDLE_TIMEOUT = 600;
+
+    private static final Map<String, LinkedList<Worker>> IDLE = new HashMap<String, LinkedList<Worker>>();
+
+    private static final List<Worker> WORKERS = new ArrayList<Worker>();
+
+    static
+    {
+        Runtime.getRuntime().addShutdownHook( new Thread( "jdiff-worker-shutdown" )
+        {
+            public void run()
+            {
+                shutdown();
+            }
+        } );
+    }
+
+    private JavadocWorkerPool()
+    {
+        // hide constructor of utility class
+    }
+
+    /**
+     * @param javadocExecutable the javadoc executable of a JDK
+     * @return the java executable next to it, or {@code null} if there is none
+     */
+    static File getJavaExecutable( String javadocExecutable )
+    {
+        File java = new File( new File( javadocExecutable ).getParentFile(),
+                              "java" + ( SystemUtils.IS_OS_WINDOWS ? ".exe" : "" ) );
+        return java.isFile() ? java : null;
+    }
+
+    /**
+     * Takes an idle worker of the JDK with the JVM options, or starts one.
+     *
+     * @param java the java executable of the JDK
+     * @param jvmOptions the JVM options of the worker
+     * @param log the mojo logger
+     * @return the worker, which must be {@link #release(Worker) released} after its request
+     * @throws IOException if the worker can't be started
+     */
+    static Worker acquire( File java, List<String> jvmOptions, Log log )
+        throws IOException
+    {
+        String key = java.getAbsolutePath() + " " + StringUtils.join( jvmOptions.iterator(), " " );
+        synchronized ( IDLE )
+        {
+            LinkedList<Worker> idle = IDLE.get( key );
+            while ( idle != null && !idle.isEmpty() )
+            {
+                Worker worker = idle.removeFirst();
+                if ( worker.process.isAlive() )
+                {
+                    return worker;
+                }
+                WORKERS.remove( worker );
+            }
+        }
+
+        List<String> command = new ArrayList<String>();
+        command.add( java.getAbsolutePath() );
+        command.addAll( jvmOptions );
+        int version = getFeatureVersion( DescriptorCache.getJdkVersion( java.getPath() ) );
+        if ( version >= 18 && version < 24 )
+        {
+            // lets the worker install its System.exit guard, Java 24 doesn't allow a security manager at all
+            command.add( "-Djava.security.manager=allow" );
+        }
+        command.add( "-cp" );
+        command.add( getPluginLocation().getAbsolutePath() );
+        command.add( JavadocWorker.class.getName() );
+        command.add( String.valueOf( IDLE_TIMEOUT ) );
+
+        log.debug( "Starting javadoc worker " + StringUtils.join( command.iterator(), " " ) );
+        ProcessBuilder builder = new ProcessBuilder( command );
+        builder.redirectError( ProcessBuilder.Redirect.INHERIT );
+        Worker worker = new Worker( key, builder.start() );
+        synchronized ( IDLE )
+        {
+            WORKERS.add( worker );
+        }
+        return worker;
+    }
+
+    /**
+     * Hands a worker back to the pool after its request, unless it has exited.
+     *
+     * @param worker the worker
+     */
+    static void release( Worker worker )
+    {
+        synchronized ( IDLE )
+        {
+            if ( worker.failed || !worker.process.isAlive() )
+            {
+                WORKERS.remove( worker );
+                return;
+            }
+            LinkedList<Worker> idle = IDLE.get( worker.key );
+            if ( idle == null )
+            {
+                idle = new LinkedList<Worker>();
+                IDLE.put( worker.key, idle );
+            }
+            idle.addFirst( worker );
+        }
+    }
+
+    /**
+     * Closes the standard input of all workers, which makes them exit.
+     */
+    static void shutdown()
+    {
+        synchronized ( IDLE )
+        {
+            for ( Worker worker : WORKERS )
+            {
+                IOUtil.close( worker.out );
+            }
+            WORKERS.clear();
+            IDLE.clear();
+        }
+    }
+
+    /**
+     * @param jdkVersion a JDK version like <code>1.8.0_392</code> or <code>17.0.9</code>
+     * @return the feature version, like 8 or 17, or 0 if it is unknown
+     */
+    static int getFeatureVersion( String jdkVersion )
+    {
+        String[] parts = jdkVersion.split( "[._+-]" );
+        try
+        {
+            int version = Integer.parseInt( parts[0] );
+            return version == 1 && parts.length > 1 ? Integer.parseInt( parts[1] ) : version;
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    private static File getPluginLocation()
+        throws IOException
+    {
+        try
+        {
+            return new File( JavadocWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+        }
+        catch ( URISyntaxException e )
+        {
+            throw new IOException( "Unable to locate the classes of the javadoc worker", e );
+        }
+    }
+
+    /**
+     * A worker JVM and the pipes to its standard input and output.
+     */
+    static final class Worker
+    {
+        private final String key;
+
+        private final Process process;
+
+        private final DataOutputStream out;
+
+        private final DataInputStream in;
+
+        private int requests;
+
+        private boolean failed;
+
+        Worker( String key, Process process )
+        {
+            this.key = key;
+            this.process = process;
+            this.out = new DataOutputStream( new BufferedOutputStream( process.getOutputStream() ) );
+            this.in = new DataInputStream( new BufferedInputStream( process.getInputStream() ) );
+        }
+
+        /**
+         * Runs a javadoc request and waits for its exit code.
+         *
+         * @param arguments the javadoc arguments
+         * @param outputFile the file to write the output of javadoc to
+         * @return the exit code, or -1 if the worker exited before replying
+         */
+        int execute( List<String> arguments, File outputFile )
+        {
+            requests++;
+            try
+            {
+                out.writeInt( arguments.size() );
+                JavadocWorker.writeString( out, outputFile.getAbsolutePath() );
+                for ( String argument : arguments )
+                {
+                    JavadocWorker.writeString( out, argument );
+                }
+                out.flush();
+
+                int exitCode = in.readInt();
+                failed = exitCode == JavadocWorker.EXIT_OUT_OF_MEMORY;
+                return exitCode;
+            }
+            catch ( IOException e )
+            {
+                failed = true;
+                process.destroy();
+                return -1;
+            }
+        }
+
+        /**
+         * @return the number of requests sent to this worker so far
+         */
+        int getRequests()
+        {
+            return requests;
+        }
+
+        public String toString()
+        {
+            return "javadoc worker " + key + " (request " + requests + ")";
+        }
+    }
+}
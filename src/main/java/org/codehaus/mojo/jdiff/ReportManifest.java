@@ -0,0 +1,188 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Fingerprints of the pages of a report, kept next to them, so a report rendered again into a staging directory only
+ * rewrites the pages whose content changed. Unchanged pages keep their timestamps and don't need to be deployed again.
+ * Single line HTML comments are left out of the fingerprints, as the JDiff doclet writes the generation date in one.
+ */
+public class ReportManifest
+{
+    public static final String FILENAME = "jdiff-manifest.properties";
+
+    private File outputDirectory;
+
+    private Properties fingerprints = new Properties();
+
+    private int written;
+
+    private int unchanged;
+
+    private int removed;
+
+    /**
+     * The constructor, reading the fingerprints of the previous report in {@code outputDirectory}, if any.
+     *
+     * @param outputDirectory the report output directory
+     * @throws IOException if the manifest can't be read
+     */
+    public ReportManifest( File outputDirectory )
+        throws IOException
+    {
+        this.outputDirectory = outputDirectory;
+
+        File manifest = new File( outputDirectory, FILENAME );
+        if ( manifest.isFile() )
+        {
+            InputStream in = new FileInputStream( manifest );
+            try
+            {
+                fingerprints.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    /**
+     * Copies the pages of {@code stagingDirectory} whose fingerprint changed to the output directory, deletes the
+     * pages of the previous report which are no longer generated, and stores the new fingerprints.
+     *
+     * @param stagingDirectory the directory the report has been rendered to
+     * @throws IOException if a page can't be copied or the manifest can't be written
+     */
+    public void synchronize( File stagingDirectory )
+        throws IOException
+    {
+        Properties current = new Properties();
+
+        @SuppressWarnings( "unchecked" )
+        List<String> pages = FileUtils.getFileNames( stagingDirectory, null, null, false );
+        for ( String page : pages )
+        {
+            String path = page.replace( File.separatorChar, '/' );
+            File source = new File( stagingDirectory, page );
+            File target = new File( outputDirectory, page );
+
+            String fingerprint = fingerprint( source );
+            current.setProperty( path, fingerprint );
+            if ( fingerprint.equals( fingerprints.getProperty( path ) ) && target.isFile() )
+            {
+                unchanged++;
+            }
+            else
+            {
+                target.getParentFile().mkdirs();
+                FileUtils.copyFile( source, target );
+                written++;
+            }
+        }
+
+        for ( String path : fingerprints.stringPropertyNames() )
+        {
+            if ( !current.containsKey( path ) && new File( outputDirectory, path ).delete() )
+            {
+                removed++;
+            }
+        }
+
+        fingerprints = current;
+
+        outputDirectory.mkdirs();
+        OutputStream out = new FileOutputStream( new File( outputDirectory, FILENAME ) );
+        try
+        {
+            fingerprints.store( out, "JDiff report pages" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    /**
+     * @return the number of pages written by the last synchronization
+     */
+    public int getWritten()
+    {
+        return written;
+    }
+
+    /**
+     * @return the number of pages left untouched by the last synchronization
+     */
+    public int getUnchanged()
+    {
+        return unchanged;
+    }
+
+    /**
+     * @return the number of pages deleted by the last synchronization
+     */
+    public int getRemoved()
+    {
+        return removed;
+    }
+
+    private static String fingerprint( File page )
+        throws IOException
+    {
+        MessageDigest digest = JDiffUtils.newDigest();
+
+        // ISO-8859-1 maps every byte to a character, so pages in any encoding are read unchanged
+        BufferedReader in = new BufferedReader( new InputStreamReader( new FileInputStream( page ), "ISO-8859-1" ) );
+        try
+        {
+            String line;
+            while ( ( line = in.readLine() ) != null )
+            {
+                String trimmed = line.trim();
+                if ( !( trimmed.startsWith( "<!--" ) && trimmed.endsWith( "-->" ) ) )
+                {
+                    JDiffUtils.update( digest, line );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        return JDiffUtils.toHex( digest.digest() );
+    }
+}
@@ -21,11 +21,16 @@ package org.codehaus.mojo.jdiff;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.scm.CommandParameter;
+import org.apache.maven.scm.CommandParameters;
 import org.apache.maven.scm.ScmException;
 import org.apache.maven.scm.ScmFileSet;
 import org.apache.maven.scm.ScmResult;
+import org.apache.maven.scm.ScmTag;
 import org.apache.maven.scm.command.checkout.CheckOutScmResult;
 import org.apache.maven.scm.command.update.UpdateScmResult;
 import org.apache.maven.scm.manager.ScmManager;
@@ -37,6 +42,11 @@ import org.apache.maven.scm.repository.ScmRepository;
  */
 public class ScmCommandExecutor
 {
+    /**
+     * The providers which always check out the whole repository, whatever the includes of the file set.
+     */
+    private static final List<String> PROVIDERS_IGNORING_INCLUDES = Arrays.asList( "git", "jgit", "svn" );
+
     private ScmManager manager;
 
     private String connectionUrl;
@@ -81,6 +91,23 @@ public class ScmCommandExecutor
      */
     public void checkout( String targetDirectory, String includes, String excludes )
         throws ScmException
+    {
+        checkout( targetDirectory, includes, excludes, null );
+    }
+
+    /**
+     * Check out sources of a tag in the {@code targetDirectory}. For distributed providers like git, where the
+     * connection URL points to the whole repository, only the tag is fetched and without history. Other providers
+     * are expected to have the tag in their connection URL, so {@code tag} is ignored for them.
+     * 
+     * @param targetDirectory the directory where the sources will be checked out
+     * @param includes the sources to include
+     * @param excludes the sources to exclude
+     * @param tag the tag to check out, or {@code null} for the default of the connection
+     * @throws ScmException if the checkout throws an exception
+     */
+    public void checkout( String targetDirectory, String includes, String excludes, String tag )
+        throws ScmException
     {
         try
         {
@@ -89,8 +116,23 @@ public class ScmCommandExecutor
             ScmProvider provider = manager.getProviderByRepository( repository );
 
             ScmFileSet fileSet = getFileSet( targetDirectory, includes, excludes );
+            logIncludes( repository, includes );
+
+            CheckOutScmResult result;
+            if ( tag != null && isDistributed( repository ) )
+            {
+                log.info( "Performing shallow checkout of tag " + tag );
+
+                CommandParameters parameters = new CommandParameters();
+                parameters.setScmVersion( CommandParameter.SCM_VERSION, new ScmTag( tag ) );
+                parameters.setString( CommandParameter.SHALLOW, Boolean.TRUE.toString() );
 
-            CheckOutScmResult result = provider.checkOut( repository, fileSet );
+                result = provider.checkOut( repository, fileSet, parameters );
+            }
+            else
+            {
+                result = provider.checkOut( repository, fileSet );
+            }
 
             if ( !checkResult( result ) ) 
             {
@@ -125,14 +167,37 @@ public class ScmCommandExecutor
      */
     public void update( String targetDirectory, String includes, String excludes  )
         throws ScmException
+    {
+        update( targetDirectory, includes, excludes, null );
+    }
+
+    /**
+     * Update the sources of a tag in the {@code targetDirectory}. A tag checked out from a distributed provider can't
+     * change, so such a checkout is left as is.
+     * 
+     * @param targetDirectory the directory where the sources will be updated
+     * @param includes the sources to include
+     * @param excludes the sources to exclude
+     * @param tag the tag which has been checked out, or {@code null} for the default of the connection
+     * @throws ScmException if the update throws an exception
+     */
+    public void update( String targetDirectory, String includes, String excludes, String tag )
+        throws ScmException
     {
         try
         {
             ScmRepository repository = manager.makeScmRepository( connectionUrl );
 
+            if ( tag != null && isDistributed( repository ) )
+            {
+                log.info( "Tag " + tag + " has already been checked out" );
+                return;
+            }
+
             ScmProvider provider = manager.getProviderByRepository( repository );
             
             ScmFileSet fileSet = getFileSet( targetDirectory, includes, excludes );
+            logIncludes( repository, includes );
             
             UpdateScmResult result = provider.update( repository, fileSet );
 
@@ -147,6 +212,37 @@ public class ScmCommandExecutor
         }
     }
     
+    private boolean isDistributed( ScmRepository repository )
+    {
+        return "git".equals( repository.getProvider() ) || "jgit".equals( repository.getProvider() );
+    }
+
+    /**
+     * @param repository the repository
+     * @return {@code true} if the provider of {@code repository} limits a checkout to the includes of its file set
+     */
+    private static boolean isHonouringIncludes( ScmRepository repository )
+    {
+        return !PROVIDERS_IGNORING_INCLUDES.contains( repository.getProvider() );
+    }
+
+    private void logIncludes( ScmRepository repository, String includes )
+    {
+        if ( includes == null )
+        {
+            return;
+        }
+        if ( isHonouringIncludes( repository ) )
+        {
+            log.debug( "The " + repository.getProvider() + " provider only checks out " + includes );
+        }
+        else
+        {
+            log.debug( "The " + repository.getProvider() + " provider ignores the includes and checks out the whole"
+                + " repository" );
+        }
+    }
+
     private ScmFileSet getFileSet( String path, String includes, String excludes ) throws IOException
     {
         File dir = new File( path );
@@ -36,7 +36,7 @@ import org.apache.maven.reporting.MavenReport;
 /**
  * Generates an API difference report between Java sources of two SCM versions
  */
-@Mojo( name = "test-jdiff", requiresDependencyResolution = ResolutionScope.TEST )
+@Mojo( name = "test-jdiff", requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true )
 @Execute( phase = LifecyclePhase.GENERATE_TEST_SOURCES )
 public class TestJDiffMojo
     extends AbstractJDiffMojo
@@ -58,9 +58,9 @@ public class TestJDiffMojo
     @SuppressWarnings( "unchecked" )
     protected List<String> getCompileSourceRoots(MavenProject project)
     {
-        return ( getProject().getTestCompileSourceRoots() == null
+        return ( project.getTestCompileSourceRoots() == null
             ? Collections.<String>emptyList()
-            : new LinkedList<String>( getProject().getTestCompileSourceRoots() ) );
+            : new LinkedList<String>( project.getTestCompileSourceRoots() ) );
     }
     
     public void setDestDir( String destDir )
@@ -85,6 +85,39 @@ public class TestJDiffMojo
     {
         return build.getTestSourceDirectory();
     }
+
+    @Override
+    protected String getOutputDirectory( Build build )
+    {
+        return build.getTestOutputDirectory();
+    }
+    
+    @Override
+    protected String getArtifactClassifier()
+    {
+        return "tests";
+    }
+    
+    @Override
+    protected String getSourcesClassifier()
+    {
+        return "test-sources";
+    }
+
+    @Override
+    protected String getApiClassifier()
+    {
+        // the descriptor goal only describes the main sources
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    protected void setSourceRoot( MavenProject project, String sourceRoot )
+    {
+        project.getTestCompileSourceRoots().clear();
+        project.addTestCompileSourceRoot( sourceRoot );
+    }
     
     @Override
     protected String getApiName( String lhsTag )
@@ -0,0 +1,178 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Store of the versions available in the remote repositories for an artifact, shared between builds, so comparison
+ * version ranges can be resolved without querying every repository on each run. Entries are keyed by the artifact,
+ * the requested range and the repositories queried, and expire after a time to live, except in offline mode where any
+ * entry is better than none.
+ */
+public class VersionCache
+{
+    private static final String EXTENSION = ".properties";
+
+    private static final String VERSIONS = "versions";
+
+    private static final String RETRIEVED = "retrieved";
+
+    private File directory;
+
+    private long timeToLive;
+
+    /**
+     * The constructor.
+     *
+     * @param directory the directory holding the cached version lists
+     * @param timeToLive the time in milliseconds after which an entry expires
+     */
+    public VersionCache( File directory, long timeToLive )
+    {
+        this.directory = directory;
+
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the cached versions of an artifact.
+     *
+     * @param groupId the group id
+     * @param artifactId the artifact id
+     * @param range the requested version range
+     * @param repositories identifies the queried repositories, see {@link #getRepositoriesKey(String, List)}
+     * @param ignoreExpiry {@code true} to return expired entries too
+     * @return the versions, or {@code null} if there is no entry or it has expired
+     * @throws IOException if the entry can't be read
+     */
+    public List<String> get( String groupId, String artifactId, String range, String repositories,
+                             boolean ignoreExpiry )
+        throws IOException
+    {
+        File entry = getEntry( groupId, artifactId, range, repositories );
+        if ( !entry.isFile() )
+        {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream( entry );
+        try
+        {
+            properties.load( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        String versions = properties.getProperty( VERSIONS );
+        long retrieved;
+        try
+        {
+            retrieved = Long.parseLong( properties.getProperty( RETRIEVED, "0" ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+        if ( versions == null || ( !ignoreExpiry && System.currentTimeMillis() - retrieved >= timeToLive ) )
+        {
+            return null;
+        }
+
+        return versions.length() == 0 ? new ArrayList<String>()
+                        : new ArrayList<String>( Arrays.asList( StringUtils.split( versions, "," ) ) );
+    }
+
+    /**
+     * Stores the versions of an artifact.
+     *
+     * @param groupId the group id
+     * @param artifactId the artifact id
+     * @param range the requested version range
+     * @param repositories identifies the queried repositories, see {@link #getRepositoriesKey(String, List)}
+     * @param versions the versions available in the remote repositories
+     * @throws IOException if the entry can't be written
+     */
+    public void put( String groupId, String artifactId, String range, String repositories, List<String> versions )
+        throws IOException
+    {
+        directory.mkdirs();
+
+        Properties properties = new Properties();
+        properties.setProperty( VERSIONS, StringUtils.join( versions.iterator(), "," ) );
+        properties.setProperty( RETRIEVED, String.valueOf( System.currentTimeMillis() ) );
+
+        File entry = getEntry( groupId, artifactId, range, repositories );
+
+        // write to a temporary file first, so concurrent builds never read a partial entry
+        File tmp = File.createTempFile( entry.getName(), ".tmp", directory );
+        OutputStream out = new FileOutputStream( tmp );
+        try
+        {
+            properties.store( out, groupId + ":" + artifactId + ":" + range );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+
+        entry.delete();
+        if ( !tmp.renameTo( entry ) )
+        {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Identifies the repositories versions are retrieved from, so a build with other repositories doesn't use the
+     * versions cached by this one.
+     *
+     * @param localRepository the base directory of the local repository
+     * @param remoteRepositories the id and URL of each remote repository, in order
+     * @return the fingerprint of the repositories
+     */
+    public static String getRepositoriesKey( String localRepository, List<String> remoteRepositories )
+    {
+        List<String> values = new ArrayList<String>();
+        values.add( localRepository );
+        values.addAll( remoteRepositories );
+        return JDiffUtils.fingerprint( values.toArray( new String[values.size()] ) );
+    }
+
+    private File getEntry( String groupId, String artifactId, String range, String repositories )
+    {
+        return new File( directory, JDiffUtils.fingerprint( groupId, artifactId, range, repositories ) + EXTENSION );
+    }
+}
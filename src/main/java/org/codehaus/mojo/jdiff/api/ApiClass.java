@@ -0,0 +1,101 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class or interface of an API. Nested classes are named after their enclosing class, e.g. {@code Outer.Inner}.
+ */
+public class ApiClass
+    extends ApiElement
+{
+    private boolean interfaceType;
+
+    private String superclass;
+
+    private boolean abstractModifier;
+
+    private final List<String> interfaces = new ArrayList<String>();
+
+    private final List<ApiMethod> constructors = new ArrayList<ApiMethod>();
+
+    private final List<ApiMethod> methods = new ArrayList<ApiMethod>();
+
+    private final List<ApiField> fields = new ArrayList<ApiField>();
+
+    public ApiClass( String name, boolean interfaceType )
+    {
+        super( name );
+        this.interfaceType = interfaceType;
+    }
+
+    public boolean isInterface()
+    {
+        return interfaceType;
+    }
+
+    /**
+     * @return the qualified name of the superclass, or {@code null} if there is none
+     */
+    public String getSuperclass()
+    {
+        return superclass;
+    }
+
+    public void setSuperclass( String superclass )
+    {
+        this.superclass = superclass;
+    }
+
+    public boolean isAbstract()
+    {
+        return abstractModifier;
+    }
+
+    public void setAbstract( boolean abstractModifier )
+    {
+        this.abstractModifier = abstractModifier;
+    }
+
+    /**
+     * @return the qualified names of the implemented, or for interfaces extended, interfaces
+     */
+    public List<String> getInterfaces()
+    {
+        return interfaces;
+    }
+
+    public List<ApiMethod> getConstructors()
+    {
+        return constructors;
+    }
+
+    public List<ApiMethod> getMethods()
+    {
+        return methods;
+    }
+
+    public List<ApiField> getFields()
+    {
+        return fields;
+    }
+}
@@ -0,0 +1,483 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two APIs by matching packages, classes and members on their signature. Descriptors with their packages
+ * sorted by name, as written by the JDiff doclet and {@link ApiXmlWriter}, are both streamed one package at a time and
+ * merged, so only one package of each side is kept in memory besides the differences. If a descriptor turns out not
+ * to be sorted, the comparison starts over with the old API indexed in memory. Snapshots are compared through
+ * their index instead, skipping the packages whose fingerprints are equal and only decoding the classes whose
+ * fingerprints differ.
+ */
+public class ApiComparator
+{
+    private static final Comparator<ApiPackage> PACKAGE_ORDER = new Comparator<ApiPackage>()
+    {
+        public int compare( ApiPackage o1, ApiPackage o2 )
+        {
+            return o1.getName().compareTo( o2.getName() );
+        }
+    };
+
+    private static final Comparator<PackageDiff> PACKAGE_DIFF_ORDER = new Comparator<PackageDiff>()
+    {
+        public int compare( PackageDiff o1, PackageDiff o2 )
+        {
+            return o1.getName().compareTo( o2.getName() );
+        }
+    };
+
+    /**
+     * Compares two JDiff XML descriptors, or two snapshots.
+     *
+     * @param oldDescriptor the descriptor of the old API
+     * @param newDescriptor the descriptor of the new API
+     * @return the differences
+     * @throws IOException if a descriptor can't be read
+     */
+    public ApiDiff compare( File oldDescriptor, File newDescriptor )
+        throws IOException
+    {
+        if ( ApiSnapshot.isSnapshot( oldDescriptor ) && ApiSnapshot.isSnapshot( newDescriptor ) )
+        {
+            return compare( new ApiSnapshot( oldDescriptor ), new ApiSnapshot( newDescriptor ) );
+        }
+
+        ApiDiff diff = compareSorted( oldDescriptor, newDescriptor );
+        if ( diff == null )
+        {
+            diff = compareIndexed( oldDescriptor, newDescriptor );
+        }
+
+        Collections.sort( diff.getRemovedPackages(), PACKAGE_ORDER );
+        Collections.sort( diff.getAddedPackages(), PACKAGE_ORDER );
+        Collections.sort( diff.getChangedPackages(), PACKAGE_DIFF_ORDER );
+        return diff;
+    }
+
+    /**
+     * Merges two descriptors whose packages are sorted by name.
+     *
+     * @return the unsorted differences, or {@code null} if a descriptor isn't sorted
+     */
+    private ApiDiff compareSorted( File oldDescriptor, File newDescriptor )
+        throws IOException
+    {
+        ApiXmlReader oldReader = new ApiXmlReader( oldDescriptor );
+        try
+        {
+            ApiXmlReader newReader = new ApiXmlReader( newDescriptor );
+            try
+            {
+                ApiDiff diff = new ApiDiff( oldReader.getName(), newReader.getName() );
+                ApiPackage oldPackage = oldReader.nextPackage();
+                ApiPackage newPackage = newReader.nextPackage();
+                while ( oldPackage != null || newPackage != null )
+                {
+                    int order;
+                    if ( oldPackage == null )
+                    {
+                        order = 1;
+                    }
+                    else if ( newPackage == null )
+                    {
+                        order = -1;
+                    }
+                    else
+                    {
+                        order = oldPackage.getName().compareTo( newPackage.getName() );
+                    }
+
+                    if ( order < 0 )
+                    {
+                        diff.getRemovedPackages().add( oldPackage );
+                    }
+                    else if ( order > 0 )
+                    {
+                        diff.getAddedPackages().add( newPackage );
+                    }
+                    else
+                    {
+                        PackageDiff packageDiff = compare( oldPackage, newPackage );
+                        if ( !packageDiff.isEmpty() )
+                        {
+                            diff.getChangedPackages().add( packageDiff );
+                        }
+                    }
+
+                    if ( order <= 0 )
+                    {
+                        ApiPackage next = oldReader.nextPackage();
+                        if ( !isSorted( oldPackage, next ) )
+                        {
+                            return null;
+                        }
+                        oldPackage = next;
+                    }
+                    if ( order >= 0 )
+                    {
+                        ApiPackage next = newReader.nextPackage();
+                        if ( !isSorted( newPackage, next ) )
+                        {
+                            return null;
+                        }
+                        newPackage = next;
+                    }
+                }
+                return diff;
+            }
+            finally
+            {
+                newReader.close();
+            }
+        }
+        finally
+        {
+            oldReader.close();
+        }
+    }
+
+    private static boolean isSorted( ApiPackage previous, ApiPackage next )
+    {
+        return next == null || previous.getName().compareTo( next.getName() ) < 0;
+    }
+
+    /**
+     * Indexes the old descriptor in memory and streams the new one.
+     *
+     * @return the unsorted differences
+     */
+    private ApiDiff compareIndexed( File oldDescriptor, File newDescriptor )
+        throws IOException
+    {
+        ApiDescriptor oldApi = ApiXmlReader.read( oldDescriptor );
+
+        Map<String, ApiPackage> oldPackages = new HashMap<String, ApiPackage>();
+        for ( ApiPackage oldPackage : oldApi.getPackages() )
+        {
+            oldPackages.put( oldPackage.getName(), oldPackage );
+        }
+
+        ApiXmlReader newReader = new ApiXmlReader( newDescriptor );
+        try
+        {
+            ApiDiff diff = new ApiDiff( oldApi.getName(), newReader.getName() );
+            for ( ApiPackage newPackage = newReader.nextPackage(); newPackage != null;
+                            newPackage = newReader.nextPackage() )
+            {
+                ApiPackage oldPackage = oldPackages.remove( newPackage.getName() );
+                if ( oldPackage == null )
+                {
+                    diff.getAddedPackages().add( newPackage );
+                }
+                else
+                {
+                    PackageDiff packageDiff = compare( oldPackage, newPackage );
+                    if ( !packageDiff.isEmpty() )
+                    {
+                        diff.getChangedPackages().add( packageDiff );
+                    }
+                }
+            }
+            diff.getRemovedPackages().addAll( oldPackages.values() );
+            return diff;
+        }
+        finally
+        {
+            newReader.close();
+        }
+    }
+
+    /**
+     * Compares two snapshots.
+     *
+     * @param oldApi the snapshot of the old API
+     * @param newApi the snapshot of the new API
+     * @return the differences
+     * @throws IOException if a class can't be decoded
+     */
+    public ApiDiff compare( ApiSnapshot oldApi, ApiSnapshot newApi )
+        throws IOException
+    {
+        ApiDiff diff = new ApiDiff( oldApi.getName(), newApi.getName() );
+        if ( oldApi.getFingerprint() == newApi.getFingerprint() )
+        {
+            return diff;
+        }
+        for ( String packageName : newApi.getPackageNames() )
+        {
+            if ( !oldApi.getPackageNames().contains( packageName ) )
+            {
+                diff.getAddedPackages().add( newApi.readPackage( packageName ) );
+                continue;
+            }
+            if ( oldApi.getPackageFingerprint( packageName ) == newApi.getPackageFingerprint( packageName ) )
+            {
+                continue;
+            }
+
+            PackageDiff packageDiff = new PackageDiff( packageName );
+            for ( String className : oldApi.getClassNames( packageName ) )
+            {
+                if ( !newApi.containsClass( packageName, className ) )
+                {
+                    packageDiff.getRemovedClasses().add( oldApi.readClass( packageName, className ) );
+                }
+                else if ( oldApi.getFingerprint( packageName, className )
+                                != newApi.getFingerprint( packageName, className ) )
+                {
+                    ClassDiff classDiff = compare( packageName, oldApi.readClass( packageName, className ),
+                                                   newApi.readClass( packageName, className ) );
+                    if ( !classDiff.isEmpty() )
+                    {
+                        packageDiff.getChangedClasses().add( classDiff );
+                    }
+                }
+            }
+            for ( String className : newApi.getClassNames( packageName ) )
+            {
+                if ( !oldApi.containsClass( packageName, className ) )
+                {
+                    packageDiff.getAddedClasses().add( newApi.readClass( packageName, className ) );
+                }
+            }
+            if ( !packageDiff.isEmpty() )
+            {
+                diff.getChangedPackages().add( packageDiff );
+            }
+        }
+        for ( String packageName : oldApi.getPackageNames() )
+        {
+            if ( !newApi.getPackageNames().contains( packageName ) )
+            {
+                diff.getRemovedPackages().add( oldApi.readPackage( packageName ) );
+            }
+        }
+
+        Collections.sort( diff.getRemovedPackages(), PACKAGE_ORDER );
+        Collections.sort( diff.getAddedPackages(), PACKAGE_ORDER );
+        Collections.sort( diff.getChangedPackages(), PACKAGE_DIFF_ORDER );
+        return diff;
+    }
+
+    /**
+     * Compares two versions of a package.
+     *
+     * @param oldPackage the old package
+     * @param newPackage the new package
+     * @return the differences, which are empty if the packages are equal
+     */
+    public PackageDiff compare( ApiPackage oldPackage, ApiPackage newPackage )
+    {
+        PackageDiff diff = new PackageDiff( newPackage.getName() );
+        for ( ApiClass oldClass : oldPackage.getClasses() )
+        {
+            ApiClass newClass = newPackage.getClass( oldClass.getName() );
+            if ( newClass == null )
+            {
+                diff.getRemovedClasses().add( oldClass );
+            }
+            else
+            {
+                ClassDiff classDiff = compare( newPackage.getName(), oldClass, newClass );
+                if ( !classDiff.isEmpty() )
+                {
+                    diff.getChangedClasses().add( classDiff );
+                }
+            }
+        }
+        for ( ApiClass newClass : newPackage.getClasses() )
+        {
+            if ( oldPackage.getClass( newClass.getName() ) == null )
+            {
+                diff.getAddedClasses().add( newClass );
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Compares two versions of a class.
+     *
+     * @param packageName the name of the package of the class
+     * @param oldClass the old class
+     * @param newClass the new class
+     * @return the differences, which are empty if the classes are equal
+     */
+    public ClassDiff compare( String packageName, ApiClass oldClass, ApiClass newClass )
+    {
+        ClassDiff diff = new ClassDiff( packageName, oldClass, newClass );
+        List<String> modifications = diff.getModifications();
+
+        if ( oldClass.isInterface() != newClass.isInterface() )
+        {
+            modifications.add( "Changed from " + kind( oldClass ) + " to " + kind( newClass ) + "." );
+        }
+        compare( modifications, "Superclass", oldClass.getSuperclass(), newClass.getSuperclass() );
+        compare( modifications, "abstract", oldClass.isAbstract(), newClass.isAbstract() );
+        compareModifiers( modifications, oldClass, newClass );
+
+        for ( String interfaceName : oldClass.getInterfaces() )
+        {
+            if ( !newClass.getInterfaces().contains( interfaceName ) )
+            {
+                modifications.add( "Removed interface " + interfaceName + "." );
+            }
+        }
+        for ( String interfaceName : newClass.getInterfaces() )
+        {
+            if ( !oldClass.getInterfaces().contains( interfaceName ) )
+            {
+                modifications.add( "Added interface " + interfaceName + "." );
+            }
+        }
+
+        compareMembers( diff, indexMethods( oldClass.getConstructors() ), indexMethods( newClass.getConstructors() ) );
+        compareMembers( diff, indexMethods( oldClass.getMethods() ), indexMethods( newClass.getMethods() ) );
+        compareMembers( diff, indexFields( oldClass.getFields() ), indexFields( newClass.getFields() ) );
+
+        return diff;
+    }
+
+    private void compareMembers( ClassDiff diff, Map<String, ? extends ApiElement> oldMembers,
+                                 Map<String, ? extends ApiElement> newMembers )
+    {
+        for ( Map.Entry<String, ? extends ApiElement> oldMember : oldMembers.entrySet() )
+        {
+            ApiElement newMember = newMembers.get( oldMember.getKey() );
+            if ( newMember == null )
+            {
+                diff.getRemovedMembers().add( oldMember.getValue() );
+            }
+            else
+            {
+                MemberDiff memberDiff = new MemberDiff( oldMember.getValue(), newMember );
+                if ( newMember instanceof ApiMethod )
+                {
+                    compareMethod( memberDiff.getModifications(), (ApiMethod) oldMember.getValue(),
+                                   (ApiMethod) newMember );
+                }
+                else
+                {
+                    compareField( memberDiff.getModifications(), (ApiField) oldMember.getValue(),
+                                  (ApiField) newMember );
+                }
+                if ( !memberDiff.getModifications().isEmpty() )
+                {
+                    diff.getChangedMembers().add( memberDiff );
+                }
+            }
+        }
+        for ( Map.Entry<String, ? extends ApiElement> newMember : newMembers.entrySet() )
+        {
+            if ( !oldMembers.containsKey( newMember.getKey() ) )
+            {
+                diff.getAddedMembers().add( newMember.getValue() );
+            }
+        }
+    }
+
+    private void compareMethod( List<String> modifications, ApiMethod oldMethod, ApiMethod newMethod )
+    {
+        compare( modifications, "Return type", oldMethod.getReturnType(), newMethod.getReturnType() );
+        compare( modifications, "abstract", oldMethod.isAbstract(), newMethod.isAbstract() );
+        compare( modifications, "native", oldMethod.isNative(), newMethod.isNative() );
+        compare( modifications, "synchronized", oldMethod.isSynchronized(), newMethod.isSynchronized() );
+        compareModifiers( modifications, oldMethod, newMethod );
+
+        if ( !new HashSet<String>( oldMethod.getExceptions() ).equals( new HashSet<String>( newMethod.getExceptions() ) ) )
+        {
+            modifications.add( "Exceptions changed from " + oldMethod.getExceptions() + " to "
+                + newMethod.getExceptions() + "." );
+        }
+    }
+
+    private void compareField( List<String> modifications, ApiField oldField, ApiField newField )
+    {
+        compare( modifications, "Type", oldField.getType(), newField.getType() );
+        compare( modifications, "transient", oldField.isTransient(), newField.isTransient() );
+        compare( modifications, "volatile", oldField.isVolatile(), newField.isVolatile() );
+        compare( modifications, "Value", oldField.getValue(), newField.getValue() );
+        compareModifiers( modifications, oldField, newField );
+    }
+
+    private void compareModifiers( List<String> modifications, ApiElement oldElement, ApiElement newElement )
+    {
+        compare( modifications, "static", oldElement.isStatic(), newElement.isStatic() );
+        compare( modifications, "final", oldElement.isFinal(), newElement.isFinal() );
+        compare( modifications, "Visibility", oldElement.getVisibility(), newElement.getVisibility() );
+        if ( oldElement.isDeprecated() != newElement.isDeprecated() )
+        {
+            modifications.add( newElement.isDeprecated() ? "Now deprecated." : "No longer deprecated." );
+        }
+    }
+
+    private static void compare( List<String> modifications, String what, String oldValue, String newValue )
+    {
+        if ( oldValue == null ? newValue != null : !oldValue.equals( newValue ) )
+        {
+            modifications.add( what + " changed from " + oldValue + " to " + newValue + "." );
+        }
+    }
+
+    private static void compare( List<String> modifications, String modifier, boolean oldValue, boolean newValue )
+    {
+        if ( oldValue != newValue )
+        {
+            modifications.add( newValue ? "Now " + modifier + "." : "No longer " + modifier + "." );
+        }
+    }
+
+    private static String kind( ApiClass apiClass )
+    {
+        return apiClass.isInterface() ? "interface" : "class";
+    }
+
+    private static Map<String, ApiMethod> indexMethods( List<ApiMethod> methods )
+    {
+        Map<String, ApiMethod> index = new LinkedHashMap<String, ApiMethod>();
+        for ( ApiMethod method : methods )
+        {
+            index.put( method.getSignature(), method );
+        }
+        return index;
+    }
+
+    private static Map<String, ApiField> indexFields( List<ApiField> fields )
+    {
+        Map<String, ApiField> index = new LinkedHashMap<String, ApiField>();
+        for ( ApiField field : fields )
+        {
+            index.put( field.getName(), field );
+        }
+        return index;
+    }
+}
@@ -0,0 +1,254 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classifies the differences of an {@link ApiDiff} as breaking or compatible for the clients of the old API. Only
+ * public and protected elements of public and protected classes are considered, changes which may break code compiled
+ * against, implementing or extending the old API are breaking, all other changes are compatible.
+ */
+public class ApiCompatibility
+{
+    private final List<String> breakingChanges = new ArrayList<String>();
+
+    private int compatibleChanges;
+
+    /**
+     * Classifies all differences of {@code diff}.
+     *
+     * @param diff the differences
+     * @return the classification
+     */
+    public static ApiCompatibility classify( ApiDiff diff )
+    {
+        ApiCompatibility compatibility = new ApiCompatibility();
+        for ( ApiPackage removedPackage : diff.getRemovedPackages() )
+        {
+            for ( ApiClass removedClass : removedPackage.getClasses() )
+            {
+                compatibility.removedClass( qualify( removedPackage.getName(), removedClass.getName() ), removedClass );
+            }
+        }
+        compatibility.compatibleChanges += diff.getAddedPackages().size();
+        for ( PackageDiff packageDiff : diff.getChangedPackages() )
+        {
+            for ( ApiClass removedClass : packageDiff.getRemovedClasses() )
+            {
+                compatibility.removedClass( qualify( packageDiff.getName(), removedClass.getName() ), removedClass );
+            }
+            compatibility.compatibleChanges += packageDiff.getAddedClasses().size();
+            for ( ClassDiff classDiff : packageDiff.getChangedClasses() )
+            {
+                compatibility.changedClass( classDiff );
+            }
+        }
+        return compatibility;
+    }
+
+    /**
+     * @return the descriptions of the breaking changes
+     */
+    public List<String> getBreakingChanges()
+    {
+        return breakingChanges;
+    }
+
+    /**
+     * @return the number of compatible changes
+     */
+    public int getCompatibleChanges()
+    {
+        return compatibleChanges;
+    }
+
+    private void removedClass( String qualifiedName, ApiClass removedClass )
+    {
+        classify( isVisible( removedClass ), qualifiedName + ": removed" );
+    }
+
+    private void changedClass( ClassDiff classDiff )
+    {
+        ApiClass oldClass = classDiff.getOldClass();
+        ApiClass newClass = classDiff.getNewClass();
+        String name = classDiff.getQualifiedName();
+        if ( !isVisible( oldClass ) )
+        {
+            compatibleChanges += classDiff.getModifications().size() + classDiff.getRemovedMembers().size()
+                + classDiff.getAddedMembers().size() + classDiff.getChangedMembers().size();
+            return;
+        }
+
+        if ( oldClass.isInterface() != newClass.isInterface() )
+        {
+            breakingChanges.add( name + ": changed from " + kind( oldClass ) + " to " + kind( newClass ) );
+        }
+        if ( !equal( oldClass.getSuperclass(), newClass.getSuperclass() ) )
+        {
+            breakingChanges.add( name + ": superclass changed from " + oldClass.getSuperclass() + " to "
+                + newClass.getSuperclass() );
+        }
+        if ( !oldClass.isAbstract() && newClass.isAbstract() && !newClass.isInterface() )
+        {
+            breakingChanges.add( name + ": now abstract" );
+        }
+        if ( !oldClass.isFinal() && newClass.isFinal() )
+        {
+            breakingChanges.add( name + ": now final" );
+        }
+        if ( oldClass.isStatic() != newClass.isStatic() )
+        {
+            breakingChanges.add( name + ": " + ( newClass.isStatic() ? "now static" : "no longer static" ) );
+        }
+        if ( isReduced( oldClass, newClass ) )
+        {
+            breakingChanges.add( name + ": visibility reduced to " + newClass.getVisibility() );
+        }
+        for ( String interfaceName : oldClass.getInterfaces() )
+        {
+            if ( !newClass.getInterfaces().contains( interfaceName ) )
+            {
+                breakingChanges.add( name + ": no longer implements " + interfaceName );
+            }
+        }
+
+        for ( ApiElement removedMember : classDiff.getRemovedMembers() )
+        {
+            classify( isVisible( removedMember ), name + ": removed " + describe( removedMember ) );
+        }
+        for ( ApiElement addedMember : classDiff.getAddedMembers() )
+        {
+            // implementations and subclasses of the old API don't implement the new abstract method
+            classify( addedMember instanceof ApiMethod && ( (ApiMethod) addedMember ).isAbstract(),
+                      name + ": added abstract method " + describe( addedMember ) );
+        }
+        for ( MemberDiff memberDiff : classDiff.getChangedMembers() )
+        {
+            changedMember( name, memberDiff );
+        }
+    }
+
+    private void changedMember( String className, MemberDiff memberDiff )
+    {
+        ApiElement oldMember = memberDiff.getOldMember();
+        ApiElement newMember = memberDiff.getNewMember();
+        String name = className + "." + describe( newMember );
+        if ( !isVisible( oldMember ) )
+        {
+            compatibleChanges++;
+            return;
+        }
+
+        int breaking = breakingChanges.size();
+        if ( oldMember.isStatic() != newMember.isStatic() )
+        {
+            breakingChanges.add( name + ": " + ( newMember.isStatic() ? "now static" : "no longer static" ) );
+        }
+        if ( !oldMember.isFinal() && newMember.isFinal() )
+        {
+            breakingChanges.add( name + ": now final" );
+        }
+        if ( isReduced( oldMember, newMember ) )
+        {
+            breakingChanges.add( name + ": visibility reduced to " + newMember.getVisibility() );
+        }
+        if ( newMember instanceof ApiMethod )
+        {
+            ApiMethod oldMethod = (ApiMethod) oldMember;
+            ApiMethod newMethod = (ApiMethod) newMember;
+            if ( !equal( oldMethod.getReturnType(), newMethod.getReturnType() ) )
+            {
+                breakingChanges.add( name + ": return type changed from " + oldMethod.getReturnType() + " to "
+                    + newMethod.getReturnType() );
+            }
+            if ( !oldMethod.isAbstract() && newMethod.isAbstract() )
+            {
+                breakingChanges.add( name + ": now abstract" );
+            }
+            for ( String exception : newMethod.getExceptions() )
+            {
+                if ( !oldMethod.getExceptions().contains( exception ) )
+                {
+                    breakingChanges.add( name + ": now throws " + exception );
+                }
+            }
+        }
+        else
+        {
+            ApiField oldField = (ApiField) oldMember;
+            ApiField newField = (ApiField) newMember;
+            if ( !equal( oldField.getType(), newField.getType() ) )
+            {
+                breakingChanges.add( name + ": type changed from " + oldField.getType() + " to "
+                    + newField.getType() );
+            }
+        }
+
+        if ( breakingChanges.size() == breaking )
+        {
+            compatibleChanges++;
+        }
+    }
+
+    private void classify( boolean breaking, String description )
+    {
+        if ( breaking )
+        {
+            breakingChanges.add( description );
+        }
+        else
+        {
+            compatibleChanges++;
+        }
+    }
+
+    private static boolean isVisible( ApiElement element )
+    {
+        return "public".equals( element.getVisibility() ) || "protected".equals( element.getVisibility() );
+    }
+
+    private static boolean isReduced( ApiElement oldElement, ApiElement newElement )
+    {
+        return "public".equals( oldElement.getVisibility() ) ? !"public".equals( newElement.getVisibility() )
+                        : !isVisible( newElement );
+    }
+
+    private static boolean equal( String oldValue, String newValue )
+    {
+        return oldValue == null ? newValue == null : oldValue.equals( newValue );
+    }
+
+    private static String describe( ApiElement member )
+    {
+        return member instanceof ApiMethod ? ( (ApiMethod) member ).getSignature() : member.getName();
+    }
+
+    private static String kind( ApiClass apiClass )
+    {
+        return apiClass.isInterface() ? "interface" : "class";
+    }
+
+    private static String qualify( String packageName, String className )
+    {
+        return packageName.length() == 0 ? className : packageName + "." + className;
+    }
+}
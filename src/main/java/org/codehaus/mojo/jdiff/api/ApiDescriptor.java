@@ -0,0 +1,79 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The API of one version of a project, as described by a JDiff XML descriptor.
+ */
+public class ApiDescriptor
+{
+    private String name;
+
+    private final Map<String, ApiPackage> packages = new TreeMap<String, ApiPackage>();
+
+    /**
+     * @param name the api name, which is also the base name of the XML descriptor
+     */
+    public ApiDescriptor( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the package with the given name, creating it if it doesn't exist yet.
+     *
+     * @param packageName the qualified package name
+     * @return the package
+     */
+    public ApiPackage getOrCreatePackage( String packageName )
+    {
+        ApiPackage apiPackage = packages.get( packageName );
+        if ( apiPackage == null )
+        {
+            apiPackage = new ApiPackage( packageName );
+            packages.put( packageName, apiPackage );
+        }
+        return apiPackage;
+    }
+
+    public void addPackage( ApiPackage apiPackage )
+    {
+        packages.put( apiPackage.getName(), apiPackage );
+    }
+
+    public ApiPackage getPackage( String packageName )
+    {
+        return packages.get( packageName );
+    }
+
+    public Collection<ApiPackage> getPackages()
+    {
+        return packages.values();
+    }
+}
@@ -0,0 +1,75 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The differences between two APIs. Only what differs is kept, unchanged packages and classes are left out.
+ */
+public class ApiDiff
+{
+    private final String oldName;
+
+    private final String newName;
+
+    private final List<ApiPackage> removedPackages = new ArrayList<ApiPackage>();
+
+    private final List<ApiPackage> addedPackages = new ArrayList<ApiPackage>();
+
+    private final List<PackageDiff> changedPackages = new ArrayList<PackageDiff>();
+
+    public ApiDiff( String oldName, String newName )
+    {
+        this.oldName = oldName;
+        this.newName = newName;
+    }
+
+    public String getOldName()
+    {
+        return oldName;
+    }
+
+    public String getNewName()
+    {
+        return newName;
+    }
+
+    public List<ApiPackage> getRemovedPackages()
+    {
+        return removedPackages;
+    }
+
+    public List<ApiPackage> getAddedPackages()
+    {
+        return addedPackages;
+    }
+
+    public List<PackageDiff> getChangedPackages()
+    {
+        return changedPackages;
+    }
+
+    public boolean isEmpty()
+    {
+        return removedPackages.isEmpty() && addedPackages.isEmpty() && changedPackages.isEmpty();
+    }
+}
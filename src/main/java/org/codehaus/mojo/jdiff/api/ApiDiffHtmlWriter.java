@@ -0,0 +1,351 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Renders an {@link ApiDiff} as HTML, using the page names of the JDiff doclet: {@code changes.html} next to the
+ * {@code changes} directory, which holds {@code changes-summary.html}, a {@code pkg_<package>.html} page per changed
+ * package and a {@code <class>.html} page per changed class.
+ */
+public class ApiDiffHtmlWriter
+{
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Writes all pages of the report.
+     *
+     * @param diff the differences to render
+     * @param outputDirectory the report output directory
+     * @throws IOException if a page can't be written
+     */
+    public void write( ApiDiff diff, File outputDirectory )
+        throws IOException
+    {
+        File changesDirectory = new File( outputDirectory, "changes" );
+        changesDirectory.mkdirs();
+
+        writeSummary( diff, new File( outputDirectory, "changes.html" ), "changes/" );
+        writeSummary( diff, new File( changesDirectory, "changes-summary.html" ), "" );
+
+        for ( PackageDiff packageDiff : diff.getChangedPackages() )
+        {
+            writePackage( diff, packageDiff, changesDirectory );
+        }
+    }
+
+    /**
+     * Writes the summary page.
+     *
+     * @param diff the differences to render
+     * @param page the page to write
+     * @param linkPrefix the path from the page to the {@code changes} directory
+     * @throws IOException if the page can't be written
+     */
+    public void writeSummary( ApiDiff diff, File page, String linkPrefix )
+        throws IOException
+    {
+        PrintWriter out = open( page, title( diff ), linkPrefix.length() == 0 ? "../" : "" );
+        try
+        {
+            if ( diff.isEmpty() )
+            {
+                out.println( "<p>No differences were found.</p>" );
+            }
+
+            if ( !diff.getRemovedPackages().isEmpty() )
+            {
+                startTable( out, "Removed Packages" );
+                for ( ApiPackage apiPackage : diff.getRemovedPackages() )
+                {
+                    row( out, "<code>" + html( apiPackage.getName() ) + "</code>", "" );
+                }
+                endTable( out );
+            }
+
+            if ( !diff.getAddedPackages().isEmpty() )
+            {
+                startTable( out, "Added Packages" );
+                for ( ApiPackage apiPackage : diff.getAddedPackages() )
+                {
+                    row( out, "<code>" + html( apiPackage.getName() ) + "</code>", "" );
+                }
+                endTable( out );
+            }
+
+            if ( !diff.getChangedPackages().isEmpty() )
+            {
+                startTable( out, "Changed Packages" );
+                for ( PackageDiff packageDiff : diff.getChangedPackages() )
+                {
+                    row( out, "<a href=\"" + linkPrefix + packagePage( packageDiff.getName() ) + "\"><code>"
+                        + html( packageDiff.getName() ) + "</code></a>", summary( packageDiff ) );
+                }
+                endTable( out );
+            }
+        }
+        finally
+        {
+            close( out );
+        }
+    }
+
+    /**
+     * Writes the page of a changed package and the pages of its changed classes.
+     *
+     * @param diff the differences the package belongs to
+     * @param packageDiff the package to render
+     * @param changesDirectory the {@code changes} directory
+     * @throws IOException if a page can't be written
+     */
+    public void writePackage( ApiDiff diff, PackageDiff packageDiff, File changesDirectory )
+        throws IOException
+    {
+        PrintWriter out = open( new File( changesDirectory, packagePage( packageDiff.getName() ) ),
+                                "Package " + packageDiff.getName(), "../" );
+        try
+        {
+            out.println( "<p><a href=\"changes-summary.html\">" + html( title( diff ) ) + "</a></p>" );
+
+            writeClasses( out, "Removed Classes and Interfaces", packageDiff.getRemovedClasses() );
+            writeClasses( out, "Added Classes and Interfaces", packageDiff.getAddedClasses() );
+
+            if ( !packageDiff.getChangedClasses().isEmpty() )
+            {
+                startTable( out, "Changed Classes and Interfaces" );
+                for ( ClassDiff classDiff : packageDiff.getChangedClasses() )
+                {
+                    row( out, "<a href=\"" + classPage( classDiff.getQualifiedName() ) + "\"><code>"
+                        + html( classDiff.getName() ) + "</code></a>", "" );
+                }
+                endTable( out );
+            }
+        }
+        finally
+        {
+            close( out );
+        }
+
+        for ( ClassDiff classDiff : packageDiff.getChangedClasses() )
+        {
+            writeClass( packageDiff, classDiff, changesDirectory );
+        }
+    }
+
+    /**
+     * Writes the page of a changed class.
+     *
+     * @param packageDiff the package the class belongs to
+     * @param classDiff the class to render
+     * @param changesDirectory the {@code changes} directory
+     * @throws IOException if the page can't be written
+     */
+    public void writeClass( PackageDiff packageDiff, ClassDiff classDiff, File changesDirectory )
+        throws IOException
+    {
+        PrintWriter out = open( new File( changesDirectory, classPage( classDiff.getQualifiedName() ) ),
+                                ( classDiff.getNewClass().isInterface() ? "Interface " : "Class " )
+                                    + classDiff.getQualifiedName(), "../" );
+        try
+        {
+            out.println( "<p><a href=\"" + packagePage( packageDiff.getName() ) + "\">Package "
+                + html( packageDiff.getName() ) + "</a></p>" );
+
+            if ( !classDiff.getModifications().isEmpty() )
+            {
+                out.println( "<ul>" );
+                for ( String modification : classDiff.getModifications() )
+                {
+                    out.println( "<li>" + html( modification ) + "</li>" );
+                }
+                out.println( "</ul>" );
+            }
+
+            writeMembers( out, "Removed Members", classDiff.getRemovedMembers() );
+            writeMembers( out, "Added Members", classDiff.getAddedMembers() );
+
+            if ( !classDiff.getChangedMembers().isEmpty() )
+            {
+                startTable( out, "Changed Members" );
+                for ( MemberDiff memberDiff : classDiff.getChangedMembers() )
+                {
+                    StringBuffer modifications = new StringBuffer();
+                    for ( String modification : memberDiff.getModifications() )
+                    {
+                        modifications.append( html( modification ) ).append( "<br/>" );
+                    }
+                    row( out, "<code>" + html( signature( memberDiff.getNewMember() ) ) + "</code>",
+                         modifications.toString() );
+                }
+                endTable( out );
+            }
+        }
+        finally
+        {
+            close( out );
+        }
+    }
+
+    private void writeClasses( PrintWriter out, String caption, List<ApiClass> classes )
+    {
+        if ( classes.isEmpty() )
+        {
+            return;
+        }
+        startTable( out, caption );
+        for ( ApiClass apiClass : classes )
+        {
+            row( out, "<code>" + html( apiClass.getName() ) + "</code>", apiClass.isInterface() ? "interface" : "" );
+        }
+        endTable( out );
+    }
+
+    private void writeMembers( PrintWriter out, String caption, List<ApiElement> members )
+    {
+        if ( members.isEmpty() )
+        {
+            return;
+        }
+        startTable( out, caption );
+        for ( ApiElement member : members )
+        {
+            row( out, "<code>" + html( signature( member ) ) + "</code>", "" );
+        }
+        endTable( out );
+    }
+
+    private static String signature( ApiElement member )
+    {
+        StringBuffer signature = new StringBuffer( member.getVisibility() );
+        if ( member.isStatic() )
+        {
+            signature.append( " static" );
+        }
+        if ( member.isFinal() )
+        {
+            signature.append( " final" );
+        }
+        if ( member instanceof ApiMethod )
+        {
+            ApiMethod method = (ApiMethod) member;
+            if ( !method.isConstructor() )
+            {
+                signature.append( ' ' ).append( method.getReturnType() );
+            }
+            signature.append( ' ' ).append( method.getSignature() );
+        }
+        else if ( member instanceof ApiField )
+        {
+            signature.append( ' ' ).append( ( (ApiField) member ).getType() ).append( ' ' ).append( member.getName() );
+        }
+        return signature.toString();
+    }
+
+    private static String summary( PackageDiff packageDiff )
+    {
+        return packageDiff.getRemovedClasses().size() + " removed, " + packageDiff.getAddedClasses().size()
+            + " added, " + packageDiff.getChangedClasses().size() + " changed";
+    }
+
+    private static String title( ApiDiff diff )
+    {
+        return "API Differences between " + diff.getOldName() + " and " + diff.getNewName();
+    }
+
+    /**
+     * @return the name of the page of a package, relative to the {@code changes} directory
+     */
+    public static String packagePage( String packageName )
+    {
+        return "pkg_" + packageName + ".html";
+    }
+
+    /**
+     * @return the name of the page of a class, relative to the {@code changes} directory
+     */
+    public static String classPage( String qualifiedClassName )
+    {
+        return qualifiedClassName + ".html";
+    }
+
+    private static PrintWriter open( File page, String title, String stylesheetPrefix )
+        throws IOException
+    {
+        page.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter( new OutputStreamWriter( new FileOutputStream( page ), ENCODING ) );
+        out.println( "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">" );
+        out.println( "<html>" );
+        out.println( "<head>" );
+        out.println( "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=" + ENCODING + "\">" );
+        out.println( "<link rel=\"stylesheet\" type=\"text/css\" href=\"" + stylesheetPrefix
+            + "stylesheet-jdiff.css\" title=\"Style\">" );
+        out.println( "<title>" + html( title ) + "</title>" );
+        out.println( "</head>" );
+        out.println( "<body>" );
+        out.println( "<h1>" + html( title ) + "</h1>" );
+        return out;
+    }
+
+    private static void close( PrintWriter out )
+        throws IOException
+    {
+        out.println( "</body>" );
+        out.println( "</html>" );
+        out.close();
+        if ( out.checkError() )
+        {
+            throw new IOException( "Unable to write the JDiff report" );
+        }
+    }
+
+    private static void startTable( PrintWriter out, String caption )
+    {
+        out.println( "<table summary=\"" + html( caption ) + "\" border=\"1\" cellpadding=\"3\" cellspacing=\"0\""
+            + " width=\"100%\">" );
+        out.println( "<tr bgcolor=\"#FFFFCC\" class=\"TableHeadingColor\">" );
+        out.println( "<th align=\"left\" colspan=\"2\"><font size=\"+1\"><b>" + html( caption ) + "</b></font></th>" );
+        out.println( "</tr>" );
+    }
+
+    private static void row( PrintWriter out, String name, String description )
+    {
+        out.println( "<tr bgcolor=\"#FFFFFF\" class=\"TableRowColor\">" );
+        out.println( "<td valign=\"top\" width=\"25%\">" + name + "</td>" );
+        out.println( "<td>" + description + "</td>" );
+        out.println( "</tr>" );
+    }
+
+    private static void endTable( PrintWriter out )
+    {
+        out.println( "</table>" );
+        out.println( "&nbsp;" );
+    }
+
+    private static String html( String text )
+    {
+        return ApiXmlWriter.escape( text );
+    }
+}
@@ -0,0 +1,102 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Base of all elements of an API descriptor which carry modifiers, following the JDiff XML format.
+ */
+public abstract class ApiElement
+{
+    /**
+     * The value of the {@code deprecated} attribute for elements which aren't deprecated.
+     */
+    public static final String NOT_DEPRECATED = "not deprecated";
+
+    private String name;
+
+    private boolean staticModifier;
+
+    private boolean finalModifier;
+
+    private String visibility = "public";
+
+    private String deprecated = NOT_DEPRECATED;
+
+    protected ApiElement( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public boolean isStatic()
+    {
+        return staticModifier;
+    }
+
+    public void setStatic( boolean staticModifier )
+    {
+        this.staticModifier = staticModifier;
+    }
+
+    public boolean isFinal()
+    {
+        return finalModifier;
+    }
+
+    public void setFinal( boolean finalModifier )
+    {
+        this.finalModifier = finalModifier;
+    }
+
+    /**
+     * @return one of {@code public}, {@code protected}, {@code package} or {@code private}
+     */
+    public String getVisibility()
+    {
+        return visibility;
+    }
+
+    public void setVisibility( String visibility )
+    {
+        this.visibility = visibility;
+    }
+
+    /**
+     * @return {@link #NOT_DEPRECATED} or the deprecation comment
+     */
+    public String getDeprecated()
+    {
+        return deprecated;
+    }
+
+    public void setDeprecated( String deprecated )
+    {
+        this.deprecated = deprecated;
+    }
+
+    public boolean isDeprecated()
+    {
+        return !NOT_DEPRECATED.equals( deprecated );
+    }
+}
@@ -0,0 +1,79 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * A field of an API class.
+ */
+public class ApiField
+    extends ApiElement
+{
+    private String type;
+
+    private boolean transientModifier;
+
+    private boolean volatileModifier;
+
+    private String value;
+
+    public ApiField( String name, String type )
+    {
+        super( name );
+        this.type = type;
+    }
+
+    public String getType()
+    {
+        return type;
+    }
+
+    public boolean isTransient()
+    {
+        return transientModifier;
+    }
+
+    public void setTransient( boolean transientModifier )
+    {
+        this.transientModifier = transientModifier;
+    }
+
+    public boolean isVolatile()
+    {
+        return volatileModifier;
+    }
+
+    public void setVolatile( boolean volatileModifier )
+    {
+        this.volatileModifier = volatileModifier;
+    }
+
+    /**
+     * @return the constant value expression, or {@code null} if the field isn't a constant
+     */
+    public String getValue()
+    {
+        return value;
+    }
+
+    public void setValue( String value )
+    {
+        this.value = value;
+    }
+}
@@ -0,0 +1,130 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method or constructor of an API class. Constructors have no return type.
+ */
+public class ApiMethod
+    extends ApiElement
+{
+    private String returnType;
+
+    private boolean abstractModifier;
+
+    private boolean nativeModifier;
+
+    private boolean synchronizedModifier;
+
+    private final List<ApiParameter> parameters = new ArrayList<ApiParameter>();
+
+    private final List<String> exceptions = new ArrayList<String>();
+
+    /**
+     * @param name the name of the method, or the simple class name for constructors
+     * @param returnType the qualified return type, or {@code null} for constructors
+     */
+    public ApiMethod( String name, String returnType )
+    {
+        super( name );
+        this.returnType = returnType;
+    }
+
+    public boolean isConstructor()
+    {
+        return returnType == null;
+    }
+
+    public String getReturnType()
+    {
+        return returnType;
+    }
+
+    public boolean isAbstract()
+    {
+        return abstractModifier;
+    }
+
+    public void setAbstract( boolean abstractModifier )
+    {
+        this.abstractModifier = abstractModifier;
+    }
+
+    public boolean isNative()
+    {
+        return nativeModifier;
+    }
+
+    public void setNative( boolean nativeModifier )
+    {
+        this.nativeModifier = nativeModifier;
+    }
+
+    public boolean isSynchronized()
+    {
+        return synchronizedModifier;
+    }
+
+    public void setSynchronized( boolean synchronizedModifier )
+    {
+        this.synchronizedModifier = synchronizedModifier;
+    }
+
+    public List<ApiParameter> getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * @return the qualified names of the declared exceptions
+     */
+    public List<String> getExceptions()
+    {
+        return exceptions;
+    }
+
+    /**
+     * @return the parameter types separated by {@code ", "}, as used by JDiff to tell overloads apart
+     */
+    public String getParameterSignature()
+    {
+        StringBuffer signature = new StringBuffer();
+        for ( ApiParameter parameter : parameters )
+        {
+            if ( signature.length() > 0 )
+            {
+                signature.append( ", " );
+            }
+            signature.append( parameter.getType() );
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @return the name followed by the parameter types, unique within a class
+     */
+    public String getSignature()
+    {
+        return getName() + "(" + getParameterSignature() + ")";
+    }
+}
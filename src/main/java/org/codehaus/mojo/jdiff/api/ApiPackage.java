@@ -0,0 +1,59 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A package of an API, holding its classes sorted by name.
+ */
+public class ApiPackage
+{
+    private String name;
+
+    private final Map<String, ApiClass> classes = new TreeMap<String, ApiClass>();
+
+    public ApiPackage( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void addClass( ApiClass apiClass )
+    {
+        classes.put( apiClass.getName(), apiClass );
+    }
+
+    public ApiClass getClass( String className )
+    {
+        return classes.get( className );
+    }
+
+    public Collection<ApiClass> getClasses()
+    {
+        return classes.values();
+    }
+}
@@ -0,0 +1,460 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compact binary form of an API descriptor, written by {@link ApiSnapshotWriter}. Doc comments are left out and all
+ * strings are interned in a single table, which makes snapshots a fraction of the size of the XML.
+ * <p>
+ * The snapshot is read at once into a heap buffer, which unlike a mapping doesn't keep the file locked on Windows
+ * until it is garbage collected. Opening it only reads the index of packages and classes, each string is decoded on
+ * first use and each class is decoded only when it is read. The index holds a fingerprint per class, so
+ * {@link ApiComparator} skips the classes which are equal in both snapshots without decoding them. The class
+ * fingerprints are combined into a fingerprint per package and one of the whole api, like a Merkle tree, so equal
+ * packages and equal apis are recognized without looking at their classes.
+ */
+public class ApiSnapshot
+{
+    /**
+     * The extension of snapshot files, which are named after their api name like the XML descriptors.
+     */
+    public static final String EXTENSION = ".snapshot";
+
+    static final int MAGIC = 0x4A444946;
+
+    static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final File file;
+
+    private final ByteBuffer buffer;
+
+    private final int[] stringOffsets;
+
+    private final String[] strings;
+
+    private final String name;
+
+    private final Map<String, Map<String, ClassEntry>> packages = new LinkedHashMap<String, Map<String, ClassEntry>>();
+
+    private final int recordsOffset;
+
+    private Map<String, Long> packageFingerprints;
+
+    private long fingerprint;
+
+    /**
+     * Reads {@code snapshot} and its index.
+     *
+     * @param snapshot the snapshot file
+     * @throws IOException if the snapshot can't be read
+     */
+    public ApiSnapshot( File snapshot )
+        throws IOException
+    {
+        this.file = snapshot;
+
+        RandomAccessFile in = new RandomAccessFile( snapshot, "r" );
+        try
+        {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully( bytes );
+            buffer = ByteBuffer.wrap( bytes );
+        }
+        finally
+        {
+            in.close();
+        }
+
+        try
+        {
+            if ( buffer.getInt() != MAGIC || buffer.getInt() != VERSION )
+            {
+                throw new IOException( snapshot + " is not a JDiff API snapshot" );
+            }
+
+            int stringCount = buffer.getInt();
+            stringOffsets = new int[stringCount];
+            strings = new String[stringCount];
+            for ( int i = 0; i < stringCount; i++ )
+            {
+                stringOffsets[i] = buffer.position();
+                buffer.position( buffer.position() + 4 + buffer.getInt( buffer.position() ) );
+            }
+
+            name = string( buffer.getInt() );
+            int packageCount = buffer.getInt();
+            for ( int i = 0; i < packageCount; i++ )
+            {
+                String packageName = string( buffer.getInt() );
+                int classCount = buffer.getInt();
+                Map<String, ClassEntry> classes = new LinkedHashMap<String, ClassEntry>();
+                for ( int j = 0; j < classCount; j++ )
+                {
+                    classes.put( string( buffer.getInt() ),
+                                 new ClassEntry( buffer.getLong(), buffer.getInt(), buffer.getInt() ) );
+                }
+                packages.put( packageName, classes );
+            }
+
+            buffer.getInt();
+            recordsOffset = buffer.position();
+        }
+        catch ( BufferUnderflowException e )
+        {
+            throw new IOException( snapshot + " is truncated" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new IOException( snapshot + " is corrupt" );
+        }
+    }
+
+    /**
+     * @param file a descriptor file
+     * @return {@code true} if {@code file} is named like a snapshot
+     */
+    public static boolean isSnapshot( File file )
+    {
+        return file.getName().endsWith( EXTENSION );
+    }
+
+    /**
+     * @return the api name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the names of the packages, in the order of the descriptor
+     */
+    public Set<String> getPackageNames()
+    {
+        return Collections.unmodifiableSet( packages.keySet() );
+    }
+
+    /**
+     * @param packageName the package name
+     * @return the names of the classes of the package, sorted, or an empty set if there is no such package
+     */
+    public Set<String> getClassNames( String packageName )
+    {
+        Map<String, ClassEntry> classes = packages.get( packageName );
+        return classes == null ? Collections.<String>emptySet() : Collections.unmodifiableSet( classes.keySet() );
+    }
+
+    /**
+     * @param packageName the package name
+     * @param className the class name
+     * @return {@code true} if the snapshot holds the class
+     */
+    public boolean containsClass( String packageName, String className )
+    {
+        return getClassNames( packageName ).contains( className );
+    }
+
+    /**
+     * Returns the fingerprint of a class, which is equal for equal classes in any snapshot.
+     *
+     * @param packageName the package name
+     * @param className the class name
+     * @return the fingerprint
+     * @throws IllegalArgumentException if there is no such class
+     */
+    public long getFingerprint( String packageName, String className )
+    {
+        return entry( packageName, className ).fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint of a package, computed from the names and fingerprints of its classes, which is equal for
+     * equal packages in any snapshot.
+     *
+     * @param packageName the package name
+     * @return the fingerprint
+     * @throws IllegalArgumentException if there is no such package
+     */
+    public long getPackageFingerprint( String packageName )
+    {
+        Long packageFingerprint = getPackageFingerprints().get( packageName );
+        if ( packageFingerprint == null )
+        {
+            throw new IllegalArgumentException( "No package " + packageName );
+        }
+        return packageFingerprint.longValue();
+    }
+
+    /**
+     * Returns the fingerprint of the api, computed from the names and fingerprints of its packages, which is equal for
+     * equal apis in any snapshot whatever their api names.
+     *
+     * @return the fingerprint
+     */
+    public long getFingerprint()
+    {
+        getPackageFingerprints();
+        return fingerprint;
+    }
+
+    private synchronized Map<String, Long> getPackageFingerprints()
+    {
+        if ( packageFingerprints == null )
+        {
+            MessageDigest digest;
+            try
+            {
+                digest = MessageDigest.getInstance( "SHA-1" );
+            }
+            catch ( NoSuchAlgorithmException e )
+            {
+                throw new IllegalStateException( "SHA-1 is not available", e );
+            }
+
+            Map<String, Long> fingerprints = new HashMap<String, Long>();
+            for ( Map.Entry<String, Map<String, ClassEntry>> classes : packages.entrySet() )
+            {
+                for ( Map.Entry<String, ClassEntry> entry : classes.getValue().entrySet() )
+                {
+                    update( digest, entry.getKey(), entry.getValue().fingerprint );
+                }
+                fingerprints.put( classes.getKey(), Long.valueOf( toLong( digest.digest() ) ) );
+            }
+
+            for ( String packageName : new TreeSet<String>( packages.keySet() ) )
+            {
+                update( digest, packageName, fingerprints.get( packageName ).longValue() );
+            }
+            fingerprint = toLong( digest.digest() );
+            packageFingerprints = fingerprints;
+        }
+        return packageFingerprints;
+    }
+
+    private static void update( MessageDigest digest, String name, long value )
+    {
+        digest.update( name.getBytes( UTF_8 ) );
+        for ( int i = 56; i >= 0; i -= 8 )
+        {
+            digest.update( (byte) ( value >>> i ) );
+        }
+    }
+
+    private static long toLong( byte[] hash )
+    {
+        long value = 0;
+        for ( int i = 0; i < 8; i++ )
+        {
+            value = ( value << 8 ) | ( hash[i] & 0xFF );
+        }
+        return value;
+    }
+
+    /**
+     * Decodes a class.
+     *
+     * @param packageName the package name
+     * @param className the class name
+     * @return the class
+     * @throws IOException if the class record is corrupt
+     * @throws IllegalArgumentException if there is no such class
+     */
+    public ApiClass readClass( String packageName, String className )
+        throws IOException
+    {
+        ClassEntry entry = entry( packageName, className );
+        ByteBuffer record = buffer.duplicate();
+        record.position( recordsOffset + entry.offset );
+        record.limit( recordsOffset + entry.offset + entry.length );
+        try
+        {
+            return decodeClass( record );
+        }
+        catch ( BufferUnderflowException e )
+        {
+            throw new IOException( "The record of " + className + " in " + file + " is corrupt" );
+        }
+    }
+
+    /**
+     * Decodes all classes of a package.
+     *
+     * @param packageName the package name
+     * @return the package
+     * @throws IOException if a class record is corrupt
+     */
+    public ApiPackage readPackage( String packageName )
+        throws IOException
+    {
+        ApiPackage apiPackage = new ApiPackage( packageName );
+        for ( String className : getClassNames( packageName ) )
+        {
+            apiPackage.addClass( readClass( packageName, className ) );
+        }
+        return apiPackage;
+    }
+
+    /**
+     * Decodes the complete api.
+     *
+     * @return the api
+     * @throws IOException if a class record is corrupt
+     */
+    public ApiDescriptor read()
+        throws IOException
+    {
+        ApiDescriptor api = new ApiDescriptor( name );
+        for ( String packageName : packages.keySet() )
+        {
+            api.addPackage( readPackage( packageName ) );
+        }
+        return api;
+    }
+
+    private ClassEntry entry( String packageName, String className )
+    {
+        Map<String, ClassEntry> classes = packages.get( packageName );
+        ClassEntry entry = classes == null ? null : classes.get( className );
+        if ( entry == null )
+        {
+            throw new IllegalArgumentException( "No class " + className + " in package " + packageName );
+        }
+        return entry;
+    }
+
+    private ApiClass decodeClass( ByteBuffer record )
+    {
+        String className = string( record.getInt() );
+        int flags = record.get();
+        ApiClass apiClass = new ApiClass( className, ( flags & 1 ) != 0 );
+        apiClass.setAbstract( ( flags & 2 ) != 0 );
+        apiClass.setStatic( ( flags & 4 ) != 0 );
+        apiClass.setFinal( ( flags & 8 ) != 0 );
+        apiClass.setSuperclass( string( record.getInt() ) );
+        apiClass.setVisibility( string( record.getInt() ) );
+        apiClass.setDeprecated( string( record.getInt() ) );
+
+        for ( int i = record.getInt(); i > 0; i-- )
+        {
+            apiClass.getInterfaces().add( string( record.getInt() ) );
+        }
+        for ( int i = record.getInt(); i > 0; i-- )
+        {
+            apiClass.getConstructors().add( decodeMethod( record ) );
+        }
+        for ( int i = record.getInt(); i > 0; i-- )
+        {
+            apiClass.getMethods().add( decodeMethod( record ) );
+        }
+        for ( int i = record.getInt(); i > 0; i-- )
+        {
+            ApiField field = new ApiField( string( record.getInt() ), string( record.getInt() ) );
+            int fieldFlags = record.get();
+            field.setTransient( ( fieldFlags & 1 ) != 0 );
+            field.setVolatile( ( fieldFlags & 2 ) != 0 );
+            field.setStatic( ( fieldFlags & 4 ) != 0 );
+            field.setFinal( ( fieldFlags & 8 ) != 0 );
+            field.setValue( string( record.getInt() ) );
+            field.setVisibility( string( record.getInt() ) );
+            field.setDeprecated( string( record.getInt() ) );
+            apiClass.getFields().add( field );
+        }
+        return apiClass;
+    }
+
+    private ApiMethod decodeMethod( ByteBuffer record )
+    {
+        ApiMethod method = new ApiMethod( string( record.getInt() ), string( record.getInt() ) );
+        int flags = record.get();
+        method.setAbstract( ( flags & 1 ) != 0 );
+        method.setNative( ( flags & 2 ) != 0 );
+        method.setSynchronized( ( flags & 4 ) != 0 );
+        method.setStatic( ( flags & 8 ) != 0 );
+        method.setFinal( ( flags & 16 ) != 0 );
+        method.setVisibility( string( record.getInt() ) );
+        method.setDeprecated( string( record.getInt() ) );
+
+        for ( int i = record.getInt(); i > 0; i-- )
+        {
+            method.getParameters().add( new ApiParameter( string( record.getInt() ), string( record.getInt() ) ) );
+        }
+        for ( int i = record.getInt(); i > 0; i-- )
+        {
+            method.getExceptions().add( string( record.getInt() ) );
+        }
+        return method;
+    }
+
+    /**
+     * Decodes a string of the table on first use.
+     */
+    private synchronized String string( int id )
+    {
+        if ( id < 0 )
+        {
+            return null;
+        }
+        String string = strings[id];
+        if ( string == null )
+        {
+            int offset = stringOffsets[id];
+            byte[] bytes = new byte[buffer.getInt( offset )];
+            ByteBuffer source = buffer.duplicate();
+            source.position( offset + 4 );
+            source.get( bytes );
+            string = new String( bytes, UTF_8 );
+            strings[id] = string;
+        }
+        return string;
+    }
+
+    private static class ClassEntry
+    {
+        private final long fingerprint;
+
+        private final int offset;
+
+        private final int length;
+
+        ClassEntry( long fingerprint, int offset, int length )
+        {
+            this.fingerprint = fingerprint;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an API as an {@link ApiSnapshot}. The class records are encoded against a table of interned strings, and each
+ * class is fingerprinted so unchanged classes can be recognized without decoding them.
+ */
+public class ApiSnapshotWriter
+{
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+    private final List<PackageEntry> packages = new ArrayList<PackageEntry>();
+
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+    private final MessageDigest digest;
+
+    /**
+     * The constructor.
+     */
+    public ApiSnapshotWriter()
+    {
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // every JVM is required to support SHA-1
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Writes the snapshot of an API held in memory.
+     *
+     * @param api the api
+     * @param snapshot the snapshot file
+     * @throws IOException if the snapshot can't be written
+     */
+    public void write( ApiDescriptor api, File snapshot )
+        throws IOException
+    {
+        for ( ApiPackage apiPackage : api.getPackages() )
+        {
+            add( apiPackage );
+        }
+        write( api.getName(), snapshot );
+    }
+
+    /**
+     * Writes the snapshot of a JDiff XML descriptor, streaming it one package at a time.
+     *
+     * @param descriptor the JDiff XML descriptor
+     * @param snapshot the snapshot file
+     * @throws IOException if the descriptor can't be read or the snapshot can't be written
+     */
+    public void write( File descriptor, File snapshot )
+        throws IOException
+    {
+        ApiXmlReader reader = new ApiXmlReader( descriptor );
+        try
+        {
+            for ( ApiPackage apiPackage = reader.nextPackage(); apiPackage != null; apiPackage = reader.nextPackage() )
+            {
+                add( apiPackage );
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        write( reader.getName(), snapshot );
+    }
+
+    private void add( ApiPackage apiPackage )
+        throws IOException
+    {
+        PackageEntry entry = new PackageEntry( intern( apiPackage.getName() ) );
+        DataOutputStream out = new DataOutputStream( records );
+        for ( ApiClass apiClass : apiPackage.getClasses() )
+        {
+            ByteArrayOutputStream literal = new ByteArrayOutputStream();
+            encode( new DataOutputStream( literal ), apiClass, false );
+            byte[] hash = digest.digest( literal.toByteArray() );
+
+            int offset = records.size();
+            encode( out, apiClass, true );
+            out.flush();
+
+            entry.classes.add( new int[] { intern( apiClass.getName() ), offset, records.size() - offset } );
+            long fingerprint = 0;
+            for ( int i = 0; i < 8; i++ )
+            {
+                fingerprint = ( fingerprint << 8 ) | ( hash[i] & 0xFF );
+            }
+            entry.hashes.add( fingerprint );
+        }
+        packages.add( entry );
+    }
+
+    private void write( String name, File snapshot )
+        throws IOException
+    {
+        int nameId = intern( name );
+
+        snapshot.getParentFile().mkdirs();
+        DataOutputStream out =
+            new DataOutputStream( new BufferedOutputStream( new FileOutputStream( snapshot ), 65536 ) );
+        try
+        {
+            out.writeInt( ApiSnapshot.MAGIC );
+            out.writeInt( ApiSnapshot.VERSION );
+
+            out.writeInt( strings.size() );
+            for ( String string : strings.keySet() )
+            {
+                byte[] bytes = string.getBytes( "UTF-8" );
+                out.writeInt( bytes.length );
+                out.write( bytes );
+            }
+
+            out.writeInt( nameId );
+            out.writeInt( packages.size() );
+            for ( PackageEntry entry : packages )
+            {
+                out.writeInt( entry.nameId );
+                out.writeInt( entry.classes.size() );
+                for ( int i = 0; i < entry.classes.size(); i++ )
+                {
+                    int[] classEntry = entry.classes.get( i );
+                    out.writeInt( classEntry[0] );
+                    out.writeLong( entry.hashes.get( i ) );
+                    out.writeInt( classEntry[1] );
+                    out.writeInt( classEntry[2] );
+                }
+            }
+
+            out.writeInt( records.size() );
+            records.writeTo( out );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Encodes a class, with its strings either as ids of the string table or, for its fingerprint, literally.
+     */
+    private void encode( DataOutputStream out, ApiClass apiClass, boolean interned )
+        throws IOException
+    {
+        string( out, apiClass.getName(), interned );
+        out.writeByte( flags( apiClass.isInterface(), apiClass.isAbstract(), apiClass.isStatic(),
+                              apiClass.isFinal() ) );
+        string( out, apiClass.getSuperclass(), interned );
+        string( out, apiClass.getVisibility(), interned );
+        string( out, apiClass.getDeprecated(), interned );
+
+        out.writeInt( apiClass.getInterfaces().size() );
+        for ( String interfaceName : apiClass.getInterfaces() )
+        {
+            string( out, interfaceName, interned );
+        }
+
+        out.writeInt( apiClass.getConstructors().size() );
+        for ( ApiMethod constructor : apiClass.getConstructors() )
+        {
+            encode( out, constructor, interned );
+        }
+
+        out.writeInt( apiClass.getMethods().size() );
+        for ( ApiMethod method : apiClass.getMethods() )
+        {
+            encode( out, method, interned );
+        }
+
+        out.writeInt( apiClass.getFields().size() );
+        for ( ApiField field : apiClass.getFields() )
+        {
+            string( out, field.getName(), interned );
+            string( out, field.getType(), interned );
+            out.writeByte( flags( field.isTransient(), field.isVolatile(), field.isStatic(), field.isFinal() ) );
+            string( out, field.getValue(), interned );
+            string( out, field.getVisibility(), interned );
+            string( out, field.getDeprecated(), interned );
+        }
+    }
+
+    private void encode( DataOutputStream out, ApiMethod method, boolean interned )
+        throws IOException
+    {
+        string( out, method.getName(), interned );
+        string( out, method.getReturnType(), interned );
+        out.writeByte( flags( method.isAbstract(), method.isNative(), method.isSynchronized(), method.isStatic(),
+                              method.isFinal() ) );
+        string( out, method.getVisibility(), interned );
+        string( out, method.getDeprecated(), interned );
+
+        out.writeInt( method.getParameters().size() );
+        for ( ApiParameter parameter : method.getParameters() )
+        {
+            string( out, parameter.getName(), interned );
+            string( out, parameter.getType(), interned );
+        }
+
+        out.writeInt( method.getExceptions().size() );
+        for ( String exception : method.getExceptions() )
+        {
+            string( out, exception, interned );
+        }
+    }
+
+    private void string( DataOutputStream out, String value, boolean interned )
+        throws IOException
+    {
+        if ( interned )
+        {
+            out.writeInt( value == null ? -1 : intern( value ) );
+        }
+        else if ( value == null )
+        {
+            out.writeInt( -1 );
+        }
+        else
+        {
+            byte[] bytes = value.getBytes( "UTF-8" );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+    }
+
+    private int intern( String value )
+    {
+        Integer id = strings.get( value );
+        if ( id == null )
+        {
+            id = Integer.valueOf( strings.size() );
+            strings.put( value, id );
+        }
+        return id.intValue();
+    }
+
+    private static int flags( boolean... values )
+    {
+        int flags = 0;
+        for ( int i = 0; i < values.length; i++ )
+        {
+            if ( values[i] )
+            {
+                flags |= 1 << i;
+            }
+        }
+        return flags;
+    }
+
+    private static class PackageEntry
+    {
+        private final int nameId;
+
+        private final List<int[]> classes = new ArrayList<int[]>();
+
+        private final List<Long> hashes = new ArrayList<Long>();
+
+        PackageEntry( int nameId )
+        {
+            this.nameId = nameId;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Merges JDiff XML descriptors of disjoint sets of packages of the same api, as generated by the JDiff doclet or
+ * {@link ApiXmlWriter}, into a single descriptor. The descriptors are streamed as text and their packages are copied
+ * verbatim, in the order of their names, so the result is the descriptor of all packages generated at once. The lines of
+ * doc comments, which the doclet copies as they are written in the sources, are never taken for package boundaries.
+ */
+public class ApiXmlMerger
+{
+    private static final Pattern PACKAGE_START = Pattern.compile( "<package name=\"([^\"]*)\".*" );
+
+    private static final String PACKAGE_END = "</package>";
+
+    private static final String API_END = "</api>";
+
+    private static final String DOC_START = "<doc>";
+
+    private static final String DOC_END = "</doc>";
+
+    /**
+     * Merges the {@code parts} into {@code descriptor}, with the prolog and root element of the first part.
+     *
+     * @param parts the descriptors to merge, each with its packages sorted by name
+     * @param descriptor the merged descriptor
+     * @throws IOException if a part can't be read or isn't a descriptor, or the merged descriptor can't be written
+     */
+    public void merge( List<File> parts, File descriptor )
+        throws IOException
+    {
+        List<Part> readers = new ArrayList<Part>( parts.size() );
+        Writer out = null;
+        try
+        {
+            for ( File part : parts )
+            {
+                readers.add( new Part( part ) );
+            }
+
+            out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( descriptor ),
+                                                              ApiXmlWriter.ENCODING ) );
+            if ( !readers.isEmpty() )
+            {
+                out.write( readers.get( 0 ).prolog.toString() );
+            }
+
+            while ( true )
+            {
+                Part next = null;
+                for ( Part reader : readers )
+                {
+                    if ( reader.packageName != null
+                        && ( next == null || reader.packageName.compareTo( next.packageName ) < 0 ) )
+                    {
+                        next = reader;
+                    }
+                }
+                if ( next == null )
+                {
+                    break;
+                }
+                next.copyPackage( out );
+            }
+
+            out.write( API_END );
+            out.write( '\n' );
+        }
+        finally
+        {
+            IOUtil.close( out );
+            for ( Part reader : readers )
+            {
+                IOUtil.close( reader.in );
+            }
+        }
+    }
+
+    /**
+     * A descriptor positioned at the start of its next package.
+     */
+    private static final class Part
+    {
+        private final File file;
+
+        private final BufferedReader in;
+
+        private final StringBuffer prolog = new StringBuffer();
+
+        private String line;
+
+        private String packageName;
+
+        private boolean inDoc;
+
+        Part( File file )
+            throws IOException
+        {
+            this.file = file;
+            this.in = new BufferedReader( new InputStreamReader( new FileInputStream( file ), ApiXmlWriter.ENCODING ) );
+
+            boolean root = false;
+            for ( line = in.readLine(); line != null && !isPackageStart() && !API_END.equals( line.trim() );
+                  line = in.readLine() )
+            {
+                root |= line.startsWith( "<api" );
+                prolog.append( line ).append( '\n' );
+            }
+            if ( !root || line == null )
+            {
+                IOUtil.close( in );
+                throw new IOException( file + " is not a JDiff API descriptor" );
+            }
+        }
+
+        private boolean isPackageStart()
+        {
+            Matcher matcher = PACKAGE_START.matcher( line );
+            packageName = matcher.matches() ? matcher.group( 1 ) : null;
+            return packageName != null;
+        }
+
+        /**
+         * Copies the current package and moves to the next one.
+         */
+        void copyPackage( Writer out )
+            throws IOException
+        {
+            for ( ; line != null && ( inDoc || !PACKAGE_END.equals( line.trim() ) ); line = in.readLine() )
+            {
+                out.write( line );
+                out.write( '\n' );
+                scanDoc();
+            }
+            if ( line == null )
+            {
+                throw new IOException( "The package " + packageName + " of " + file + " isn't complete" );
+            }
+            out.write( line );
+            out.write( '\n' );
+
+            packageName = null;
+            for ( line = in.readLine(); line != null && !isPackageStart() && !API_END.equals( line.trim() );
+                  line = in.readLine() )
+            {
+                // blank lines between packages
+            }
+            if ( line == null )
+            {
+                throw new IOException( file + " isn't complete" );
+            }
+        }
+
+        /**
+         * Follows the doc elements opened and closed on the current line.
+         */
+        private void scanDoc()
+        {
+            int from = 0;
+            while ( true )
+            {
+                int index = line.indexOf( inDoc ? DOC_END : DOC_START, from );
+                if ( index < 0 )
+                {
+                    return;
+                }
+                from = index + ( inDoc ? DOC_END : DOC_START ).length();
+                inDoc = !inDoc;
+            }
+        }
+    }
+}
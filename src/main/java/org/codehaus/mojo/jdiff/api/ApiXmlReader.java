@@ -0,0 +1,289 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Streams a JDiff XML descriptor one package at a time, so only the package being processed has to be kept in memory.
+ * Doc comments are skipped.
+ */
+public class ApiXmlReader
+{
+    private final InputStream in;
+
+    private final XMLStreamReader reader;
+
+    private String name;
+
+    /**
+     * Opens {@code descriptor} and reads up to its first package.
+     *
+     * @param descriptor the JDiff XML descriptor
+     * @throws IOException if the descriptor can't be read
+     */
+    public ApiXmlReader( File descriptor )
+        throws IOException
+    {
+        in = new BufferedInputStream( new FileInputStream( descriptor ) );
+        try
+        {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty( XMLInputFactory.SUPPORT_DTD, Boolean.FALSE );
+            reader = factory.createXMLStreamReader( in );
+
+            if ( !nextStartElement( "api" ) )
+            {
+                throw new IOException( descriptor + " is not a JDiff API descriptor" );
+            }
+            name = reader.getAttributeValue( null, "name" );
+        }
+        catch ( XMLStreamException e )
+        {
+            IOUtil.close( in );
+            throw new IOException( "Unable to read " + descriptor + ": " + e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( in );
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a complete descriptor into memory.
+     *
+     * @param descriptor the JDiff XML descriptor
+     * @return the api
+     * @throws IOException if the descriptor can't be read
+     */
+    public static ApiDescriptor read( File descriptor )
+        throws IOException
+    {
+        ApiXmlReader reader = new ApiXmlReader( descriptor );
+        try
+        {
+            ApiDescriptor api = new ApiDescriptor( reader.getName() );
+            for ( ApiPackage apiPackage = reader.nextPackage(); apiPackage != null; apiPackage = reader.nextPackage() )
+            {
+                api.addPackage( apiPackage );
+            }
+            return api;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the api name as written in the descriptor
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Reads the next package.
+     *
+     * @return the package, or {@code null} if there are no more packages
+     * @throws IOException if the descriptor can't be read
+     */
+    public ApiPackage nextPackage()
+        throws IOException
+    {
+        try
+        {
+            if ( !nextStartElement( "package" ) )
+            {
+                return null;
+            }
+
+            ApiPackage apiPackage = new ApiPackage( reader.getAttributeValue( null, "name" ) );
+            ApiClass apiClass = null;
+            ApiMethod method = null;
+            while ( reader.hasNext() )
+            {
+                int event = reader.next();
+                if ( event == XMLStreamConstants.END_ELEMENT && "package".equals( reader.getLocalName() ) )
+                {
+                    break;
+                }
+                if ( event != XMLStreamConstants.START_ELEMENT )
+                {
+                    continue;
+                }
+
+                String element = reader.getLocalName();
+                if ( "doc".equals( element ) )
+                {
+                    skipElement();
+                }
+                else if ( "class".equals( element ) || "interface".equals( element ) )
+                {
+                    apiClass = new ApiClass( attribute( "name" ), "interface".equals( element ) );
+                    apiClass.setSuperclass( reader.getAttributeValue( null, "extends" ) );
+                    apiClass.setAbstract( booleanAttribute( "abstract" ) );
+                    readModifiers( apiClass );
+                    apiPackage.addClass( apiClass );
+                }
+                else if ( "implements".equals( element ) )
+                {
+                    apiClass.getInterfaces().add( attribute( "name" ) );
+                }
+                else if ( "constructor".equals( element ) )
+                {
+                    method = new ApiMethod( attribute( "name" ), null );
+                    String type = reader.getAttributeValue( null, "type" );
+                    if ( type != null && type.length() > 0 )
+                    {
+                        String[] types = type.split( ", " );
+                        for ( int i = 0; i < types.length; i++ )
+                        {
+                            method.getParameters().add( new ApiParameter( "arg" + i, types[i] ) );
+                        }
+                    }
+                    readModifiers( method );
+                    apiClass.getConstructors().add( method );
+                }
+                else if ( "method".equals( element ) )
+                {
+                    method = new ApiMethod( attribute( "name" ), attribute( "return" ) );
+                    method.setAbstract( booleanAttribute( "abstract" ) );
+                    method.setNative( booleanAttribute( "native" ) );
+                    method.setSynchronized( booleanAttribute( "synchronized" ) );
+                    readModifiers( method );
+                    apiClass.getMethods().add( method );
+                }
+                else if ( "param".equals( element ) )
+                {
+                    method.getParameters().add( new ApiParameter( attribute( "name" ), attribute( "type" ) ) );
+                }
+                else if ( "exception".equals( element ) )
+                {
+                    method.getExceptions().add( attribute( "type" ) );
+                }
+                else if ( "field".equals( element ) )
+                {
+                    ApiField field = new ApiField( attribute( "name" ), attribute( "type" ) );
+                    field.setTransient( booleanAttribute( "transient" ) );
+                    field.setVolatile( booleanAttribute( "volatile" ) );
+                    field.setValue( reader.getAttributeValue( null, "value" ) );
+                    readModifiers( field );
+                    apiClass.getFields().add( field );
+                }
+            }
+            return apiPackage;
+        }
+        catch ( XMLStreamException e )
+        {
+            throw new IOException( "Unable to read API " + name + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Closes the underlying descriptor.
+     */
+    public void close()
+    {
+        try
+        {
+            reader.close();
+        }
+        catch ( XMLStreamException e )
+        {
+            // ignore
+        }
+        IOUtil.close( in );
+    }
+
+    private boolean nextStartElement( String element )
+        throws XMLStreamException
+    {
+        while ( reader.hasNext() )
+        {
+            if ( reader.next() == XMLStreamConstants.START_ELEMENT && element.equals( reader.getLocalName() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips the current element, which may contain markup of the doc comment.
+     */
+    private void skipElement()
+        throws XMLStreamException
+    {
+        int depth = 1;
+        while ( depth > 0 && reader.hasNext() )
+        {
+            int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                depth++;
+            }
+            else if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                depth--;
+            }
+        }
+    }
+
+    private void readModifiers( ApiElement element )
+    {
+        element.setStatic( booleanAttribute( "static" ) );
+        element.setFinal( booleanAttribute( "final" ) );
+        String visibility = reader.getAttributeValue( null, "visibility" );
+        if ( visibility != null )
+        {
+            element.setVisibility( visibility );
+        }
+        String deprecated = reader.getAttributeValue( null, "deprecated" );
+        if ( deprecated != null )
+        {
+            element.setDeprecated( deprecated );
+        }
+    }
+
+    private String attribute( String attributeName )
+    {
+        String value = reader.getAttributeValue( null, attributeName );
+        return value == null ? "" : value;
+    }
+
+    private boolean booleanAttribute( String attributeName )
+    {
+        return "true".equals( reader.getAttributeValue( null, attributeName ) );
+    }
+}
@@ -0,0 +1,247 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Writes an {@link ApiDescriptor} in the XML format of the JDiff doclet, so it can be compared by the doclet as if
+ * javadoc had generated it.
+ */
+public class ApiXmlWriter
+{
+    /**
+     * The encoding used by the JDiff doclet.
+     */
+    public static final String ENCODING = "ISO-8859-1";
+
+    /**
+     * Writes {@code api} to {@code <apidir>/<apiname>.xml}.
+     *
+     * @param api the api to write
+     * @param apidir the directory of the descriptor
+     * @return the written descriptor
+     * @throws IOException if the descriptor can't be written
+     */
+    public File write( ApiDescriptor api, File apidir )
+        throws IOException
+    {
+        apidir.mkdirs();
+        File descriptor = new File( apidir, api.getName() + ".xml" );
+
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( descriptor ), ENCODING ) );
+        try
+        {
+            write( api, writer );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+        return descriptor;
+    }
+
+    /**
+     * Writes {@code api} to {@code writer}, which must encode {@link #ENCODING}.
+     *
+     * @param api the api to write
+     * @param writer the target
+     * @throws IOException if the descriptor can't be written
+     */
+    public void write( ApiDescriptor api, Writer writer )
+        throws IOException
+    {
+        PrintWriter out = new PrintWriter( writer );
+
+        out.println( "<?xml version=\"1.0\" encoding=\"iso-8859-1\" standalone=\"no\"?>" );
+        out.println( "<api" );
+        out.println( "  xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'" );
+        out.println( "  xsi:noNamespaceSchemaLocation='api.xsd'" );
+        out.println( "  name=\"" + escape( api.getName() ) + "\"" );
+        out.println( "  jdversion=\"1.0.9\">" );
+        out.println();
+
+        for ( ApiPackage apiPackage : api.getPackages() )
+        {
+            writePackage( apiPackage, out );
+        }
+
+        out.println( "</api>" );
+        out.flush();
+
+        if ( out.checkError() )
+        {
+            throw new IOException( "Unable to write JDiff descriptor " + api.getName() );
+        }
+    }
+
+    private void writePackage( ApiPackage apiPackage, PrintWriter out )
+    {
+        out.println( "<package name=\"" + escape( apiPackage.getName() ) + "\"" );
+        out.println( ">" );
+
+        for ( ApiClass apiClass : apiPackage.getClasses() )
+        {
+            writeClass( apiClass, out );
+        }
+
+        out.println( "</package>" );
+    }
+
+    private void writeClass( ApiClass apiClass, PrintWriter out )
+    {
+        String element = apiClass.isInterface() ? "interface" : "class";
+
+        out.println( "<" + element + " name=\"" + escape( apiClass.getName() ) + "\"" );
+        if ( apiClass.getSuperclass() != null )
+        {
+            out.println( " extends=\"" + escape( apiClass.getSuperclass() ) + "\"" );
+        }
+        out.println( " abstract=\"" + apiClass.isAbstract() + "\"" );
+        writeModifiers( apiClass, out );
+        out.println( ">" );
+
+        for ( String interfaceName : apiClass.getInterfaces() )
+        {
+            out.println( "<implements name=\"" + escape( interfaceName ) + "\">" );
+            out.println( "</implements>" );
+        }
+
+        for ( ApiMethod constructor : apiClass.getConstructors() )
+        {
+            out.println( "<constructor name=\"" + escape( constructor.getName() ) + "\"" );
+            if ( !constructor.getParameters().isEmpty() )
+            {
+                out.println( " type=\"" + escape( constructor.getParameterSignature() ) + "\"" );
+            }
+            writeModifiers( constructor, out );
+            out.println( ">" );
+            writeExceptions( constructor, out );
+            out.println( "</constructor>" );
+        }
+
+        for ( ApiMethod method : apiClass.getMethods() )
+        {
+            out.println( "<method name=\"" + escape( method.getName() ) + "\"" );
+            out.println( " return=\"" + escape( method.getReturnType() ) + "\"" );
+            out.println( " abstract=\"" + method.isAbstract() + "\"" );
+            out.println( " native=\"" + method.isNative() + "\"" );
+            out.println( " synchronized=\"" + method.isSynchronized() + "\"" );
+            writeModifiers( method, out );
+            out.println( ">" );
+            for ( ApiParameter parameter : method.getParameters() )
+            {
+                out.println( "<param name=\"" + escape( parameter.getName() ) + "\" type=\""
+                    + escape( parameter.getType() ) + "\">" );
+                out.println( "</param>" );
+            }
+            writeExceptions( method, out );
+            out.println( "</method>" );
+        }
+
+        for ( ApiField field : apiClass.getFields() )
+        {
+            out.println( "<field name=\"" + escape( field.getName() ) + "\"" );
+            out.println( " type=\"" + escape( field.getType() ) + "\"" );
+            out.println( " transient=\"" + field.isTransient() + "\"" );
+            out.println( " volatile=\"" + field.isVolatile() + "\"" );
+            if ( field.getValue() != null )
+            {
+                out.println( " value=\"" + escape( field.getValue() ) + "\"" );
+            }
+            writeModifiers( field, out );
+            out.println( ">" );
+            out.println( "</field>" );
+        }
+
+        out.println( "</" + element + ">" );
+    }
+
+    private void writeExceptions( ApiMethod method, PrintWriter out )
+    {
+        for ( String exception : method.getExceptions() )
+        {
+            String simpleName = exception.substring( exception.lastIndexOf( '.' ) + 1 );
+            out.println( "<exception name=\"" + escape( simpleName ) + "\" type=\"" + escape( exception ) + "\">" );
+            out.println( "</exception>" );
+        }
+    }
+
+    private void writeModifiers( ApiElement element, PrintWriter out )
+    {
+        out.println( " static=\"" + element.isStatic() + "\"" );
+        out.println( " final=\"" + element.isFinal() + "\"" );
+        out.println( " visibility=\"" + element.getVisibility() + "\"" );
+        out.println( " deprecated=\"" + escape( element.getDeprecated() ) + "\"" );
+    }
+
+    /**
+     * Escapes {@code value} for use in an attribute of a document encoded as {@link #ENCODING}.
+     *
+     * @param value the raw value
+     * @return the escaped value
+     */
+    static String escape( String value )
+    {
+        StringBuffer escaped = new StringBuffer( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '&':
+                    escaped.append( "&amp;" );
+                    break;
+                case '<':
+                    escaped.append( "&lt;" );
+                    break;
+                case '>':
+                    escaped.append( "&gt;" );
+                    break;
+                case '"':
+                    escaped.append( "&quot;" );
+                    break;
+                default:
+                    if ( c > 0xFF || c == '\n' || c == '\r' )
+                    {
+                        escaped.append( "&#" ).append( (int) c ).append( ';' );
+                    }
+                    else if ( c < 0x20 && c != '\t' )
+                    {
+                        // not allowed in XML 1.0, not even as a character reference
+                        escaped.append( '?' );
+                    }
+                    else
+                    {
+                        escaped.append( c );
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The differences of a class which exists in both APIs.
+ */
+public class ClassDiff
+{
+    private final String packageName;
+
+    private final ApiClass oldClass;
+
+    private final ApiClass newClass;
+
+    private final List<String> modifications = new ArrayList<String>();
+
+    private final List<ApiElement> removedMembers = new ArrayList<ApiElement>();
+
+    private final List<ApiElement> addedMembers = new ArrayList<ApiElement>();
+
+    private final List<MemberDiff> changedMembers = new ArrayList<MemberDiff>();
+
+    public ClassDiff( String packageName, ApiClass oldClass, ApiClass newClass )
+    {
+        this.packageName = packageName;
+        this.oldClass = oldClass;
+        this.newClass = newClass;
+    }
+
+    public String getName()
+    {
+        return newClass.getName();
+    }
+
+    /**
+     * @return the qualified name of the class
+     */
+    public String getQualifiedName()
+    {
+        return packageName.length() == 0 ? getName() : packageName + "." + getName();
+    }
+
+    public ApiClass getOldClass()
+    {
+        return oldClass;
+    }
+
+    public ApiClass getNewClass()
+    {
+        return newClass;
+    }
+
+    /**
+     * @return human readable descriptions of the modifications of the class itself
+     */
+    public List<String> getModifications()
+    {
+        return modifications;
+    }
+
+    /**
+     * @return the removed constructors, methods and fields
+     */
+    public List<ApiElement> getRemovedMembers()
+    {
+        return removedMembers;
+    }
+
+    /**
+     * @return the added constructors, methods and fields
+     */
+    public List<ApiElement> getAddedMembers()
+    {
+        return addedMembers;
+    }
+
+    public List<MemberDiff> getChangedMembers()
+    {
+        return changedMembers;
+    }
+
+    public boolean isEmpty()
+    {
+        return modifications.isEmpty() && removedMembers.isEmpty() && addedMembers.isEmpty()
+            && changedMembers.isEmpty();
+    }
+}
@@ -0,0 +1,739 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+/**
+ * Extracts an {@link ApiDescriptor} from compiled classes, either a jar or a class output directory, without running
+ * javadoc. Like javadoc's default, only public and protected elements are described. Types are decoded from the generic
+ * signatures and erased, the way the JDiff doclet writes them: it runs as a pre-generics doclet, so javadoc hands it
+ * the erasure of every type. Decoding the signatures keeps the parameters to those declared in the source, without the
+ * enclosing instance javac adds to inner class constructors. Doc comments aren't available in class files, and
+ * parameter names only when compiled with <code>-parameters</code>, so a descriptor extracted this way is best compared
+ * with another descriptor extracted from class files.
+ */
+public class ClassFileApiExtractor
+{
+    private static final int ASM_API = Opcodes.ASM9;
+
+    private static final String DEPRECATED_ANNOTATION = "Ljava/lang/Deprecated;";
+
+    private static final String DEPRECATED_COMMENT = "deprecated, no comment";
+
+    /**
+     * Type variables are erased to their first bound, which may be a type variable too.
+     */
+    private static final int MAX_BOUND_DEPTH = 16;
+
+    /**
+     * The classes read so far, by internal name
+     */
+    private final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+
+    /**
+     * Reads all classes of a jar file or a class output directory.
+     *
+     * @param location the jar file or directory
+     * @throws IOException if a class can't be read
+     */
+    public void addLocation( File location )
+        throws IOException
+    {
+        if ( location.isDirectory() )
+        {
+            addDirectory( location );
+        }
+        else if ( location.isFile() )
+        {
+            JarFile jar = new JarFile( location );
+            try
+            {
+                for ( Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); )
+                {
+                    JarEntry entry = entries.nextElement();
+                    if ( isClassFile( entry.getName() ) && !entry.getName().startsWith( "META-INF/" ) )
+                    {
+                        addClass( jar.getInputStream( entry ) );
+                    }
+                }
+            }
+            finally
+            {
+                jar.close();
+            }
+        }
+    }
+
+    private void addDirectory( File directory )
+        throws IOException
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addDirectory( file );
+            }
+            else if ( isClassFile( file.getName() ) )
+            {
+                addClass( new FileInputStream( file ) );
+            }
+        }
+    }
+
+    private static boolean isClassFile( String name )
+    {
+        return name.endsWith( ".class" ) && !name.endsWith( "module-info.class" )
+            && !name.endsWith( "package-info.class" );
+    }
+
+    private void addClass( InputStream in )
+        throws IOException
+    {
+        try
+        {
+            ClassInfo info = new ClassInfo();
+            new ClassReader( in ).accept( info, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES );
+            classes.put( info.internalName, info );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Builds the descriptor of all classes read so far.
+     *
+     * @param apiname the api name
+     * @param includePackages the packages to describe, or {@code null} or empty to describe all packages
+     * @return the descriptor
+     */
+    public ApiDescriptor getDescriptor( String apiname, Collection<String> includePackages )
+    {
+        ApiDescriptor api = new ApiDescriptor( apiname );
+        for ( ClassInfo info : classes.values() )
+        {
+            String packageName = info.getPackageName();
+            if ( includePackages != null && !includePackages.isEmpty() && !includePackages.contains( packageName ) )
+            {
+                continue;
+            }
+            if ( isDocumented( info ) )
+            {
+                api.getOrCreatePackage( packageName ).addClass( info.apiClass );
+            }
+        }
+        return api;
+    }
+
+    /**
+     * A class is documented if it and all its enclosing classes are public or protected.
+     */
+    private boolean isDocumented( ClassInfo info )
+    {
+        for ( ClassInfo current = info; current != null; )
+        {
+            if ( current.local || ( current.access & ( Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED ) ) == 0
+                || ( current.access & Opcodes.ACC_SYNTHETIC ) != 0 )
+            {
+                return false;
+            }
+            if ( current.outerName == null )
+            {
+                return true;
+            }
+            current = classes.get( current.outerName );
+        }
+        // the enclosing class isn't part of this location
+        return false;
+    }
+
+    private static boolean isDocumented( int access )
+    {
+        return ( access & ( Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED ) ) != 0
+            && ( access & ( Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE ) ) == 0;
+    }
+
+    private static String toTypeName( Type type )
+    {
+        return type.getClassName().replace( '$', '.' );
+    }
+
+    private static String toClassName( String internalName )
+    {
+        return internalName == null ? null : internalName.replace( '/', '.' ).replace( '$', '.' );
+    }
+
+    /**
+     * Erases a type decoded from a generic signature.
+     *
+     * @param type the decoded type, or {@code null} if the signature lacks it
+     * @param methodBounds the bounds of the type variables of the method
+     * @param classBounds the bounds of the type variables of the class
+     * @param fallback the erasure read from the descriptor
+     * @return the erased type name, or {@code fallback} if {@code type} uses a type variable of an enclosing class
+     */
+    private static String erasure( ErasedType type, Map<String, ErasedType> methodBounds,
+                                   Map<String, ErasedType> classBounds, String fallback )
+    {
+        if ( type == null )
+        {
+            return fallback;
+        }
+
+        ErasedType current = type;
+        for ( int i = 0; current.className == null && i < MAX_BOUND_DEPTH; i++ )
+        {
+            ErasedType bound = methodBounds.get( current.typeVariable );
+            if ( bound == null )
+            {
+                bound = classBounds.get( current.typeVariable );
+            }
+            if ( bound == null )
+            {
+                return fallback;
+            }
+            current = bound;
+        }
+        if ( current.className == null )
+        {
+            return fallback;
+        }
+
+        StringBuffer name = new StringBuffer( current.className );
+        for ( int i = 0; i < type.dimensions; i++ )
+        {
+            name.append( "[]" );
+        }
+        return name.toString();
+    }
+
+    private static void setModifiers( ApiElement element, int access )
+    {
+        element.setStatic( ( access & Opcodes.ACC_STATIC ) != 0 );
+        element.setFinal( ( access & Opcodes.ACC_FINAL ) != 0 );
+        if ( ( access & Opcodes.ACC_PUBLIC ) != 0 )
+        {
+            element.setVisibility( "public" );
+        }
+        else if ( ( access & Opcodes.ACC_PROTECTED ) != 0 )
+        {
+            element.setVisibility( "protected" );
+        }
+        else if ( ( access & Opcodes.ACC_PRIVATE ) != 0 )
+        {
+            element.setVisibility( "private" );
+        }
+        else
+        {
+            element.setVisibility( "package" );
+        }
+        if ( ( access & Opcodes.ACC_DEPRECATED ) != 0 )
+        {
+            element.setDeprecated( DEPRECATED_COMMENT );
+        }
+    }
+
+    /**
+     * Formats a constant value the way javadoc's {@code constantValueExpression()} does.
+     */
+    private static String toConstantExpression( String descriptor, Object value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        switch ( descriptor.charAt( 0 ) )
+        {
+            case 'Z':
+                return ( (Integer) value ).intValue() != 0 ? "true" : "false";
+            case 'C':
+                return "'" + sourceForm( String.valueOf( (char) ( (Integer) value ).intValue() ) ) + "'";
+            case 'J':
+                return value + "L";
+            case 'F':
+                return value + "f";
+            case 'L':
+                return "\"" + sourceForm( (String) value ) + "\"";
+            default:
+                return value.toString();
+        }
+    }
+
+    /**
+     * Escapes a character or string constant the way javadoc writes constant values.
+     */
+    private static String sourceForm( String value )
+    {
+        StringBuffer buffer = new StringBuffer( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '\t':
+                    buffer.append( "\\t" );
+                    break;
+                case '\b':
+                    buffer.append( "\\b" );
+                    break;
+                case '\r':
+                    buffer.append( "\\r" );
+                    break;
+                case '\n':
+                    buffer.append( "\\n" );
+                    break;
+                case '\f':
+                    buffer.append( "\\f" );
+                    break;
+                case '"':
+                    buffer.append( "\\\"" );
+                    break;
+                case '\'':
+                    buffer.append( "\\'" );
+                    break;
+                case '\\':
+                    buffer.append( "\\\\" );
+                    break;
+                default:
+                    if ( c >= ' ' && c <= '~' )
+                    {
+                        buffer.append( c );
+                    }
+                    else
+                    {
+                        String hex = Integer.toHexString( c );
+                        buffer.append( "\\u" ).append( "0000".substring( hex.length() ) ).append( hex );
+                    }
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Collects a single class file.
+     */
+    private static class ClassInfo
+        extends ClassVisitor
+    {
+        private String internalName;
+
+        private String outerName;
+
+        private int access;
+
+        private boolean local;
+
+        private ApiClass apiClass;
+
+        private Map<String, ErasedType> typeBounds = Collections.emptyMap();
+
+        ClassInfo()
+        {
+            super( ASM_API );
+        }
+
+        String getPackageName()
+        {
+            int index = internalName.lastIndexOf( '/' );
+            return index < 0 ? "" : internalName.substring( 0, index ).replace( '/', '.' );
+        }
+
+        private boolean isInnerClass()
+        {
+            return outerName != null && !local && ( access & ( Opcodes.ACC_STATIC | Opcodes.ACC_INTERFACE ) ) == 0;
+        }
+
+        @Override
+        public void visit( int version, int access, String name, String signature, String superName,
+                           String[] interfaces )
+        {
+            this.internalName = name;
+            this.access = access;
+
+            GenericSignature generic = new GenericSignature();
+            if ( signature != null )
+            {
+                new SignatureReader( signature ).accept( generic );
+                typeBounds = generic.bounds;
+            }
+
+            boolean isInterface = ( access & Opcodes.ACC_INTERFACE ) != 0;
+            apiClass = new ApiClass( name.substring( name.lastIndexOf( '/' ) + 1 ).replace( '$', '.' ), isInterface );
+            if ( !isInterface )
+            {
+                apiClass.setSuperclass( erasure( generic.superclass, typeBounds, typeBounds, toClassName( superName ) ) );
+            }
+            for ( int i = 0; i < interfaces.length; i++ )
+            {
+                ErasedType type = i < generic.interfaces.size() ? generic.interfaces.get( i ) : null;
+                apiClass.getInterfaces().add( erasure( type, typeBounds, typeBounds, toClassName( interfaces[i] ) ) );
+            }
+            apiClass.setAbstract( ( access & Opcodes.ACC_ABSTRACT ) != 0 );
+            setModifiers( apiClass, access );
+        }
+
+        @Override
+        public void visitInnerClass( String name, String outerName, String innerName, int access )
+        {
+            if ( name.equals( internalName ) )
+            {
+                // the inner class attribute holds the modifiers as declared in the source
+                this.outerName = outerName;
+                this.local = outerName == null || innerName == null;
+                this.access = access;
+
+                apiClass.setAbstract( ( access & Opcodes.ACC_ABSTRACT ) != 0 );
+                setModifiers( apiClass, access );
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible )
+        {
+            if ( DEPRECATED_ANNOTATION.equals( descriptor ) )
+            {
+                apiClass.setDeprecated( DEPRECATED_COMMENT );
+            }
+            return null;
+        }
+
+        @Override
+        public FieldVisitor visitField( int access, String name, String descriptor, String signature, Object value )
+        {
+            if ( !isDocumented( access ) )
+            {
+                return null;
+            }
+
+            String type = toTypeName( Type.getType( descriptor ) );
+            if ( signature != null )
+            {
+                ErasedType generic = new ErasedType();
+                new SignatureReader( signature ).acceptType( generic );
+                type = erasure( generic, typeBounds, typeBounds, type );
+            }
+
+            final ApiField field = new ApiField( name, type );
+            setModifiers( field, access );
+            field.setTransient( ( access & Opcodes.ACC_TRANSIENT ) != 0 );
+            field.setVolatile( ( access & Opcodes.ACC_VOLATILE ) != 0 );
+            if ( ( access & Opcodes.ACC_FINAL ) != 0 )
+            {
+                field.setValue( toConstantExpression( descriptor, value ) );
+            }
+            apiClass.getFields().add( field );
+
+            return new FieldVisitor( ASM_API )
+            {
+                @Override
+                public AnnotationVisitor visitAnnotation( String annotationDescriptor, boolean visible )
+                {
+                    if ( DEPRECATED_ANNOTATION.equals( annotationDescriptor ) )
+                    {
+                        field.setDeprecated( DEPRECATED_COMMENT );
+                    }
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod( int access, String name, String descriptor, String signature,
+                                          String[] exceptions )
+        {
+            if ( !isDocumented( access ) || "<clinit>".equals( name ) )
+            {
+                return null;
+            }
+
+            Type[] argumentTypes = Type.getArgumentTypes( descriptor );
+            final String[] parameterTypes = new String[argumentTypes.length];
+            for ( int i = 0; i < argumentTypes.length; i++ )
+            {
+                parameterTypes[i] = toTypeName( argumentTypes[i] );
+            }
+            String returnType = toTypeName( Type.getReturnType( descriptor ) );
+            List<String> exceptionNames = new ArrayList<String>();
+            if ( exceptions != null )
+            {
+                for ( String exception : exceptions )
+                {
+                    exceptionNames.add( toClassName( exception ) );
+                }
+            }
+
+            boolean constructor = "<init>".equals( name );
+            // constructors of inner classes receive the enclosing instance, which javadoc doesn't show
+            int parameterOffset = constructor && isInnerClass() && argumentTypes.length > 0 ? 1 : 0;
+            if ( signature != null )
+            {
+                GenericSignature generic = new GenericSignature();
+                new SignatureReader( signature ).accept( generic );
+
+                // the signature only holds the parameters declared in the source
+                parameterOffset = Math.max( 0, argumentTypes.length - generic.parameters.size() );
+                for ( int i = 0; i < generic.parameters.size() && parameterOffset + i < argumentTypes.length; i++ )
+                {
+                    parameterTypes[parameterOffset + i] =
+                        erasure( generic.parameters.get( i ), generic.bounds, typeBounds,
+                                 parameterTypes[parameterOffset + i] );
+                }
+                returnType = erasure( generic.returnType, generic.bounds, typeBounds, returnType );
+                for ( int i = 0; i < generic.exceptions.size() && i < exceptionNames.size(); i++ )
+                {
+                    exceptionNames.set( i, erasure( generic.exceptions.get( i ), generic.bounds, typeBounds,
+                                                    exceptionNames.get( i ) ) );
+                }
+            }
+            final int offset = parameterOffset;
+
+            final ApiMethod method;
+            if ( constructor )
+            {
+                // javadoc names the constructors of nested classes by their simple name
+                method = new ApiMethod( apiClass.getName().substring( apiClass.getName().lastIndexOf( '.' ) + 1 ),
+                                        null );
+                apiClass.getConstructors().add( method );
+            }
+            else
+            {
+                method = new ApiMethod( name, returnType );
+                method.setAbstract( ( access & Opcodes.ACC_ABSTRACT ) != 0 );
+                method.setNative( ( access & Opcodes.ACC_NATIVE ) != 0 );
+                method.setSynchronized( ( access & Opcodes.ACC_SYNCHRONIZED ) != 0 );
+                apiClass.getMethods().add( method );
+            }
+            setModifiers( method, access );
+
+            for ( int i = offset; i < parameterTypes.length; i++ )
+            {
+                method.getParameters().add( new ApiParameter( "arg" + ( i - offset ), parameterTypes[i] ) );
+            }
+            method.getExceptions().addAll( exceptionNames );
+
+            return new MethodVisitor( ASM_API )
+            {
+                private int parameterIndex;
+
+                @Override
+                public void visitParameter( String parameterName, int parameterAccess )
+                {
+                    // only present when compiled with -parameters
+                    if ( parameterName != null && parameterIndex >= offset && parameterIndex < parameterTypes.length )
+                    {
+                        method.getParameters().set( parameterIndex - offset,
+                                                    new ApiParameter( parameterName, parameterTypes[parameterIndex] ) );
+                    }
+                    parameterIndex++;
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation( String annotationDescriptor, boolean visible )
+                {
+                    if ( DEPRECATED_ANNOTATION.equals( annotationDescriptor ) )
+                    {
+                        method.setDeprecated( DEPRECATED_COMMENT );
+                    }
+                    return null;
+                }
+            };
+        }
+    }
+
+    /**
+     * Decodes a class or method signature: the bounds of its type variables and the types it declares.
+     */
+    private static class GenericSignature
+        extends SignatureVisitor
+    {
+        private final Map<String, ErasedType> bounds = new HashMap<String, ErasedType>();
+
+        private final List<ErasedType> interfaces = new ArrayList<ErasedType>();
+
+        private final List<ErasedType> parameters = new ArrayList<ErasedType>();
+
+        private final List<ErasedType> exceptions = new ArrayList<ErasedType>();
+
+        private ErasedType superclass;
+
+        private ErasedType returnType;
+
+        private String typeVariable;
+
+        GenericSignature()
+        {
+            super( ASM_API );
+        }
+
+        @Override
+        public void visitFormalTypeParameter( String name )
+        {
+            typeVariable = name;
+        }
+
+        @Override
+        public SignatureVisitor visitClassBound()
+        {
+            return visitBound();
+        }
+
+        @Override
+        public SignatureVisitor visitInterfaceBound()
+        {
+            return visitBound();
+        }
+
+        private SignatureVisitor visitBound()
+        {
+            ErasedType bound = new ErasedType();
+            // a type variable is erased to its first bound
+            if ( !bounds.containsKey( typeVariable ) )
+            {
+                bounds.put( typeVariable, bound );
+            }
+            return bound;
+        }
+
+        @Override
+        public SignatureVisitor visitSuperclass()
+        {
+            superclass = new ErasedType();
+            return superclass;
+        }
+
+        @Override
+        public SignatureVisitor visitInterface()
+        {
+            return add( interfaces );
+        }
+
+        @Override
+        public SignatureVisitor visitParameterType()
+        {
+            return add( parameters );
+        }
+
+        @Override
+        public SignatureVisitor visitReturnType()
+        {
+            returnType = new ErasedType();
+            return returnType;
+        }
+
+        @Override
+        public SignatureVisitor visitExceptionType()
+        {
+            return add( exceptions );
+        }
+
+        private static SignatureVisitor add( List<ErasedType> types )
+        {
+            ErasedType type = new ErasedType();
+            types.add( type );
+            return type;
+        }
+    }
+
+    /**
+     * Decodes a single type of a signature, dropping its type arguments.
+     */
+    private static class ErasedType
+        extends SignatureVisitor
+    {
+        private String className;
+
+        private String typeVariable;
+
+        private int dimensions;
+
+        ErasedType()
+        {
+            super( ASM_API );
+        }
+
+        @Override
+        public void visitBaseType( char descriptor )
+        {
+            className = Type.getType( String.valueOf( descriptor ) ).getClassName();
+        }
+
+        @Override
+        public void visitTypeVariable( String name )
+        {
+            typeVariable = name;
+        }
+
+        @Override
+        public SignatureVisitor visitArrayType()
+        {
+            dimensions++;
+            return this;
+        }
+
+        @Override
+        public void visitClassType( String name )
+        {
+            className = toClassName( name );
+        }
+
+        @Override
+        public void visitInnerClassType( String name )
+        {
+            className = className + "." + name;
+        }
+
+        @Override
+        public SignatureVisitor visitTypeArgument( char wildcard )
+        {
+            // erased
+            return new ErasedType();
+        }
+    }
+}
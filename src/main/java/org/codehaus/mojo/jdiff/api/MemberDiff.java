@@ -0,0 +1,59 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A constructor, method or field which exists in both APIs but has been modified.
+ */
+public class MemberDiff
+{
+    private final ApiElement oldMember;
+
+    private final ApiElement newMember;
+
+    private final List<String> modifications = new ArrayList<String>();
+
+    public MemberDiff( ApiElement oldMember, ApiElement newMember )
+    {
+        this.oldMember = oldMember;
+        this.newMember = newMember;
+    }
+
+    public ApiElement getOldMember()
+    {
+        return oldMember;
+    }
+
+    public ApiElement getNewMember()
+    {
+        return newMember;
+    }
+
+    /**
+     * @return human readable descriptions of the modifications
+     */
+    public List<String> getModifications()
+    {
+        return modifications;
+    }
+}
@@ -0,0 +1,67 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The differences of a package which exists in both APIs.
+ */
+public class PackageDiff
+{
+    private final String name;
+
+    private final List<ApiClass> removedClasses = new ArrayList<ApiClass>();
+
+    private final List<ApiClass> addedClasses = new ArrayList<ApiClass>();
+
+    private final List<ClassDiff> changedClasses = new ArrayList<ClassDiff>();
+
+    public PackageDiff( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public List<ApiClass> getRemovedClasses()
+    {
+        return removedClasses;
+    }
+
+    public List<ApiClass> getAddedClasses()
+    {
+        return addedClasses;
+    }
+
+    public List<ClassDiff> getChangedClasses()
+    {
+        return changedClasses;
+    }
+
+    public boolean isEmpty()
+    {
+        return removedClasses.isEmpty() && addedClasses.isEmpty() && changedClasses.isEmpty();
+    }
+}
@@ -0,0 +1,91 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildMetricsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesEmptyPhases()
+        throws IOException
+    {
+        assertEquals( "{\n  \"module\": \"foo:bar\",\n  \"phases\": [\n  ]\n}\n",
+                      write( new BuildMetrics( "foo:bar" ) ) );
+    }
+
+    @Test
+    public void writesPhases()
+        throws IOException
+    {
+        BuildMetrics metrics = new BuildMetrics( "foo:bar" );
+        metrics.start( "checkout" ).stop();
+        BuildMetrics.Phase phase = metrics.start( "report 1.0" );
+        phase.set( "packages", 3 );
+        phase.set( "childPeakRssKb", 1024 );
+        phase.stop();
+        // ignored once stopped
+        phase.stop();
+
+        assertEquals( "{\n  \"module\": \"foo:bar\",\n  \"phases\": [\n"
+            + "    { \"name\": \"checkout\", \"wallMillis\": 0, \"threadCpuMillis\": 0, \"childCpuMillis\": 0,"
+            + " \"jvmPeakRssKb\": 0 },\n"
+            + "    { \"name\": \"report 1.0\", \"wallMillis\": 0, \"threadCpuMillis\": 0, \"childCpuMillis\": 0,"
+            + " \"jvmPeakRssKb\": 0, \"packages\": 0, \"childPeakRssKb\": 0 }\n  ]\n}\n",
+                      write( metrics ) );
+    }
+
+    @Test
+    public void escapesNames()
+        throws IOException
+    {
+        BuildMetrics metrics = new BuildMetrics( "C:\\work\\\"quoted\"" );
+        BuildMetrics.Phase phase = metrics.start( "descriptor\t1.0\n" );
+        phase.set( "a \"counter\"", 1 );
+        phase.stop();
+
+        assertEquals( "{\n  \"module\": \"C:\\\\work\\\\\\\"quoted\\\"\",\n  \"phases\": [\n"
+            + "    { \"name\": \"descriptor\\u00091.0\\u000a\", \"wallMillis\": 0, \"threadCpuMillis\": 0,"
+            + " \"childCpuMillis\": 0, \"jvmPeakRssKb\": 0, \"a \\\"counter\\\"\": 0 }\n  ]\n}\n",
+                      write( metrics ) );
+    }
+
+    /**
+     * Writes the metrics and masks the measured values, which vary between runs.
+     */
+    private String write( BuildMetrics metrics )
+        throws IOException
+    {
+        File file = new File( temporaryFolder.getRoot(), "metrics/" + BuildMetrics.FILENAME );
+        metrics.write( file );
+        return FileUtils.fileRead( file, "UTF-8" ).replaceAll( "\": -?\\d+", "\": 0" );
+    }
+}
@@ -0,0 +1,226 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckoutStoreTest
+{
+    private static final String URL = "scm:local:/repo";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void fetchesOnceAndSharesCompleteEntry()
+        throws Exception
+    {
+        CheckoutStore store = newStore( Long.MAX_VALUE );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        CheckoutStore.Checkout first = store.checkout( URL, "1.0", false, false, fetcher );
+        CheckoutStore.Checkout second = store.checkout( URL, "1.0", false, false, fetcher );
+        try
+        {
+            assertEquals( 1, fetcher.count );
+            assertEquals( first.getDirectory(), second.getDirectory() );
+            assertTrue( new File( first.getDirectory(), "source.txt" ).isFile() );
+        }
+        finally
+        {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void keepsVersionsApart()
+        throws Exception
+    {
+        CheckoutStore store = newStore( Long.MAX_VALUE );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        CheckoutStore.Checkout first = store.checkout( URL, "1.0", false, false, fetcher );
+        CheckoutStore.Checkout second = store.checkout( URL, "2.0", false, false, fetcher );
+        first.close();
+        second.close();
+
+        assertEquals( 2, fetcher.count );
+        assertFalse( first.getDirectory().equals( second.getDirectory() ) );
+    }
+
+    @Test
+    public void sparseCheckoutUsesCompleteFullCheckout()
+        throws Exception
+    {
+        CheckoutStore store = newStore( Long.MAX_VALUE );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        CheckoutStore.Checkout full = store.checkout( URL, "1.0", false, false, fetcher );
+        full.close();
+        CheckoutStore.Checkout sparse = store.checkout( URL, "1.0", true, false, fetcher );
+        sparse.close();
+
+        assertEquals( 1, fetcher.count );
+        assertEquals( full.getDirectory(), sparse.getDirectory() );
+    }
+
+    @Test
+    public void fullCheckoutDoesNotUseSparseCheckout()
+        throws Exception
+    {
+        CheckoutStore store = newStore( Long.MAX_VALUE );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        CheckoutStore.Checkout sparse = store.checkout( URL, "1.0", true, false, fetcher );
+        sparse.close();
+        CheckoutStore.Checkout full = store.checkout( URL, "1.0", false, false, fetcher );
+        full.close();
+
+        assertEquals( 2, fetcher.count );
+        assertFalse( full.getDirectory().equals( sparse.getDirectory() ) );
+    }
+
+    @Test
+    public void forceFetchesClosedEntryAgain()
+        throws Exception
+    {
+        CheckoutStore store = newStore( Long.MAX_VALUE );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        store.checkout( URL, "1.0", false, false, fetcher ).close();
+        store.checkout( URL, "1.0", false, true, fetcher ).close();
+
+        assertEquals( 2, fetcher.count );
+    }
+
+    @Test
+    public void forceDoesNotReplaceOpenEntry()
+        throws Exception
+    {
+        CheckoutStore store = newStore( Long.MAX_VALUE );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        CheckoutStore.Checkout open = store.checkout( URL, "1.0", false, false, fetcher );
+        try
+        {
+            store.checkout( URL, "1.0", false, true, fetcher ).close();
+
+            assertEquals( 1, fetcher.count );
+            assertTrue( new File( open.getDirectory(), "source.txt" ).isFile() );
+        }
+        finally
+        {
+            open.close();
+        }
+    }
+
+    @Test
+    public void evictsOnlyClosedEntries()
+        throws Exception
+    {
+        CheckoutStore store = newStore( 10 );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        CheckoutStore.Checkout first = store.checkout( URL, "1.0", false, false, fetcher );
+        CheckoutStore.Checkout second = store.checkout( URL, "2.0", false, false, fetcher );
+        assertTrue( first.getDirectory().isDirectory() );
+        first.close();
+
+        CheckoutStore.Checkout third = store.checkout( URL, "3.0", false, false, fetcher );
+        try
+        {
+            assertFalse( first.getDirectory().exists() );
+            assertTrue( second.getDirectory().isDirectory() );
+            assertTrue( third.getDirectory().isDirectory() );
+        }
+        finally
+        {
+            second.close();
+            third.close();
+        }
+    }
+
+    @Test
+    public void openFailsOnceEvicted()
+        throws Exception
+    {
+        CheckoutStore store = newStore( 0 );
+        CountingFetcher fetcher = new CountingFetcher( 10 );
+
+        CheckoutStore.Checkout checkout = store.checkout( URL, "1.0", false, false, fetcher );
+        CheckoutStore.Checkout reopened = store.open( checkout.getDirectory() );
+        checkout.close();
+        reopened.close();
+        store.checkout( URL, "2.0", false, false, fetcher ).close();
+
+        try
+        {
+            store.open( checkout.getDirectory() ).close();
+            throw new AssertionError( "evicted checkout opened" );
+        }
+        catch ( IOException e )
+        {
+            assertFalse( checkout.getDirectory().exists() );
+        }
+    }
+
+    private CheckoutStore newStore( long maxSize )
+    {
+        return new CheckoutStore( new File( temporaryFolder.getRoot(), "store" ), maxSize, new SystemStreamLog() );
+    }
+
+    private static final class CountingFetcher
+        implements CheckoutStore.Fetcher
+    {
+        private final int size;
+
+        private int count;
+
+        CountingFetcher( int size )
+        {
+            this.size = size;
+        }
+
+        public void fetch( File directory )
+            throws IOException
+        {
+            count++;
+            directory.mkdirs();
+            StringBuffer content = new StringBuffer();
+            for ( int i = 0; i < size; i++ )
+            {
+                content.append( 'x' );
+            }
+            FileUtils.fileWrite( new File( directory, "source.txt" ).getAbsolutePath(), content.toString() );
+        }
+    }
+}
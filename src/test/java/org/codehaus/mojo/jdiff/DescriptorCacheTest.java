@@ -0,0 +1,144 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DescriptorCacheTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keyIsStable()
+        throws IOException
+    {
+        File root = sources( "src", "package foo; public class A {}" );
+
+        assertEquals( key( root, Arrays.asList( "foo", "bar" ), "17.0.2" ),
+                      key( root, Arrays.asList( "bar", "foo" ), "17.0.2" ) );
+    }
+
+    @Test
+    public void keyIgnoresLocationOfSources()
+        throws IOException
+    {
+        File root = sources( "src", "package foo; public class A {}" );
+        File copy = sources( "copy", "package foo; public class A {}" );
+
+        assertEquals( key( root, Arrays.asList( "foo" ), "17.0.2" ), key( copy, Arrays.asList( "foo" ), "17.0.2" ) );
+    }
+
+    @Test
+    public void keyChangesWithSources()
+        throws IOException
+    {
+        File root = sources( "src", "package foo; public class A {}" );
+        String before = key( root, Arrays.asList( "foo" ), "17.0.2" );
+
+        FileUtils.fileWrite( new File( root, "foo/A.java" ).getAbsolutePath(), "package foo; public class A { }" );
+
+        assertFalse( before.equals( key( root, Arrays.asList( "foo" ), "17.0.2" ) ) );
+    }
+
+    @Test
+    public void keyChangesWithJdk()
+        throws IOException
+    {
+        File root = sources( "src", "package foo; public class A {}" );
+
+        assertFalse( key( root, Arrays.asList( "foo" ), "17.0.2" ).equals( key( root, Arrays.asList( "foo" ),
+                                                                                 "21.0.1" ) ) );
+    }
+
+    @Test
+    public void keyRejectsSourceRootWhichIsNoDirectory()
+        throws IOException
+    {
+        File file = temporaryFolder.newFile( "src" );
+
+        try
+        {
+            key( file, Arrays.asList( "foo" ), "17.0.2" );
+            fail( "file accepted as source root" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "The source root " + file + " is not a directory", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void readsJdkVersionFromReleaseFile()
+        throws IOException
+    {
+        File jdk = temporaryFolder.newFolder( "jdk" );
+        FileUtils.fileWrite( new File( jdk, "release" ).getAbsolutePath(), "JAVA_VERSION=\"17.0.2\"\n" );
+
+        assertEquals( "17.0.2", DescriptorCache.getJdkVersion( new File( jdk, "bin/javadoc" ).getPath() ) );
+    }
+
+    @Test
+    public void restoresStoredDescriptor()
+        throws IOException
+    {
+        DescriptorCache cache = new DescriptorCache( temporaryFolder.newFolder( "cache" ), Long.MAX_VALUE,
+                                                     new SystemStreamLog() );
+        File descriptor = temporaryFolder.newFile( "api.xml" );
+        FileUtils.fileWrite( descriptor.getAbsolutePath(), "<api name=\"api\">\n</api>\n" );
+        File restored = new File( temporaryFolder.getRoot(), "restored/api.xml" );
+
+        assertFalse( cache.restore( "key", restored ) );
+        cache.store( "key", descriptor );
+        assertTrue( cache.restore( "key", restored ) );
+        assertEquals( FileUtils.fileRead( descriptor ), FileUtils.fileRead( restored ) );
+    }
+
+    private File sources( String name, String source )
+        throws IOException
+    {
+        File root = temporaryFolder.newFolder( name );
+        new File( root, "foo" ).mkdirs();
+        FileUtils.fileWrite( new File( root, "foo/A.java" ).getAbsolutePath(), source );
+        return root;
+    }
+
+    private static String key( File root, List<String> packages, String jdkVersion )
+        throws IOException
+    {
+        return DescriptorCache.computeKey( "api", Arrays.asList( root ), packages, Collections.<String>emptyList(),
+                                           "1.0.9/1.0", jdkVersion );
+    }
+}
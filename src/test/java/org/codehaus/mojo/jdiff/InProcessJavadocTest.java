@@ -0,0 +1,117 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.Os;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InProcessJavadocTest
+{
+    /**
+     * A doclet calling {@link System#exit(int)}, like the JDiff doclet does when it fails.
+     */
+    private static final String EXITING_DOCLET = "import java.util.*;\n" + "import javax.lang.model.SourceVersion;\n"
+        + "import jdk.javadoc.doclet.*;\n" + "public class ExitingDoclet implements Doclet {\n"
+        + "  public void init( Locale locale, Reporter reporter ) {}\n"
+        + "  public String getName() { return \"exiting\"; }\n"
+        + "  public Set<? extends Option> getSupportedOptions() { return Collections.emptySet(); }\n"
+        + "  public SourceVersion getSupportedSourceVersion() { return SourceVersion.latest(); }\n"
+        + "  public boolean run( DocletEnvironment environment ) { System.exit( 3 ); return true; }\n" + "}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void resetExitGuard()
+    {
+        InProcessJavadoc.setExitGuardSupported( null );
+    }
+
+    @Test
+    public void refusesSystemExit()
+        throws IOException
+    {
+        // the doclet API of Java 9
+        assumeFalse( System.getProperty( "java.specification.version" ).startsWith( "1." ) );
+        assumeTrue( InProcessJavadoc.isAvailable() );
+
+        File docletpath = temporaryFolder.newFolder( "doclet" );
+        File doclet = new File( docletpath, "ExitingDoclet.java" );
+        FileUtils.fileWrite( doclet.getAbsolutePath(), EXITING_DOCLET );
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals( 0, compiler.run( null, null, null, "-d", docletpath.getPath(), doclet.getPath() ) );
+
+        File source = temporaryFolder.newFile( "Foo.java" );
+        FileUtils.fileWrite( source.getAbsolutePath(), "public class Foo {}" );
+
+        SecurityManager securityManager = System.getSecurityManager();
+        try
+        {
+            InProcessJavadoc.execute( Arrays.asList( "-doclet", "ExitingDoclet", "-docletpath", docletpath.getPath(),
+                                                     source.getPath() ), new SystemStreamLog() );
+            fail( "System.exit() should fail the run" );
+        }
+        catch ( JavadocExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "System.exit(3)" ) );
+        }
+        assertSame( securityManager, System.getSecurityManager() );
+    }
+
+    @Test
+    public void forksWithoutExitGuard()
+        throws Exception
+    {
+        assumeFalse( Os.isFamily( Os.FAMILY_WINDOWS ) );
+        InProcessJavadoc.setExitGuardSupported( Boolean.FALSE );
+
+        File executable = temporaryFolder.newFile( "javadoc" );
+        FileUtils.fileWrite( executable.getAbsolutePath(), "#!/bin/sh\necho forked \"$@\"\n" );
+        assertTrue( executable.setExecutable( true ) );
+
+        JavadocExecutor javadoc = new JavadocExecutor( executable.getAbsolutePath(), new SystemStreamLog() );
+        javadoc.setInProcess( true );
+        javadoc.addArgument( "-private" );
+        File output = new File( temporaryFolder.getRoot(), "javadoc.log" );
+        javadoc.setOutputFile( output );
+        javadoc.execute( temporaryFolder.getRoot().getPath() );
+
+        assertEquals( "forked -private", FileUtils.fileRead( output ).trim() );
+    }
+}
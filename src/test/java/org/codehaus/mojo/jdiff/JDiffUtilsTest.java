@@ -0,0 +1,106 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class JDiffUtilsTest
+{
+    @Test
+    public void partitionPlacesLargestPackagesIntoSmallestShards()
+    {
+        Map<String, Long> sizes = sizes( "a", 50, "b", 40, "c", 30, "d", 20, "e", 10 );
+
+        List<Set<String>> shards = JDiffUtils.partitionPackages( sizes, 2 );
+
+        assertEquals( Arrays.asList( packages( "a", "d", "e" ), packages( "b", "c" ) ), shards );
+    }
+
+    @Test
+    public void partitionUsesOneShardPerPackageAtMost()
+    {
+        List<Set<String>> shards = JDiffUtils.partitionPackages( sizes( "a", 1, "b", 1 ), 4 );
+
+        assertEquals( Arrays.asList( packages( "a" ), packages( "b" ) ), shards );
+    }
+
+    @Test
+    public void partitionSpreadsEmptyPackages()
+    {
+        List<Set<String>> shards = JDiffUtils.partitionPackages( sizes( "a", 0, "b", 0, "c", 0, "d", 0 ), 2 );
+
+        assertEquals( Arrays.asList( packages( "a", "c" ), packages( "b", "d" ) ), shards );
+    }
+
+    @Test
+    public void partitionKeepsEveryPackageOnce()
+    {
+        Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            sizes.put( "p" + i, Long.valueOf( i * 37 % 101 ) );
+        }
+
+        Set<String> partitioned = new HashSet<String>();
+        int count = 0;
+        for ( Set<String> shard : JDiffUtils.partitionPackages( sizes, 7 ) )
+        {
+            partitioned.addAll( shard );
+            count += shard.size();
+        }
+
+        assertEquals( sizes.keySet(), partitioned );
+        assertEquals( sizes.size(), count );
+    }
+
+    @Test
+    public void partitionWithoutPackagesHasOneEmptyShard()
+    {
+        List<Set<String>> shards = JDiffUtils.partitionPackages( Collections.<String, Long>emptyMap(), 0 );
+
+        assertEquals( Collections.singletonList( packages() ), shards );
+    }
+
+    private static Map<String, Long> sizes( Object... namesAndSizes )
+    {
+        Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+        for ( int i = 0; i < namesAndSizes.length; i += 2 )
+        {
+            sizes.put( (String) namesAndSizes[i], Long.valueOf( ( (Integer) namesAndSizes[i + 1] ).longValue() ) );
+        }
+        return sizes;
+    }
+
+    private static Set<String> packages( String... names )
+    {
+        return new TreeSet<String>( Arrays.asList( names ) );
+    }
+}
@@ -0,0 +1,113 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JavadocExecutorTest
+{
+    /**
+     * A directory name with a space, a single quote, a backslash and a double quote.
+     */
+    private static final String AWKWARD_NAME = "it's a \\ \"dir\"";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesArgfile()
+        throws IOException
+    {
+        JavadocExecutor javadoc = new JavadocExecutor( "javadoc", new SystemStreamLog() );
+        javadoc.addJvmOption( "-Xmx256m" );
+        javadoc.addArgument( "-private" );
+        javadoc.addArgumentPair( "d", "C:\\my docs\\apidocs" );
+        javadoc.addPathArgumentPair( "classpath", Arrays.asList( "/lib/a b.jar", "/lib/it's.jar" ) );
+        javadoc.addArgumentPair( "windowtitle", "\"quoted\" title" );
+
+        File argfile = new File( temporaryFolder.getRoot(), "javadoc.options" );
+        Commandline cmd = javadoc.createCommandline( temporaryFolder.getRoot(), argfile );
+
+        assertEquals( Arrays.asList( "-J-Xmx256m", "@" + argfile.getAbsolutePath() ),
+                      Arrays.asList( cmd.getArguments() ) );
+        assertEquals( "'-private'\n" + "'-d'\n" + "'C:\\\\my docs\\\\apidocs'\n" + "'-classpath'\n"
+            + "'/lib/a b.jar" + File.pathSeparator + "/lib/it\\'s.jar'\n" + "'-windowtitle'\n"
+            + "'\"quoted\" title'\n", FileUtils.fileRead( argfile ) );
+    }
+
+    @Test
+    public void quotesPathsOnCommandLine()
+        throws IOException
+    {
+        JavadocExecutor javadoc = new JavadocExecutor( "javadoc", new SystemStreamLog() );
+        javadoc.addArgumentPair( "d", "/my docs" );
+        javadoc.addPathArgumentPair( "sourcepath", Arrays.asList( "/src a", "/src's" ) );
+
+        Commandline cmd = javadoc.createCommandline( temporaryFolder.getRoot(), null );
+
+        assertEquals( Arrays.asList( "-d", "/my docs", "-sourcepath",
+                                     "'/src a" + File.pathSeparator + "/src\\'s'" ),
+                      Arrays.asList( cmd.getArguments() ) );
+    }
+
+    /**
+     * Checks that javadoc reads the arguments back from the argument file as they were added.
+     */
+    @Test
+    public void javadocReadsArgfile()
+        throws IOException
+    {
+        DocumentationTool tool = ToolProvider.getSystemDocumentationTool();
+        assumeNotNull( tool );
+
+        File sources = temporaryFolder.newFolder( AWKWARD_NAME );
+        FileUtils.fileWrite( new File( sources, "Foo.java" ).getAbsolutePath(), "public class Foo {}" );
+        File apidocs = new File( temporaryFolder.newFolder( "apidocs" ), AWKWARD_NAME );
+
+        JavadocExecutor javadoc = new JavadocExecutor( "javadoc", new SystemStreamLog() );
+        javadoc.addArgument( "-quiet" );
+        javadoc.addArgument( "-Xdoclint:none" );
+        javadoc.addArgumentPair( "d", apidocs.getAbsolutePath() );
+        javadoc.addArgumentPair( "doctitle", "it's \"Foo\"" );
+        javadoc.addArgument( new File( sources, "Foo.java" ).getAbsolutePath() );
+
+        File argfile = new File( temporaryFolder.getRoot(), "javadoc.options" );
+        javadoc.createCommandline( temporaryFolder.getRoot(), argfile );
+
+        assertEquals( 0, tool.run( null, null, null, "@" + argfile.getAbsolutePath() ) );
+        assertTrue( new File( apidocs, "Foo.html" ).isFile() );
+    }
+}
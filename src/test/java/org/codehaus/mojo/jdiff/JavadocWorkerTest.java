@@ -0,0 +1,130 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JavadocWorkerTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void shutdown()
+    {
+        JavadocWorkerPool.shutdown();
+    }
+
+    @Test
+    public void servesRequestsOneAfterTheOther()
+        throws IOException
+    {
+        JavadocWorkerPool.Worker worker = acquire();
+        try
+        {
+            File failed = new File( temporaryFolder.getRoot(), "failed.log" );
+            assertEquals( JavadocWorker.EXIT_FAILURE, worker.execute( Arrays.asList( "-quiet" ), failed ) );
+            assertTrue( FileUtils.fileRead( failed ).contains( "error: no doclet specified" ) );
+
+            File source = temporaryFolder.newFile( "Foo.java" );
+            FileUtils.fileWrite( source.getAbsolutePath(), "public class Foo {}" );
+            File apidocs = temporaryFolder.newFolder( "apidocs" );
+            List<String> arguments =
+                Arrays.asList( "-doclet", getStandardDoclet(), "-quiet", "-d", apidocs.getPath(), source.getPath() );
+            File succeeded = new File( temporaryFolder.getRoot(), "succeeded.log" );
+            assertEquals( JavadocWorker.EXIT_SUCCESS, worker.execute( arguments, succeeded ) );
+            assertTrue( new File( apidocs, "Foo.html" ).isFile() );
+
+            assertEquals( 2, worker.getRequests() );
+        }
+        finally
+        {
+            JavadocWorkerPool.release( worker );
+        }
+    }
+
+    @Test
+    public void reusesReleasedWorker()
+        throws IOException
+    {
+        JavadocWorkerPool.Worker worker = acquire();
+        File output = new File( temporaryFolder.getRoot(), "output.log" );
+        worker.execute( Collections.<String>emptyList(), output );
+        JavadocWorkerPool.release( worker );
+
+        JavadocWorkerPool.Worker reused = acquire();
+        JavadocWorkerPool.release( reused );
+
+        assertSame( worker, reused );
+    }
+
+    @Test
+    public void reportsWorkerWhichExited()
+        throws IOException
+    {
+        JavadocWorkerPool.Worker worker = acquire();
+        JavadocWorkerPool.shutdown();
+
+        File output = new File( temporaryFolder.getRoot(), "output.log" );
+        assertEquals( -1, worker.execute( Collections.<String>emptyList(), output ) );
+        JavadocWorkerPool.release( worker );
+
+        JavadocWorkerPool.Worker replacement = acquire();
+        JavadocWorkerPool.release( replacement );
+        assertTrue( replacement != worker );
+    }
+
+    @Test
+    public void parsesFeatureVersion()
+    {
+        assertEquals( 8, JavadocWorkerPool.getFeatureVersion( "1.8.0_392" ) );
+        assertEquals( 17, JavadocWorkerPool.getFeatureVersion( "17.0.9" ) );
+        assertEquals( 21, JavadocWorkerPool.getFeatureVersion( "21" ) );
+        assertEquals( 0, JavadocWorkerPool.getFeatureVersion( "/opt/jdk/bin/javadoc/123/456" ) );
+    }
+
+    private static JavadocWorkerPool.Worker acquire()
+        throws IOException
+    {
+        File java = new File( System.getProperty( "java.home" ), "bin/java" );
+        return JavadocWorkerPool.acquire( java, Collections.<String>emptyList(), new SystemStreamLog() );
+    }
+
+    private static String getStandardDoclet()
+    {
+        return System.getProperty( "java.specification.version" ).startsWith( "1." )
+                        ? "com.sun.tools.doclets.standard.Standard" : "jdk.javadoc.doclet.StandardDoclet";
+    }
+}
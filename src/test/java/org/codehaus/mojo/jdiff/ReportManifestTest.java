@@ -0,0 +1,98 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportManifestTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void rewritesOnlyChangedPages()
+        throws IOException
+    {
+        File output = temporaryFolder.newFolder( "report" );
+        File first = temporaryFolder.newFolder( "first" );
+        write( first, "index.html", "<!-- Generated on Mon -->", "<h1>API</h1>" );
+        write( first, "changes/foo.html", "<p>foo changed</p>" );
+        write( first, "changes/bar.html", "<p>bar changed</p>" );
+        new ReportManifest( output ).synchronize( first );
+
+        File unchangedPage = new File( output, "index.html" );
+        unchangedPage.setLastModified( 1000000000000L );
+
+        File second = temporaryFolder.newFolder( "second" );
+        write( second, "index.html", "<!-- Generated on Tue -->", "<h1>API</h1>" );
+        write( second, "changes/foo.html", "<p>foo changed again</p>" );
+        ReportManifest manifest = new ReportManifest( output );
+        manifest.synchronize( second );
+
+        assertEquals( 1, manifest.getUnchanged() );
+        assertEquals( 1, manifest.getWritten() );
+        assertEquals( 1, manifest.getRemoved() );
+
+        // only a comment changed, the page is left untouched
+        assertEquals( 1000000000000L, unchangedPage.lastModified() );
+        assertEquals( "<!-- Generated on Mon -->\n<h1>API</h1>\n", FileUtils.fileRead( unchangedPage ) );
+        assertEquals( "<p>foo changed again</p>\n", FileUtils.fileRead( new File( output, "changes/foo.html" ) ) );
+        assertFalse( new File( output, "changes/bar.html" ).exists() );
+    }
+
+    @Test
+    public void restoresDeletedPage()
+        throws IOException
+    {
+        File output = temporaryFolder.newFolder( "report" );
+        File staging = temporaryFolder.newFolder( "staging" );
+        write( staging, "index.html", "<h1>API</h1>" );
+        new ReportManifest( output ).synchronize( staging );
+        new File( output, "index.html" ).delete();
+
+        ReportManifest manifest = new ReportManifest( output );
+        manifest.synchronize( staging );
+
+        assertEquals( 1, manifest.getWritten() );
+        assertEquals( "<h1>API</h1>\n", FileUtils.fileRead( new File( output, "index.html" ) ) );
+    }
+
+    private static void write( File directory, String page, String... lines )
+        throws IOException
+    {
+        StringBuffer content = new StringBuffer();
+        for ( String line : lines )
+        {
+            content.append( line ).append( '\n' );
+        }
+        File file = new File( directory, page );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), content.toString() );
+    }
+}
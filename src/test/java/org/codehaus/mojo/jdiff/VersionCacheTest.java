@@ -0,0 +1,111 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VersionCacheTest
+{
+    private static final List<String> VERSIONS = Arrays.asList( "1.0", "1.1", "2.0" );
+
+    private static final String REPOSITORIES =
+        VersionCache.getRepositoriesKey( "/m2/repository", Arrays.asList( "central=https://repo.maven.apache.org" ) );
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void returnsRecentEntry()
+        throws IOException
+    {
+        VersionCache cache = newCache( 60000 );
+        cache.put( "org.foo", "bar", "[1.0,)", REPOSITORIES, VERSIONS );
+
+        assertEquals( VERSIONS, cache.get( "org.foo", "bar", "[1.0,)", REPOSITORIES, false ) );
+    }
+
+    @Test
+    public void keepsEmptyVersionList()
+        throws IOException
+    {
+        VersionCache cache = newCache( 60000 );
+        cache.put( "org.foo", "bar", "[1.0,)", REPOSITORIES, Collections.<String>emptyList() );
+
+        assertEquals( Collections.<String>emptyList(), cache.get( "org.foo", "bar", "[1.0,)", REPOSITORIES, false ) );
+    }
+
+    @Test
+    public void expiresEntry()
+        throws IOException
+    {
+        VersionCache cache = newCache( 0 );
+        cache.put( "org.foo", "bar", "[1.0,)", REPOSITORIES, VERSIONS );
+
+        assertNull( cache.get( "org.foo", "bar", "[1.0,)", REPOSITORIES, false ) );
+    }
+
+    @Test
+    public void returnsExpiredEntryOffline()
+        throws IOException
+    {
+        VersionCache cache = newCache( 0 );
+        cache.put( "org.foo", "bar", "[1.0,)", REPOSITORIES, VERSIONS );
+
+        assertEquals( VERSIONS, cache.get( "org.foo", "bar", "[1.0,)", REPOSITORIES, true ) );
+    }
+
+    @Test
+    public void keysByArtifactRangeAndRepositories()
+        throws IOException
+    {
+        VersionCache cache = newCache( 60000 );
+        cache.put( "org.foo", "bar", "[1.0,)", REPOSITORIES, VERSIONS );
+
+        assertNull( cache.get( "org.foo", "baz", "[1.0,)", REPOSITORIES, true ) );
+        assertNull( cache.get( "org.foo", "bar", "[2.0,)", REPOSITORIES, true ) );
+        assertNull( cache.get( "org.foo", "bar", "[1.0,)", VersionCache.getRepositoriesKey(
+            "/m2/repository", Arrays.asList( "central=https://mirror.example.com" ) ), true ) );
+        assertNull( cache.get( "org.foo", "bar", "[1.0,)", VersionCache.getRepositoriesKey(
+            "/other/repository", Arrays.asList( "central=https://repo.maven.apache.org" ) ), true ) );
+    }
+
+    @Test
+    public void repositoriesKeyDependsOnOrder()
+    {
+        assertFalse( VersionCache.getRepositoriesKey( "/m2", Arrays.asList( "a=http://a", "b=http://b" ) )
+            .equals( VersionCache.getRepositoriesKey( "/m2", Arrays.asList( "b=http://b", "a=http://a" ) ) ) );
+    }
+
+    private VersionCache newCache( long timeToLive )
+    {
+        return new VersionCache( temporaryFolder.getRoot(), timeToLive );
+    }
+}
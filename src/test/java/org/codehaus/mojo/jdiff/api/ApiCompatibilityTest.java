@@ -0,0 +1,142 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ApiCompatibilityTest
+{
+    @Test
+    public void removedPublicMethodIsBreaking()
+    {
+        ApiClass oldClass = newClass( "Boot" );
+        oldClass.getMethods().add( new ApiMethod( "start", "void" ) );
+        oldClass.getMethods().add( new ApiMethod( "stop", "void" ) );
+        ApiClass newClass = newClass( "Boot" );
+        newClass.getMethods().add( new ApiMethod( "start", "void" ) );
+
+        ApiCompatibility compatibility = classify( oldClass, newClass );
+
+        assertEquals( Collections.singletonList( "foo.bar.Boot: removed stop()" ),
+                      compatibility.getBreakingChanges() );
+        assertEquals( 0, compatibility.getCompatibleChanges() );
+    }
+
+    @Test
+    public void removedPrivateMethodIsCompatible()
+    {
+        ApiClass oldClass = newClass( "Boot" );
+        ApiMethod stop = new ApiMethod( "stop", "void" );
+        stop.setVisibility( "private" );
+        oldClass.getMethods().add( stop );
+
+        ApiCompatibility compatibility = classify( oldClass, newClass( "Boot" ) );
+
+        assertEquals( 0, compatibility.getBreakingChanges().size() );
+        assertEquals( 1, compatibility.getCompatibleChanges() );
+    }
+
+    @Test
+    public void addedMethodIsCompatibleUnlessAbstract()
+    {
+        ApiClass newClass = newClass( "Boot" );
+        newClass.getMethods().add( new ApiMethod( "start", "void" ) );
+        ApiMethod stop = new ApiMethod( "stop", "void" );
+        stop.setAbstract( true );
+        newClass.getMethods().add( stop );
+
+        ApiCompatibility compatibility = classify( newClass( "Boot" ), newClass );
+
+        assertEquals( Collections.singletonList( "foo.bar.Boot: added abstract method stop()" ),
+                      compatibility.getBreakingChanges() );
+        assertEquals( 1, compatibility.getCompatibleChanges() );
+    }
+
+    @Test
+    public void changedReturnTypeIsBreaking()
+    {
+        ApiClass oldClass = newClass( "Boot" );
+        oldClass.getMethods().add( new ApiMethod( "start", "void" ) );
+        ApiClass newClass = newClass( "Boot" );
+        newClass.getMethods().add( new ApiMethod( "start", "boolean" ) );
+
+        ApiCompatibility compatibility = classify( oldClass, newClass );
+
+        assertEquals( Collections.singletonList( "foo.bar.Boot.start(): return type changed from void to boolean" ),
+                      compatibility.getBreakingChanges() );
+    }
+
+    @Test
+    public void finalClassIsBreaking()
+    {
+        ApiClass newClass = newClass( "Boot" );
+        newClass.setFinal( true );
+
+        ApiCompatibility compatibility = classify( newClass( "Boot" ), newClass );
+
+        assertEquals( Collections.singletonList( "foo.bar.Boot: now final" ), compatibility.getBreakingChanges() );
+    }
+
+    @Test
+    public void removedPackageIsBreakingAndAddedPackageCompatible()
+    {
+        ApiPackage removedPackage = new ApiPackage( "foo.old" );
+        removedPackage.addClass( newClass( "Gone" ) );
+        ApiClass hidden = newClass( "Hidden" );
+        hidden.setVisibility( "package" );
+        removedPackage.addClass( hidden );
+
+        ApiDiff diff = new ApiDiff( "1.0", "1.1" );
+        diff.getRemovedPackages().add( removedPackage );
+        diff.getAddedPackages().add( new ApiPackage( "foo.added" ) );
+
+        ApiCompatibility compatibility = ApiCompatibility.classify( diff );
+
+        assertEquals( Collections.singletonList( "foo.old.Gone: removed" ), compatibility.getBreakingChanges() );
+        assertEquals( 2, compatibility.getCompatibleChanges() );
+    }
+
+    private static ApiClass newClass( String name )
+    {
+        ApiClass apiClass = new ApiClass( name, false );
+        apiClass.setSuperclass( "java.lang.Object" );
+        return apiClass;
+    }
+
+    private static ApiCompatibility classify( ApiClass oldClass, ApiClass newClass )
+    {
+        ApiPackage oldPackage = new ApiPackage( "foo.bar" );
+        oldPackage.addClass( oldClass );
+        ApiPackage newPackage = new ApiPackage( "foo.bar" );
+        newPackage.addClass( newClass );
+
+        ApiDiff diff = new ApiDiff( "1.0", "1.1" );
+        PackageDiff packageDiff = new ApiComparator().compare( oldPackage, newPackage );
+        if ( !packageDiff.isEmpty() )
+        {
+            diff.getChangedPackages().add( packageDiff );
+        }
+        return ApiCompatibility.classify( diff );
+    }
+}
@@ -0,0 +1,102 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApiSnapshotTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip()
+        throws Exception
+    {
+        File descriptor = getResource( "generic/generic.xml" );
+
+        File streamed = temporaryFolder.newFile( "streamed" + ApiSnapshot.EXTENSION );
+        new ApiSnapshotWriter().write( descriptor, streamed );
+        File loaded = temporaryFolder.newFile( "loaded" + ApiSnapshot.EXTENSION );
+        new ApiSnapshotWriter().write( ApiXmlReader.read( descriptor ), loaded );
+
+        ApiSnapshot streamedSnapshot = new ApiSnapshot( streamed );
+        ApiSnapshot loadedSnapshot = new ApiSnapshot( loaded );
+        assertTrue( ApiSnapshot.isSnapshot( streamed ) );
+        assertEquals( "generic", streamedSnapshot.getName() );
+        assertEquals( loadedSnapshot.getFingerprint(), streamedSnapshot.getFingerprint() );
+        assertTrue( streamedSnapshot.containsClass( "foo", "Box" ) );
+
+        // the descriptor read back from the snapshot has the same fingerprint
+        File rewritten = temporaryFolder.newFile( "rewritten" + ApiSnapshot.EXTENSION );
+        new ApiSnapshotWriter().write( streamedSnapshot.read(), rewritten );
+        assertEquals( streamedSnapshot.getFingerprint(), new ApiSnapshot( rewritten ).getFingerprint() );
+    }
+
+    @Test
+    public void fingerprintIgnoresApiName()
+        throws Exception
+    {
+        ApiDescriptor api = ApiXmlReader.read( getResource( "generic/generic.xml" ) );
+        ApiDescriptor renamed = new ApiDescriptor( "renamed" );
+        for ( ApiPackage apiPackage : api.getPackages() )
+        {
+            renamed.addPackage( apiPackage );
+        }
+
+        assertEquals( fingerprint( api ), fingerprint( renamed ) );
+    }
+
+    @Test
+    public void fingerprintChangesWithApi()
+        throws Exception
+    {
+        ApiDescriptor api = ApiXmlReader.read( getResource( "generic/generic.xml" ) );
+        long fingerprint = fingerprint( api );
+
+        ApiClass box = api.getPackage( "foo" ).getClass( "Box" );
+        box.getMethods().remove( 0 );
+
+        assertFalse( fingerprint == fingerprint( api ) );
+    }
+
+    private long fingerprint( ApiDescriptor api )
+        throws Exception
+    {
+        File snapshot = temporaryFolder.newFile();
+        new ApiSnapshotWriter().write( api, snapshot );
+        return new ApiSnapshot( snapshot ).getFingerprint();
+    }
+
+    private static File getResource( String name )
+        throws URISyntaxException
+    {
+        return new File( ApiSnapshotTest.class.getClassLoader().getResource( name ).toURI() );
+    }
+}
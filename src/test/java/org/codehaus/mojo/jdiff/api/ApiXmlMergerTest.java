@@ -0,0 +1,180 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApiXmlMergerTest
+{
+    private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"iso-8859-1\" standalone=\"no\"?>\n"
+        + "<api name=\"api\">\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void mergesPackagesInNameOrder()
+        throws IOException
+    {
+        File first = write( "first.xml", PROLOG + pckg( "a" ) + pckg( "c" ) + "</api>\n" );
+        File second = write( "second.xml", PROLOG + pckg( "b" ) + pckg( "d" ) + "</api>\n" );
+
+        assertEquals( PROLOG + pckg( "a" ) + pckg( "b" ) + pckg( "c" ) + pckg( "d" ) + "</api>\n",
+                      merge( first, second ) );
+    }
+
+    @Test
+    public void mergeEqualsDescriptorOfAllPackages()
+        throws IOException
+    {
+        ApiDescriptor all = new ApiDescriptor( "all" );
+        ApiDescriptor even = new ApiDescriptor( "all" );
+        ApiDescriptor odd = new ApiDescriptor( "all" );
+        for ( int i = 0; i < 6; i++ )
+        {
+            ApiClass apiClass = new ApiClass( "Type" + i, i % 3 == 0 );
+            apiClass.getMethods().add( new ApiMethod( "run", "void" ) );
+            all.getOrCreatePackage( "foo.p" + i ).addClass( apiClass );
+            ( i % 2 == 0 ? even : odd ).getOrCreatePackage( "foo.p" + i ).addClass( apiClass );
+        }
+
+        String expected = read( new ApiXmlWriter().write( all, temporaryFolder.newFolder( "all" ) ) );
+        File evenPart = new ApiXmlWriter().write( even, temporaryFolder.newFolder( "even" ) );
+        File oddPart = new ApiXmlWriter().write( odd, temporaryFolder.newFolder( "odd" ) );
+
+        assertEquals( expected.replace( "\r\n", "\n" ), merge( oddPart, evenPart ) );
+    }
+
+    @Test
+    public void docCommentsDoNotEndPackages()
+        throws IOException
+    {
+        String commented = "<package name=\"a\">\n"
+            + "<class name=\"A\">\n"
+            + "<doc>\n"
+            + "Replaces\n"
+            + "</package>\n"
+            + "<package name=\"z\">\n"
+            + "</doc>\n"
+            + "</class>\n"
+            + "</package>\n";
+        String inline = "<package name=\"c\">\n"
+            + "<doc>one</doc><doc>\n"
+            + "</package>\n"
+            + "</doc>\n"
+            + "</package>\n";
+        File first = write( "first.xml", PROLOG + commented + inline + "</api>\n" );
+        File second = write( "second.xml", PROLOG + pckg( "b" ) + "</api>\n" );
+
+        assertEquals( PROLOG + commented + pckg( "b" ) + inline + "</api>\n", merge( first, second ) );
+    }
+
+    @Test
+    public void rejectsIncompletePackage()
+        throws IOException
+    {
+        File first = write( "first.xml", PROLOG + "<package name=\"a\">\n<class name=\"A\">\n" );
+        File second = write( "second.xml", PROLOG + pckg( "b" ) + "</api>\n" );
+
+        try
+        {
+            merge( first, second );
+            fail( "incomplete package merged" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "The package a of " + first + " isn't complete", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void rejectsOtherDocuments()
+        throws IOException
+    {
+        File other = write( "other.xml", "<?xml version=\"1.0\"?>\n<project>\n</project>\n" );
+
+        try
+        {
+            merge( other );
+            fail( "other document merged" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( other + " is not a JDiff API descriptor", e.getMessage() );
+        }
+    }
+
+    private static String pckg( String name )
+    {
+        return "<package name=\"" + name + "\">\n<class name=\"" + name.toUpperCase() + "\">\n</class>\n</package>\n";
+    }
+
+    private String merge( File... parts )
+        throws IOException
+    {
+        File merged = new File( temporaryFolder.getRoot(), "merged.xml" );
+        new ApiXmlMerger().merge( Arrays.asList( parts ), merged );
+        return read( merged );
+    }
+
+    private File write( String name, String content )
+        throws IOException
+    {
+        File file = temporaryFolder.newFile( name );
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes( ApiXmlWriter.ENCODING ) );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        return file;
+    }
+
+    private static String read( File file )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            return IOUtil.toString( in, ApiXmlWriter.ENCODING );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+}
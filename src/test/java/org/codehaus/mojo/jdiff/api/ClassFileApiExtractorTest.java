@@ -0,0 +1,128 @@
+package org.codehaus.mojo.jdiff.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassFileApiExtractorTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * <code>generic/generic.xml</code> has been written by the JDiff doclet for <code>generic/foo/Box.java</code>.
+     */
+    @Test
+    public void matchesDescriptorOfJavadoc()
+        throws Exception
+    {
+        File classes = temporaryFolder.newFolder( "classes" );
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int status = compiler.run( null, null, null, "-parameters", "-d", classes.getPath(),
+                                   getResource( "generic/foo/Box.java" ).getPath() );
+        assertEquals( 0, status );
+
+        ClassFileApiExtractor extractor = new ClassFileApiExtractor();
+        extractor.addLocation( classes );
+        ApiPackage extracted = extractor.getDescriptor( "generic", null ).getPackage( "foo" );
+        ApiPackage javadoc = ApiXmlReader.read( getResource( "generic/generic.xml" ) ).getPackage( "foo" );
+
+        assertEquals( names( javadoc ), names( extracted ) );
+        List<String> differences = new ArrayList<String>();
+        for ( ApiClass javadocClass : javadoc.getClasses() )
+        {
+            ClassDiff diff =
+                new ApiComparator().compare( "foo", javadocClass, extracted.getClass( javadocClass.getName() ) );
+            differences.addAll( diff.getModifications() );
+            for ( ApiElement member : diff.getRemovedMembers() )
+            {
+                differences.add( javadocClass.getName() + ": missing " + member.getName() );
+            }
+            for ( ApiElement member : diff.getAddedMembers() )
+            {
+                differences.add( javadocClass.getName() + ": unexpected " + member.getName() );
+            }
+            for ( MemberDiff member : diff.getChangedMembers() )
+            {
+                differences.add( javadocClass.getName() + "." + member.getOldMember().getName() + ": "
+                    + member.getModifications() );
+            }
+        }
+        assertEquals( new ArrayList<String>(), differences );
+    }
+
+    @Test
+    public void erasesTypeVariablesToTheirFirstBound()
+        throws Exception
+    {
+        File classes = temporaryFolder.newFolder( "classes" );
+        int status = ToolProvider.getSystemJavaCompiler().run( null, null, null, "-d", classes.getPath(),
+                                                               getResource( "generic/foo/Box.java" ).getPath() );
+        assertEquals( 0, status );
+
+        ClassFileApiExtractor extractor = new ClassFileApiExtractor();
+        extractor.addLocation( classes );
+        ApiPackage extracted = extractor.getDescriptor( "generic", null ).getPackage( "foo" );
+
+        ApiMethod group = extracted.getClass( "Box" ).getMethods().get( 2 );
+        assertEquals( "group", group.getName() );
+        assertEquals( Arrays.asList( "java.lang.Exception" ), group.getExceptions() );
+        assertEquals( "java.lang.Comparable[]", group.getParameters().get( 1 ).getType() );
+
+        // javac drops the enclosing instance from the signature of inner class constructors
+        ApiMethod constructor = extracted.getClass( "Box.Inner" ).getConstructors().get( 0 );
+        assertEquals( 2, constructor.getParameters().size() );
+        assertEquals( "java.util.List", constructor.getParameters().get( 0 ).getType() );
+        assertEquals( "java.lang.Object", constructor.getParameters().get( 1 ).getType() );
+
+        assertEquals( "java.lang.Number", extracted.getClass( "Box.Pair" ).getMethods().get( 1 ).getReturnType() );
+    }
+
+    private static TreeSet<String> names( ApiPackage apiPackage )
+    {
+        TreeSet<String> names = new TreeSet<String>();
+        for ( ApiClass apiClass : apiPackage.getClasses() )
+        {
+            names.add( apiClass.getName() );
+        }
+        return names;
+    }
+
+    private File getResource( String name )
+        throws IOException, URISyntaxException
+    {
+        return new File( getClass().getClassLoader().getResource( name ).toURI() );
+    }
+}
@@ -0,0 +1,84 @@
+package foo;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public class Box<T extends Comparable<? super T>, E extends Exception>
+    extends AbstractList<T>
+    implements Serializable, Comparable<Box<T, E>>
+{
+    public Map<String, List<? extends Number>> index;
+
+    public T[] items;
+
+    public Map.Entry<String, T> entry;
+
+    public Box( Collection<? extends T> items )
+    {
+    }
+
+    public T get( int i )
+    {
+        return null;
+    }
+
+    public int size()
+    {
+        return 0;
+    }
+
+    public <K, V extends K> Map<K, V> group( List<K> keys, T... values )
+        throws E
+    {
+        return null;
+    }
+
+    public int compareTo( Box<T, E> o )
+    {
+        return 0;
+    }
+
+    public List<int[]> arrays()
+    {
+        return null;
+    }
+
+    public Inner<String> inner()
+    {
+        return null;
+    }
+
+    public class Inner<S>
+    {
+        public Inner( List<T> values, S extra )
+        {
+        }
+
+        public T first( S key )
+        {
+            return null;
+        }
+    }
+
+    public static class Pair<A extends Number & Serializable, B extends A>
+        implements Map.Entry<A, B>
+    {
+        public A getKey()
+        {
+            return null;
+        }
+
+        public B getValue()
+        {
+            return null;
+        }
+
+        public B setValue( B value )
+        {
+            return null;
+        }
+    }
+}